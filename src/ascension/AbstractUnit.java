@@ -2,10 +2,9 @@ package ascension;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
-import com.sun.org.apache.xerces.internal.util.SynchronizedSymbolTable;
-
 import ascension.Activity.ActivityType;
 import ascension.PrimaryModel.Player;
 
@@ -83,9 +82,11 @@ class AbstractUnit {
 	Player player; 
 	enum Locomotion { GROUND, AIR } // Potentially burrowing, tree-walking, etc.
 	Locomotion locomotion;
-	enum UnitType { EMPTY, PHYSICAL_BUILDER };
+	enum UnitType { EMPTY, PHYSICAL_BUILDER;
+		public static final UnitType unitTypeOrdinals[] = values(); };
 	UnitType unitType;
 	ActivityList activityList = new ActivityList();
+	ArrayList<Point> longRangeRoute; // The rest of a route too long for one turn, or null
 	private int[] visibleBy = new int[4];
 	boolean visible = false, active = false, canMove = false, disabled;
 	Point curLoc; //  TODO Probably need to shift curLoc to an ArrayList<Point> itself
@@ -721,6 +722,20 @@ class AbstractUnit {
 		return squaresOccupied;
 	}
 
+	/**
+	 * Returns the side of the square block of squares the unit stands on,
+	 * the smallest able to hold its Size In Squares.
+	 * 
+	 * @return the side of the unit's footprint, at least one
+	 */
+	int getFootprint() {
+		int footprint = 1;
+		while (footprint * footprint < squaresOccupied) {
+			footprint++;
+		}
+		return footprint;
+	}
+
 	/**
 	 * Returns the unit's Levels.
 	 * 
@@ -855,15 +870,46 @@ class AbstractUnit {
 	 * @param path - the path the unit will try to take
 	 */
 	void generateMoveActivityWithPath(ArrayList<Point> path) {
+		int[] stepCosts = new int[path.size()];
+		Arrays.fill(stepCosts, 1);
+		generateMoveActivityWithPath(path, stepCosts);
+	}
+
+	/**
+	 * Generates the <code>Activities</code> for a path whose steps cost
+	 * different amounts of movement, as rough terrain does.
+	 * 
+	 * <p>
+	 * Steps are scheduled by accumulated cost rather than by count: each
+	 * step adds to the double step tally in proportion to how little it
+	 * costs, so a unit hurries across open ground and plods through rough.
+	 * When every step costs one, this is the same as
+	 * {@link AbstractUnit#generateMoveActivityWithPath(ArrayList) generateMoveActivityWithPath(ArrayList)}.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel PrimaryModel}, for every move ordered
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param path - the path the unit will try to take
+	 * @param stepCosts - the movement cost of each step of the path
+	 */
+	void generateMoveActivityWithPath(ArrayList<Point> path, int[] stepCosts) {
 //				System.out.println("In the generateMoveActivityWithPath method now.");
-		// First, we find out how long we've got to travel.
-		double squaresTraveled = path.size();
-//				System.out.println("Squares Traveled: " + squaresTraveled);
+		// First, we find out how much movement the trip costs.
+		double costTraveled = 0;
+		for (int stepCost : stepCosts) {
+			costTraveled += stepCost;
+		}
+//				System.out.println("Cost Traveled: " + costTraveled);
 		// Now we find out how fast we're going to get there.
-		// This is added to each step along the path.
-		double travelModifier = 1 - (squaresTraveled / moveSpeed); // TODO keep in mind rational numbers for future implementation since you may lose functionality to double prec
+		// Each step adds this, scaled by its cost, to the tally.
+		double costRatio = costTraveled / moveSpeed; // TODO keep in mind rational numbers for future implementation since you may lose functionality to double prec
 		// Maybe Math.fractions
-//				System.out.println("Travel Modifier: " + travelModifier);
+		int stepIndex = 0;
 		// We'll keep another variable to track the stacks of the travel modifier.
 		// For a step in which this rolling number is over 1, the unit takes a double step.
 		double modSum = 0;
@@ -875,7 +921,7 @@ class AbstractUnit {
 		origin.add(curLoc); // First origin always comes from the unit's current location
 		for (Iterator<Point> i = path.iterator(); i.hasNext();) {
 			Point step = i.next();
-			modSum += travelModifier;
+			modSum += 1 - stepCosts[stepIndex++] * costRatio;
 			if (modSum < 1) {
 				// Since this is a normal step, we'll just move along to the next square.
 //								System.out.println("\n= Taking a Normal Step =");
@@ -896,6 +942,7 @@ class AbstractUnit {
 //										System.out.println("\n== Taking a Double Step ==");
 					squaresOccupied.add(step); // Thinking. Want to test for a bit on the other cases.
 					step = i.next();
+					stepIndex++;
 					target.add(step);
 					squaresOccupied.add(step);
 //										System.out.println("This is a move TO: < " + target.get(0).x + " , " + target.get(0).y + " >");
@@ -918,6 +965,33 @@ class AbstractUnit {
 //		System.out.println();
 	}
 
+	/**
+	 * Generates one <code>Activity</code> per step of a path, so that the
+	 * unit reaches the n-th square after n activities. Plans made around
+	 * other units' sub-steps depend on this timing, which is why no step is
+	 * doubled up.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel PrimaryModel}, for every move ordered while moves are cooperative
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param path - the path the unit will try to take
+	 */
+	void generateMoveActivityPerStep(ArrayList<Point> path) {
+		Point origin = curLoc;
+		for (Point step : path) {
+			ArrayList<Point> origins = new ArrayList<Point>(), target = new ArrayList<Point>(), squaresOccupied = new ArrayList<Point>();
+			origins.add(origin);
+			target.add(step);
+			squaresOccupied.add(step);
+			this.addActivity(new Activity(player, this, commandCount++, ActivityType.MOVEMENT, 0, origins, target, squaresOccupied));
+			origin = step;
+		}
+	}
+
 	void setMovable(boolean isMovable) {
 		canMove = isMovable;
 	}
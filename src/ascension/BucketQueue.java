@@ -0,0 +1,109 @@
+package ascension;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>BucketQueue</code> is a monotone priority queue of int items
+ * with small int keys, as used by Dial's algorithm.
+ * </p>
+ *
+ * <p>
+ * Once an item with key <code>k</code> has been removed, every key
+ * still to be added lies within <code>span</code> of <code>k</code>, which
+ * holds for Dijkstra and consistent A* searches whose step costs are
+ * below <code>span</code>. The queue is therefore a ring of
+ * <code>span</code> buckets, one per key, each a stack of items. Adding
+ * is a push onto the key's bucket, and removing pops from the current
+ * bucket, moving on round the ring when it runs dry; both take constant
+ * time. Within a bucket the item added last comes out first, which in a
+ * search favours the deepest of equally promising squares.
+ * </p>
+ *
+ * <p>
+ * Keys are never lowered in place. An item reached again more cheaply is
+ * simply added again, and the caller skips the stale copies it removes
+ * later, such as those of squares already closed.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class BucketQueue {
+
+	private static final int NONE = -1;
+
+	private final int span;
+	private final int[][] buckets;
+	private final int[] counts;
+	private int currentKey, size;
+
+	/**
+	 * Creates a new, empty <code>BucketQueue</code>.
+	 *
+	 * @param span - one more than the largest step between a removed key and a key added after it
+	 */
+	BucketQueue(int span) {
+		this.span = span;
+		buckets = new int[span][16];
+		counts = new int[span];
+	}
+
+	/**
+	 * Empties the queue and sets the key from which removal starts.
+	 *
+	 * @param startKey - the lowest key to be added
+	 */
+	void clear(int startKey) {
+		Arrays.fill(counts, 0);
+		currentKey = startKey;
+		size = 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds an item.
+	 *
+	 * @param item - the item
+	 * @param key - the item's key, at least the key last removed and less than it plus the span
+	 */
+	void push(int item, int key) {
+		int bucket = key % span;
+		if (counts[bucket] == buckets[bucket].length) {
+			buckets[bucket] = Arrays.copyOf(buckets[bucket], counts[bucket] * 2);
+		}
+		buckets[bucket][counts[bucket]++] = item;
+		size++;
+	}
+
+	/**
+	 * Removes and returns an item of lowest key.
+	 *
+	 * @return the item, or -1 if the queue is empty
+	 */
+	int poll() {
+		if (size == 0) {
+			return NONE;
+		}
+		int bucket = currentKey % span;
+		while (counts[bucket] == 0) {
+			currentKey++;
+			bucket = currentKey % span;
+		}
+		size--;
+		return buckets[bucket][--counts[bucket]];
+	}
+
+	/**
+	 * Returns the key of the item last removed.
+	 *
+	 * @return the key
+	 */
+	int currentKey() {
+		return currentKey;
+	}
+}
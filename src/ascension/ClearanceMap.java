@@ -0,0 +1,144 @@
+package ascension;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>ClearanceMap</code> records, for every square of the map and
+ * each locomotion, the side of the largest unit which may stand with its
+ * top left corner on that square.
+ * </p>
+ *
+ * <p>
+ * A unit whose footprint is <code>side</code> squares across, standing
+ * at a square, covers the square and those up to <code>side - 1</code>
+ * below and to the right of it. The clearance of a square is the side of
+ * the largest such block which is passable throughout, so a unit fits at
+ * a square exactly when the clearance there is at least its side, which
+ * is a single lookup however large the unit. Clearances are capped at
+ * {@link ClearanceMap#MAX_CLEARANCE MAX_CLEARANCE}, the largest footprint
+ * in play.
+ * </p>
+ *
+ * <p>
+ * Clearance follows from the clearances below, to the right, and
+ * diagonally below and to the right, so the map is built in one sweep
+ * from the bottom right corner. Because of the cap, a change of
+ * passability at a square only alters squares up to
+ * <code>MAX_CLEARANCE - 1</code> above and to the left of it, and only
+ * that block is swept again. As with the {@link PassabilityMap PassabilityMap}
+ * it is compiled from, clearances only change on the model thread,
+ * between searches.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class ClearanceMap {
+
+	/**
+	 * The largest clearance recorded, and so the largest footprint side which may be searched for.
+	 */
+	static final int MAX_CLEARANCE = 8;
+
+	private static final Locomotion[] LOCOMOTIONS = Locomotion.values();
+
+	private final PassabilityMap passabilityMap;
+	private final int gridSize;
+	private final byte[][] clearances;
+
+	/**
+	 * Creates a new <code>ClearanceMap</code> compiled from the given passability.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability compiled
+	 */
+	ClearanceMap(PassabilityMap passabilityMap) {
+		this.passabilityMap = passabilityMap;
+		gridSize = passabilityMap.getGridSize();
+		clearances = new byte[LOCOMOTIONS.length][gridSize * gridSize];
+		for (Locomotion locomotion : LOCOMOTIONS) {
+			sweep(locomotion, 0, 0, gridSize - 1, gridSize - 1);
+		}
+	}
+
+	/**
+	 * Returns the clearance of a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param locomotion - the locomotion of the unit
+	 * @return the side of the largest footprint fitting there, or zero if the square is off the map or impassable
+	 */
+	int getClearance(int row, int column, Locomotion locomotion) {
+		if (row < 0 || row >= gridSize || column < 0 || column >= gridSize) {
+			return 0;
+		}
+		return clearances[locomotion.ordinal()][row * gridSize + column];
+	}
+
+	/**
+	 * Indicates whether or not a unit may stand with its top left corner on a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param locomotion - the locomotion of the unit
+	 * @param footprint - the side of the unit's footprint, at most {@link ClearanceMap#MAX_CLEARANCE MAX_CLEARANCE}
+	 * @return true if the unit fits
+	 */
+	boolean fits(int row, int column, Locomotion locomotion, int footprint) {
+		return getClearance(row, column, locomotion) >= footprint;
+	}
+
+	/**
+	 * Brings the clearances up to date with a change of passability at a
+	 * square. The {@link PassabilityMap PassabilityMap} must already hold the change.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#terrainChanged(int, int) terrainChanged(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 */
+	void update(int row, int column) {
+		for (Locomotion locomotion : LOCOMOTIONS) {
+			sweep(locomotion, Math.max(0, row - MAX_CLEARANCE + 1), Math.max(0, column - MAX_CLEARANCE + 1), row, column);
+		}
+	}
+
+	/*
+	 * Recomputes a block of clearances, from its bottom right corner back
+	 * to its top left, so that each square's neighbors below and to the
+	 * right are already current when it is reached.
+	 */
+	private void sweep(Locomotion locomotion, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+		byte[] clearancesFor = clearances[locomotion.ordinal()];
+		for (int r = lastRow; r >= firstRow; r--) {
+			for (int c = lastColumn; c >= firstColumn; c--) {
+				int square = r * gridSize + c;
+				if (!passabilityMap.isPassable(square, locomotion)) {
+					clearancesFor[square] = 0;
+					continue;
+				}
+				int smallest = Math.min(getClearance(r + 1, c, locomotion),
+						Math.min(getClearance(r, c + 1, locomotion), getClearance(r + 1, c + 1, locomotion)));
+				clearancesFor[square] = (byte) Math.min(MAX_CLEARANCE, smallest + 1);
+			}
+		}
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+}
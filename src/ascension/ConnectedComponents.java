@@ -0,0 +1,314 @@
+package ascension;
+
+import java.util.Arrays;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>ConnectedComponents</code> labels every passable square with
+ * the region of the map reachable from it, per locomotion.
+ * </p>
+ *
+ * <p>
+ * Two squares share a label exactly when a unit of that locomotion can
+ * walk from one to the other, with the same eight moves
+ * {@link PathFinder PathFinder} allows. A search between squares with
+ * different labels is bound to fail, so it can be turned down with two
+ * lookups instead of exploring everything reachable first.
+ * </p>
+ *
+ * <p>
+ * Labels are built by flood fill the first time a locomotion is asked
+ * about, and kept current as terrain changes. A square opening up joins
+ * the regions around it, relabelling all but the largest. A square
+ * closing off can only split its region if its open neighbors are not
+ * already joined to one another around it; only then are they flooded
+ * afresh to see which of them still meet.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class ConnectedComponents {
+
+	/**
+	 * The label of a square which cannot be entered.
+	 */
+	static final int NONE = -1;
+
+	// The eight squares around a square, in order around the ring.
+	private static final int[] RING_ROWS = { -1, -1, -1, 0, 1, 1, 1, 0 };
+	private static final int[] RING_COLUMNS = { -1, 0, 1, 1, 1, 0, -1, -1 };
+
+	private final PassabilityMap passabilityMap;
+	private final int gridSize;
+	private final int[][] labels, sizes;
+	private final int[] labelCounts;
+	private int[] queue;
+
+	/**
+	 * Creates a new <code>ConnectedComponents</code> with nothing labelled yet.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain labelled
+	 */
+	ConnectedComponents(PassabilityMap passabilityMap) {
+		this.passabilityMap = passabilityMap;
+		gridSize = passabilityMap.getGridSize();
+		labels = new int[Locomotion.values().length][];
+		sizes = new int[Locomotion.values().length][];
+		labelCounts = new int[Locomotion.values().length];
+	}
+
+	/**
+	 * Indicates whether or not a unit could possibly walk between two squares.
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param locomotion - the locomotion of the unit
+	 * @return false if the destination certainly cannot be reached
+	 */
+	boolean mayConnect(int sRow, int sColumn, int dRow, int dColumn, Locomotion locomotion) {
+		if (dRow < 0 || dRow >= gridSize || dColumn < 0 || dColumn >= gridSize) {
+			return false;
+		}
+		if (sRow == dRow && sColumn == dColumn) {
+			return true;
+		}
+		int[] labelsFor = labelsFor(locomotion);
+		int destination = labelsFor[dRow * gridSize + dColumn];
+		if (destination == NONE) {
+			return false;
+		}
+		int start = labelsFor[sRow * gridSize + sColumn];
+		// A unit left standing on terrain it cannot enter may still step off it.
+		return start == NONE || start == destination;
+	}
+
+	/**
+	 * Returns the label of a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param locomotion - the locomotion of the unit
+	 * @return the label, or {@link ConnectedComponents#NONE NONE} if the square cannot be entered
+	 */
+	int getLabel(int row, int column, Locomotion locomotion) {
+		return labelsFor(locomotion)[row * gridSize + column];
+	}
+
+	/**
+	 * Brings the labels up to date with a change of passability at a square.
+	 * The {@link PassabilityMap PassabilityMap} must already hold the change.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#terrainChanged(int, int) terrainChanged(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 */
+	synchronized void terrainChanged(int row, int column) {
+		for (Locomotion locomotion : Locomotion.values()) {
+			int[] labelsFor = labels[locomotion.ordinal()];
+			if (labelsFor == null) {
+				continue;
+			}
+			int square = row * gridSize + column;
+			boolean wasPassable = labelsFor[square] != NONE, isPassable = passabilityMap.isPassable(square, locomotion);
+			if (isPassable && !wasPassable) {
+				open(locomotion, row, column);
+			} else if (!isPassable && wasPassable) {
+				close(locomotion, row, column);
+			}
+		}
+	}
+
+	private synchronized int[] labelsFor(Locomotion locomotion) {
+		int[] labelsFor = labels[locomotion.ordinal()];
+		if (labelsFor == null) {
+			labelsFor = new int[gridSize * gridSize];
+			Arrays.fill(labelsFor, NONE);
+			labels[locomotion.ordinal()] = labelsFor;
+			sizes[locomotion.ordinal()] = new int[16];
+			labelCounts[locomotion.ordinal()] = 0;
+			for (int square = 0; square < labelsFor.length; square++) {
+				if (labelsFor[square] == NONE && passabilityMap.isPassable(square, locomotion)) {
+					int label = newLabel(locomotion);
+					sizes[locomotion.ordinal()][label] = flood(locomotion, square, label);
+				}
+			}
+		}
+		return labelsFor;
+	}
+
+	/*
+	 * Joins a newly opened square to the regions around it, keeping the
+	 * label of the largest and relabelling the rest.
+	 */
+	private void open(Locomotion locomotion, int row, int column) {
+		int[] labelsFor = labels[locomotion.ordinal()], sizesFor = sizes[locomotion.ordinal()];
+		int largest = NONE;
+		for (int i = 0; i < 8; i++) {
+			int label = labelAround(labelsFor, row, column, i);
+			if (label != NONE && (largest == NONE || sizesFor[label] > sizesFor[largest])) {
+				largest = label;
+			}
+		}
+		int square = row * gridSize + column;
+		if (largest == NONE) {
+			largest = newLabel(locomotion);
+			sizesFor = sizes[locomotion.ordinal()];
+		}
+		labelsFor[square] = largest;
+		sizesFor[largest]++;
+		for (int i = 0; i < 8; i++) {
+			int label = labelAround(labelsFor, row, column, i);
+			if (label != NONE && label != largest) {
+				int neighbor = (row + RING_ROWS[i]) * gridSize + column + RING_COLUMNS[i];
+				sizesFor[label] = 0;
+				sizesFor[largest] += flood(locomotion, neighbor, largest);
+			}
+		}
+	}
+
+	/*
+	 * Removes a square from its region, splitting the region if the square
+	 * was the only thing holding its parts together.
+	 */
+	private void close(Locomotion locomotion, int row, int column) {
+		int[] labelsFor = labels[locomotion.ordinal()];
+		int square = row * gridSize + column, label = labelsFor[square];
+		labelsFor[square] = NONE;
+		sizes[locomotion.ordinal()][label]--;
+		if (ringIsJoined(labelsFor, row, column)) {
+			return;
+		}
+		// Flood each open neighbor not yet reached by an earlier flood with a label of its own.
+		int[] floodLabels = new int[8];
+		int floods = 0;
+		for (int i = 0; i < 8; i++) {
+			int current = labelAround(labelsFor, row, column, i);
+			if (current == NONE) {
+				continue;
+			}
+			boolean reached = false;
+			for (int f = 0; f < floods; f++) {
+				reached |= current == floodLabels[f];
+			}
+			if (!reached) {
+				int fresh = newLabel(locomotion);
+				sizes[locomotion.ordinal()][fresh] = flood(locomotion, (row + RING_ROWS[i]) * gridSize + column + RING_COLUMNS[i], fresh);
+				floodLabels[floods++] = fresh;
+			}
+		}
+		sizes[locomotion.ordinal()][label] = 0;
+	}
+
+	/*
+	 * Indicates whether the open squares around a square are all joined to
+	 * one another without passing through it, by joining up open squares
+	 * of the ring which touch. A ring which does not join up may still be
+	 * joined further out, which only a flood can tell.
+	 */
+	private boolean ringIsJoined(int[] labelsFor, int row, int column) {
+		boolean[] open = new boolean[8];
+		int first = NONE;
+		for (int i = 0; i < 8; i++) {
+			open[i] = labelAround(labelsFor, row, column, i) != NONE;
+			if (open[i] && first == NONE) {
+				first = i;
+			}
+		}
+		if (first == NONE) {
+			return true;
+		}
+		// Spread from the first open square to every open square touching one already reached.
+		boolean[] joined = new boolean[8];
+		joined[first] = true;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < 8; i++) {
+				if (!joined[i]) {
+					continue;
+				}
+				for (int j = 0; j < 8; j++) {
+					if (open[j] && !joined[j] && ringAdjacent(i, j)) {
+						joined[j] = true;
+						changed = true;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < 8; i++) {
+			if (open[i] && !joined[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean ringAdjacent(int i, int j) {
+		return Math.abs(RING_ROWS[i] - RING_ROWS[j]) <= 1 && Math.abs(RING_COLUMNS[i] - RING_COLUMNS[j]) <= 1;
+	}
+
+	private int labelAround(int[] labelsFor, int row, int column, int i) {
+		int r = row + RING_ROWS[i], c = column + RING_COLUMNS[i];
+		if (r < 0 || r >= gridSize || c < 0 || c >= gridSize) {
+			return NONE;
+		}
+		return labelsFor[r * gridSize + c];
+	}
+
+	private int newLabel(Locomotion locomotion) {
+		int label = labelCounts[locomotion.ordinal()]++;
+		if (label == sizes[locomotion.ordinal()].length) {
+			sizes[locomotion.ordinal()] = Arrays.copyOf(sizes[locomotion.ordinal()], label * 2);
+		}
+		return label;
+	}
+
+	/*
+	 * Gives a label to every square reachable from a passable square which
+	 * does not already have it, and returns how many squares were labelled.
+	 */
+	private int flood(Locomotion locomotion, int source, int label) {
+		int[] labelsFor = labels[locomotion.ordinal()];
+		if (queue == null) {
+			queue = new int[gridSize * gridSize];
+		}
+		int head = 0, tail = 0;
+		labelsFor[source] = label;
+		queue[tail++] = source;
+		while (head < tail) {
+			int current = queue[head++];
+			int row = current / gridSize, column = current % gridSize;
+			for (int i = 0; i < 8; i++) {
+				int r = row + RING_ROWS[i], c = column + RING_COLUMNS[i];
+				if (!passabilityMap.isPassable(r, c, locomotion)) {
+					continue;
+				}
+				int neighbor = r * gridSize + c;
+				if (labelsFor[neighbor] != label) {
+					labelsFor[neighbor] = label;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return tail;
+	}
+}
@@ -0,0 +1,233 @@
+package ascension;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>CooperativePlanner</code> plans one player's moves one unit at a
+ * time, each around the squares already claimed by the units planned
+ * before it, in the manner of windowed hierarchical cooperative A*.
+ * </p>
+ *
+ * <p>
+ * Units are planned in the order their moves are given, and every plan
+ * is entered in a {@link ReservationTable ReservationTable}: the unit's
+ * square at sub-step zero, the square it reaches at each later sub-step,
+ * and its last square for the rest of the turn. The search runs over
+ * squares and sub-steps together, taking one step per sub-step, and
+ * refuses any step onto a square reserved at that sub-step, or which
+ * swaps squares with another unit. A unit planned this way cannot collide
+ * with any unit planned before it, so most of the collisions
+ * {@link PrimaryModel#rotateTurn() rotateTurn} would otherwise settle
+ * with coin flips never arise. Activities cannot yet express waiting in
+ * place, so neither can a plan.
+ * </p>
+ *
+ * <p>
+ * The search is A* with the open set in a {@link BucketQueue BucketQueue},
+ * over a window of <code>speed</code> squares around the start and at
+ * most <code>speed</code> sub-steps, with terrain costs and passability
+ * read from the player's {@link PassabilityMap PassabilityMap}. Its
+ * arrays are stamped with a generation, so they are reused from one plan
+ * to the next. A planner is not thread-safe.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class CooperativePlanner {
+
+	private static final int NONE = -1;
+
+	private final PassabilityMap passabilityMap;
+	private final ReservationTable reservationTable;
+	private final BucketQueue openSet;
+	private int[] gCosts, parents, touched, closed;
+	private int generation;
+
+	/**
+	 * Creates a new <code>CooperativePlanner</code> planning against the given reservations.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain planned over
+	 * @param reservationTable - the reservations planned around and added to
+	 */
+	CooperativePlanner(PassabilityMap passabilityMap, ReservationTable reservationTable) {
+		this.passabilityMap = passabilityMap;
+		this.reservationTable = reservationTable;
+		openSet = new BucketQueue(PathFinder.MAX_COST + 2);
+		gCosts = new int[0];
+		parents = new int[0];
+		touched = new int[0];
+		closed = new int[0];
+	}
+
+	/**
+	 * Finds a cheapest path from one square to another which keeps clear of every reservation.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#requestMoveTo(int, int) requestMoveTo(int, int)}
+	 * <li> {@link PrimaryModel#requestGroupMoveTo(List, int, int) requestGroupMoveTo(List, int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param speed - the distance the search may stray from the start, and the most steps it may take
+	 * @param locomotion - the locomotion of the moving unit
+	 * @return the squares stepped through, one per sub-step, excluding the start and ending with the destination,
+	 *         or null if no such path exists
+	 */
+	ArrayList<Point> getPath(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion) {
+		int maximumSteps = Math.min(speed, reservationTable.getDepth() - 1);
+		int side = speed * 2 + 1, area = side * side, rowOffset = sRow - speed, columnOffset = sColumn - speed;
+		if (Math.abs(dRow - sRow) > maximumSteps || Math.abs(dColumn - sColumn) > maximumSteps
+				|| !passabilityMap.isPassable(dRow, dColumn, locomotion)) {
+			return null;
+		}
+		reset(area * (maximumSteps + 1));
+
+		// A state is a square of the window at a sub-step, numbered subStep * area + square.
+		int start = speed * side + speed;
+		record(start, 0, NONE);
+		openSet.clear(chebyshev(sRow, sColumn, dRow, dColumn));
+		openSet.push(start, chebyshev(sRow, sColumn, dRow, dColumn));
+		int current;
+		while ((current = openSet.poll()) != NONE) {
+			if (closed[current] == generation) {
+				continue; // A stale entry for a state since reached more cheaply.
+			}
+			closed[current] = generation;
+			int subStep = current / area, square = current % area;
+			int row = square / side + rowOffset, column = square % side + columnOffset;
+			if (row == dRow && column == dColumn && subStep > 0 && reservationTable.isFreeFrom(row, column, subStep)) {
+				return tracePath(current, area, side, rowOffset, columnOffset);
+			}
+			if (subStep == maximumSteps) {
+				continue;
+			}
+			int mover = reservationTable.getOwner(row, column, subStep + 1);
+			for (int r = row - 1; r <= row + 1; r++) {
+				for (int c = column - 1; c <= column + 1; c++) {
+					if ((r == row && c == column) || Math.abs(r - sRow) > speed || Math.abs(c - sColumn) > speed
+							|| !passabilityMap.isPassable(r, c, locomotion)
+							|| reservationTable.getOwner(r, c, subStep + 1) != ReservationTable.NONE) {
+						continue;
+					}
+					// Whoever stands on the next square now must not be moving onto this one.
+					int stander = reservationTable.getOwner(r, c, subStep);
+					if (stander != ReservationTable.NONE && stander == mover) {
+						continue;
+					}
+					int next = (subStep + 1) * area + (r - rowOffset) * side + (c - columnOffset);
+					int gCost = gCosts[current] + passabilityMap.getCost(r * passabilityMap.getGridSize() + c, locomotion);
+					if (closed[next] == generation || (touched[next] == generation && gCost >= gCosts[next])) {
+						continue;
+					}
+					record(next, gCost, current);
+					openSet.push(next, gCost + chebyshev(r, c, dRow, dColumn));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reserves the squares of a path for a new owner: the start at sub-step
+	 * zero, one step per sub-step after, and the last square for the rest
+	 * of the turn.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel PrimaryModel}, for every move ordered while moves are cooperative
+	 * </ul>
+	 * </p>
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param path - the squares stepped through, excluding the start
+	 */
+	void reserve(int sRow, int sColumn, List<Point> path) {
+		int owner = reservationTable.newOwner();
+		reservationTable.reserve(sRow, sColumn, 0, owner);
+		Point last = new Point(sRow, sColumn);
+		for (int i = 0; i < path.size(); i++) {
+			last = path.get(i);
+			reservationTable.reserve(last.x, last.y, i + 1, owner);
+		}
+		for (int t = path.size() + 1; t < reservationTable.getDepth(); t++) {
+			reservationTable.reserve(last.x, last.y, t, owner);
+		}
+	}
+
+	/**
+	 * Forgets every reservation, ready for a new turn.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * </p>
+	 */
+	void clear() {
+		reservationTable.clear();
+	}
+
+	ReservationTable getReservationTable() {
+		return reservationTable;
+	}
+
+	private void reset(int states) {
+		if (gCosts.length < states) {
+			gCosts = new int[states];
+			parents = new int[states];
+			touched = new int[states];
+			closed = new int[states];
+			generation = 0;
+		}
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(touched, 0);
+			Arrays.fill(closed, 0);
+			generation = 1;
+		}
+	}
+
+	private void record(int state, int gCost, int parent) {
+		touched[state] = generation;
+		gCosts[state] = gCost;
+		parents[state] = parent;
+	}
+
+	private ArrayList<Point> tracePath(int goal, int area, int side, int rowOffset, int columnOffset) {
+		ArrayList<Point> path = new ArrayList<Point>(goal / area);
+		for (int state = goal; parents[state] != NONE; state = parents[state]) {
+			int square = state % area;
+			path.add(new Point(square / side + rowOffset, square % side + columnOffset));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private static int chebyshev(int row, int column, int destinationRow, int destinationColumn) {
+		return Math.max(Math.abs(row - destinationRow), Math.abs(column - destinationColumn));
+	}
+}
@@ -0,0 +1,245 @@
+package ascension;
+
+import java.util.Arrays;
+
+import ascension.Terrain.TerrainSubType;
+
+/**
+ * <p>
+ * <code>FieldOfView</code> works out which squares a unit can actually
+ * see once terrain is allowed to block sight.
+ * </p>
+ *
+ * <p>
+ * Sight is cast with recursive shadowcasting over the eight octants
+ * around the viewer, clipped to the same square of side
+ * <code>2 * sightRadius + 1</code> used by plain square vision. The
+ * slope bounds of every square in an octant depend only on its depth
+ * and lateral offset, so they are computed once per sight radius and
+ * cached as a stencil. Casting then reduces to walking the stencil,
+ * testing opacity bits, and narrowing the slope window.
+ * </p>
+ *
+ * <p>
+ * Opacity is held as a bitmap with one word-aligned row per map row,
+ * laid out like {@link VisibilityLayer VisibilityLayer}. Squares of
+ * <code>TerrainSubType.EIGHT</code> always block sight, and squares of
+ * <code>SEVEN</code> do as well when so configured. An open square is
+ * seen when the slope to its centre is unobstructed, while a square
+ * which blocks sight is seen when any part of it is, so walls are
+ * visible even though what lies behind them is not.
+ * </p>
+ *
+ * <p>
+ * A <code>FieldOfView</code> keeps scratch state between casts and is
+ * therefore not safe for use by several threads at once.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class FieldOfView {
+
+	// @formatter:off
+	// Each octant maps (depth, lateral) onto (row, column) offsets.
+	private static final int[][] OCTANTS = {
+			{ 1, 0, 0, 1 }, { 1, 0, 0, -1 }, { -1, 0, 0, 1 }, { -1, 0, 0, -1 },
+			{ 0, 1, 1, 0 }, { 0, 1, -1, 0 }, { 0, -1, 1, 0 }, { 0, -1, -1, 0 } };
+	// @formatter:on
+
+	private final int gridSize, wordsPerRow;
+	private final boolean sevenBlocksSight;
+	private final long[] opaque;
+	private Stencil[] stencils;
+	private final int[] marks;
+	private int generation;
+	private int[] visible;
+	private int visibleCount;
+
+	/*
+	 * The slopes bounding and centring every square of one octant out to a given depth.
+	 * The squares of depth d are stored at rowStart[d] through rowStart[d] + d.
+	 */
+	private static class Stencil {
+		final int[] rowStart;
+		final double[] low, centre, high;
+
+		Stencil(int radius) {
+			rowStart = new int[radius + 1];
+			int cells = 0;
+			for (int d = 1; d <= radius; d++) {
+				rowStart[d] = cells;
+				cells += d + 1;
+			}
+			low = new double[cells];
+			centre = new double[cells];
+			high = new double[cells];
+			for (int d = 1; d <= radius; d++) {
+				for (int i = 0; i <= d; i++) {
+					low[rowStart[d] + i] = (i - 0.5) / (d + 0.5);
+					centre[rowStart[d] + i] = (double) i / d;
+					high[rowStart[d] + i] = (i + 0.5) / (d - 0.5);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a new <code>FieldOfView</code> over the given terrain.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param terrain - the terrain of the map
+	 * @param sevenBlocksSight - if true, <code>TerrainSubType.SEVEN</code> blocks sight along with <code>EIGHT</code>
+	 */
+	FieldOfView(Terrain[][] terrain, boolean sevenBlocksSight) {
+		this.gridSize = terrain.length;
+		this.sevenBlocksSight = sevenBlocksSight;
+		wordsPerRow = (gridSize + 63) >>> 6;
+		opaque = new long[wordsPerRow * gridSize];
+		stencils = new Stencil[0];
+		marks = new int[gridSize * gridSize];
+		visible = new int[64];
+		for (int r = 0; r < gridSize; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				setTerrain(r, c, terrain[r][c].terrainSubType);
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether or not a terrain sub type blocks sight.
+	 *
+	 * @param terrainSubType - the terrain sub type
+	 * @param sevenBlocksSight - if true, <code>SEVEN</code> blocks sight along with <code>EIGHT</code>
+	 * @return true if the terrain blocks sight
+	 */
+	static boolean blocksSight(TerrainSubType terrainSubType, boolean sevenBlocksSight) {
+		return terrainSubType == TerrainSubType.EIGHT || (sevenBlocksSight && terrainSubType == TerrainSubType.SEVEN);
+	}
+
+	/**
+	 * Records the terrain of a square, updating whether or not it blocks sight.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param terrainSubType - the square's terrain sub type
+	 */
+	void setTerrain(int row, int column, TerrainSubType terrainSubType) {
+		int word = row * wordsPerRow + (column >>> 6);
+		if (blocksSight(terrainSubType, sevenBlocksSight)) {
+			opaque[word] |= 1L << column;
+		} else {
+			opaque[word] &= ~(1L << column);
+		}
+	}
+
+	boolean isOpaque(int row, int column) {
+		return (opaque[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	/**
+	 * Casts sight from a square and returns every square seen.
+	 *
+	 * @param row - the row of the viewer
+	 * @param column - the column of the viewer
+	 * @param radius - the viewer's sight radius
+	 * @return the squares seen, packed as <code>row * gridSize + column</code>, in ascending order
+	 */
+	int[] cast(int row, int column, int radius) {
+		if (++generation == 0) {
+			Arrays.fill(marks, 0);
+			generation = 1;
+		}
+		visibleCount = 0;
+		mark(row, column);
+		if (radius > 0) {
+			Stencil stencil = stencilFor(radius);
+			for (int[] octant : OCTANTS) {
+				castOctant(row, column, radius, stencil, octant, 1, 0.0, 1.0);
+			}
+		}
+		int[] cells = Arrays.copyOf(visible, visibleCount);
+		Arrays.sort(cells);
+		return cells;
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+
+	/*
+	 * Scans an octant depth by depth within the slope window [low, high].
+	 * Each run of blocking squares recurses on the window below it and
+	 * raises the window above it.
+	 */
+	private void castOctant(int row, int column, int radius, Stencil stencil, int[] octant, int depth, double low, double high) {
+		for (int d = depth; d <= radius && low < high; d++) {
+			boolean blocked = false;
+			double shadowEnd = low;
+			int start = stencil.rowStart[d];
+			for (int i = 0; i <= d; i++) {
+				double cellLow = stencil.low[start + i], cellHigh = stencil.high[start + i];
+				if (cellHigh < low) {
+					continue;
+				}
+				if (cellLow > high) {
+					break;
+				}
+				int r = row + d * octant[0] + i * octant[2], c = column + d * octant[1] + i * octant[3];
+				boolean onMap = r >= 0 && r < gridSize && c >= 0 && c < gridSize;
+				boolean blocking = !onMap || isOpaque(r, c);
+				// Open squares are seen when their centre is, blocking squares when any part is.
+				double cellCentre = stencil.centre[start + i];
+				if (onMap && (blocking || (cellCentre >= low && cellCentre <= high))) {
+					mark(r, c);
+				}
+				if (blocked) {
+					if (blocking) {
+						shadowEnd = cellHigh;
+					} else {
+						blocked = false;
+						low = shadowEnd;
+					}
+				} else if (blocking) {
+					if (d < radius) {
+						castOctant(row, column, radius, stencil, octant, d + 1, low, cellLow);
+					}
+					blocked = true;
+					shadowEnd = cellHigh;
+				}
+			}
+			if (blocked) {
+				return;
+			}
+		}
+	}
+
+	private void mark(int row, int column) {
+		int cell = row * gridSize + column;
+		if (marks[cell] == generation) { // Octants share their edges.
+			return;
+		}
+		marks[cell] = generation;
+		if (visibleCount == visible.length) {
+			visible = Arrays.copyOf(visible, visibleCount * 2);
+		}
+		visible[visibleCount++] = cell;
+	}
+
+	private Stencil stencilFor(int radius) {
+		if (radius >= stencils.length) {
+			stencils = Arrays.copyOf(stencils, radius + 1);
+		}
+		if (stencils[radius] == null) {
+			stencils[radius] = new Stencil(radius);
+		}
+		return stencils[radius];
+	}
+}
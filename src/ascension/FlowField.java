@@ -0,0 +1,170 @@
+package ascension;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>FlowField</code> holds, for every square of the map, the
+ * distance to one goal and the step to take towards it.
+ * </p>
+ *
+ * <p>
+ * A field is built by a single Dijkstra search outward from the goal,
+ * run backwards, so a square's distance is the least total
+ * {@link PathFinder#movementCost(Terrain.TerrainSubType, Locomotion) movement cost}
+ * of walking from it to the goal. Costs are small integers, so the
+ * search keeps its frontier in a {@link BucketQueue BucketQueue}. Each
+ * square settled records the direction of the square it was reached
+ * from, which is the next step on a cheapest way to the goal. Any number of
+ * units heading to the goal can then read their next step in constant
+ * time rather than each searching for its own path. Moves and
+ * passability are those of {@link PathFinder PathFinder}, read from its
+ * {@link PassabilityMap PassabilityMap}.
+ * </p>
+ *
+ * <p>
+ * A field never changes once built, so it may be read from any thread.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class FlowField {
+
+	/**
+	 * Marks a square from which the goal cannot be reached.
+	 */
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+	private static final byte NO_STEP = -1;
+
+	private final int gridSize, goalRow, goalColumn;
+	private final Locomotion locomotion;
+	private final int[] distances;
+	private final byte[] steps;
+
+	/**
+	 * Builds a new <code>FlowField</code> towards a goal.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link FlowFieldService#getFlowField(int, int, Locomotion) getFlowField(int, int, Locomotion)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain the field is built over
+	 * @param goalRow - the row of the goal
+	 * @param goalColumn - the column of the goal
+	 * @param locomotion - the locomotion of the units following the field
+	 */
+	FlowField(PassabilityMap passabilityMap, int goalRow, int goalColumn, Locomotion locomotion) {
+		this.goalRow = goalRow;
+		this.goalColumn = goalColumn;
+		this.locomotion = locomotion;
+		gridSize = passabilityMap.getGridSize();
+		distances = new int[gridSize * gridSize];
+		steps = new byte[gridSize * gridSize];
+		Arrays.fill(distances, UNREACHABLE);
+		Arrays.fill(steps, NO_STEP);
+
+		int goal = goalRow * gridSize + goalColumn;
+		if (!passabilityMap.isPassable(goal, locomotion)) {
+			return;
+		}
+		BucketQueue frontier = new BucketQueue(PathFinder.MAX_COST + 1);
+		boolean[] settled = new boolean[gridSize * gridSize];
+		frontier.clear(0);
+		distances[goal] = 0;
+		frontier.push(goal, 0);
+		while (!frontier.isEmpty()) {
+			int current = frontier.poll();
+			if (settled[current]) {
+				continue; // A stale entry for a square since reached more cheaply.
+			}
+			settled[current] = true;
+			int row = current / gridSize, column = current % gridSize;
+			// Stepping from a neighbor onto the current square costs what the current square costs to enter.
+			int distance = distances[current] + passabilityMap.getCost(current, locomotion);
+			for (int direction = 0; direction < 8; direction++) {
+				int r = row + JumpPointTable.DIRECTION_ROWS[direction], c = column + JumpPointTable.DIRECTION_COLUMNS[direction];
+				if (!passabilityMap.isPassable(r, c, locomotion)) {
+					continue;
+				}
+				int neighbor = r * gridSize + c;
+				if (settled[neighbor] || distance >= distances[neighbor]) {
+					continue;
+				}
+				distances[neighbor] = distance;
+				// The neighbor steps back the opposite way, towards the square it was reached from.
+				steps[neighbor] = (byte) (7 - direction);
+				frontier.push(neighbor, distance);
+			}
+		}
+	}
+
+	/**
+	 * Returns the least total movement cost of walking from a square to the goal.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the distance, or {@link FlowField#UNREACHABLE UNREACHABLE}
+	 */
+	int getDistance(int row, int column) {
+		return distances[row * gridSize + column];
+	}
+
+	/**
+	 * Returns the next square on the way from a square to the goal.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the next square, or null at the goal or where the goal cannot be reached
+	 */
+	Point getNextStep(int row, int column) {
+		byte step = steps[row * gridSize + column];
+		if (step == NO_STEP) {
+			return null;
+		}
+		return new Point(row + JumpPointTable.DIRECTION_ROWS[step], column + JumpPointTable.DIRECTION_COLUMNS[step]);
+	}
+
+	/**
+	 * Follows the field from a square for at most the given number of steps.
+	 *
+	 * @param row - the row of the start
+	 * @param column - the column of the start
+	 * @param maximumSteps - the most steps to take
+	 * @return the squares stepped through, excluding the start, or null if the goal cannot be reached
+	 */
+	ArrayList<Point> getPath(int row, int column, int maximumSteps) {
+		int distance = getDistance(row, column);
+		if (distance == UNREACHABLE) {
+			return null;
+		}
+		ArrayList<Point> path = new ArrayList<Point>(Math.min(distance, maximumSteps));
+		Point step;
+		while (path.size() < maximumSteps && (step = getNextStep(row, column)) != null) {
+			path.add(step);
+			row = step.x;
+			column = step.y;
+		}
+		return path;
+	}
+
+	int getGoalRow() {
+		return goalRow;
+	}
+
+	int getGoalColumn() {
+		return goalColumn;
+	}
+
+	Locomotion getLocomotion() {
+		return locomotion;
+	}
+}
@@ -0,0 +1,104 @@
+package ascension;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>FlowFieldService</code> hands out {@link FlowField FlowFields}
+ * over one player's view of the map, building each at most once.
+ * </p>
+ *
+ * <p>
+ * It sits beside that player's {@link PathFinder PathFinder}: the path
+ * finder answers single units, while a flow field serves every unit
+ * sent to the same goal. Fields are cached per goal and locomotion, the
+ * least recently used being dropped once {@link FlowFieldService#DEFAULT_CAPACITY DEFAULT_CAPACITY}
+ * are held, since each costs five bytes per square. A change of terrain
+ * anywhere may lengthen or shorten any route, so it drops every field.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class FlowFieldService {
+
+	/**
+	 * The number of fields kept at once.
+	 */
+	static final int DEFAULT_CAPACITY = 8;
+
+	private final PassabilityMap passabilityMap;
+	private final LinkedHashMap<Integer, FlowField> flowFields;
+
+	/**
+	 * Creates a new <code>FlowFieldService</code> holding no fields.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain fields are built over
+	 */
+	FlowFieldService(PassabilityMap passabilityMap) {
+		this.passabilityMap = passabilityMap;
+		flowFields = new LinkedHashMap<Integer, FlowField>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest) {
+				return size() > DEFAULT_CAPACITY;
+			}
+		};
+	}
+
+	/**
+	 * Returns the field leading to a goal, building it if need be.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#requestGroupMoveTo(java.util.List, int, int) requestGroupMoveTo(List, int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the goal
+	 * @param column - the column of the goal
+	 * @param locomotion - the locomotion of the units following the field
+	 * @return the flow field
+	 */
+	synchronized FlowField getFlowField(int row, int column, Locomotion locomotion) {
+		Integer key = (row * passabilityMap.getGridSize() + column) * Locomotion.values().length + locomotion.ordinal();
+		FlowField flowField = flowFields.get(key);
+		if (flowField == null) {
+			flowField = new FlowField(passabilityMap, row, column, locomotion);
+			flowFields.put(key, flowField);
+		}
+		return flowField;
+	}
+
+	/**
+	 * Drops every field. Must be called whenever the terrain of the navigable grid changes.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#changeTerrainAt(int, int, Terrain.TerrainSubType) changeTerrainAt(int, int, TerrainSubType)}
+	 * </ul>
+	 * </p>
+	 */
+	synchronized void terrainChanged() {
+		flowFields.clear();
+	}
+
+	synchronized int size() {
+		return flowFields.size();
+	}
+}
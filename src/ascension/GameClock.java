@@ -0,0 +1,228 @@
+package ascension;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * <code>GameClock</code> is a {@link TurnClock TurnClock} which paces
+ * ticks on a thread of its own and hands each one to an
+ * <code>Executor</code> to run.
+ * </p>
+ *
+ * <p>
+ * Ticks are scheduled against <code>System.nanoTime()</code>, which is
+ * monotonic, and each is due one tick length after the one before was
+ * due rather than after it finished, so the clock does not drift however
+ * long the ticks take. The clock waits for each tick to finish before
+ * pacing the next, so ticks never pile up behind a slow one; a tick which
+ * finishes after the next was due is counted as late, and the schedule
+ * restarts from then rather than rushing to catch up. The
+ * {@link GameClock.ClockMode ClockMode} sets the pace, and may be changed
+ * while the clock runs.
+ * </p>
+ *
+ * <p>
+ * The executor decides where ticks run. The
+ * {@link PrimaryController PrimaryController} runs them on the Swing
+ * event thread, alongside its input, so the event thread runs the game
+ * without pacing it; {@link GameClock#CALLING_THREAD CALLING_THREAD} runs
+ * them on the clock's own thread, for a model nothing else touches.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class GameClock implements TurnClock {
+
+	/**
+	 * The pace of a <code>GameClock</code>.
+	 */
+	enum ClockMode {
+		/**
+		 * One tick per tick length.
+		 */
+		REAL_TIME,
+		/**
+		 * One tick per tick length, divided by the acceleration.
+		 */
+		ACCELERATED,
+		/**
+		 * Each tick as soon as the one before has finished.
+		 */
+		AS_FAST_AS_POSSIBLE;
+		static final ClockMode clockModeOrdinals[] = values();
+	}
+
+	/**
+	 * Runs each tick on the clock's own thread.
+	 */
+	static final Executor CALLING_THREAD = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+	/**
+	 * The acceleration of a new clock.
+	 */
+	static final int DEFAULT_ACCELERATION = 10;
+
+	private final Executor executor;
+	private volatile ClockMode clockMode;
+	private volatile int acceleration;
+	private volatile Thread thread;
+	private volatile Runnable tick;
+	private volatile long tickNanos, tickCount, lateTickCount;
+
+	/**
+	 * Creates a new, stopped <code>GameClock</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryController#loadInitialGameState() loadInitialGameState()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param clockMode - the pace of the clock
+	 * @param executor - runs each tick
+	 */
+	GameClock(ClockMode clockMode, Executor executor) {
+		this.clockMode = clockMode;
+		this.executor = executor;
+		acceleration = DEFAULT_ACCELERATION;
+	}
+
+	@Override
+	public synchronized void start(Runnable tick, long tickNanos) {
+		this.tick = tick;
+		this.tickNanos = tickNanos;
+		if (thread == null) {
+			thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					pace(Thread.currentThread());
+				}
+			}, "Game clock");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			thread = null;
+		}
+	}
+
+	ClockMode getClockMode() {
+		return clockMode;
+	}
+
+	/**
+	 * Changes the pace of the clock, from the next tick on.
+	 *
+	 * @param clockMode - the new pace
+	 */
+	void setClockMode(ClockMode clockMode) {
+		this.clockMode = clockMode;
+		Thread pacer = thread;
+		if (pacer != null) {
+			LockSupport.unpark(pacer); // So that a wait under the old pace is cut short.
+		}
+	}
+
+	int getAcceleration() {
+		return acceleration;
+	}
+
+	/**
+	 * Sets how many times faster than real time an {@link ClockMode#ACCELERATED ACCELERATED} clock runs.
+	 *
+	 * @param acceleration - the speed up, at least one
+	 */
+	void setAcceleration(int acceleration) {
+		this.acceleration = Math.max(1, acceleration);
+	}
+
+	/**
+	 * Returns the number of ticks run since the clock was made.
+	 *
+	 * @return the number of ticks
+	 */
+	long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * Returns the number of ticks which finished after the next tick was due.
+	 *
+	 * @return the number of late ticks
+	 */
+	long getLateTickCount() {
+		return lateTickCount;
+	}
+
+	/*
+	 * Paces ticks for as long as the given thread is the clock's thread.
+	 */
+	private void pace(final Thread pacer) {
+		long due = System.nanoTime();
+		while (thread == pacer) {
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+				// Woken early by a change of pace, or by a stop, or spuriously; the due time is worked out again.
+				due = Math.min(due, System.nanoTime() + period());
+				continue;
+			}
+			final Runnable current = tick;
+			FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+
+				@Override
+				public void run() {
+					if (thread == pacer) {
+						current.run();
+					}
+				}
+			}, null);
+			executor.execute(task);
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				return;
+			} catch (ExecutionException e) {
+				stop();
+				throw new IllegalStateException("A tick of the game clock failed.", e.getCause());
+			}
+			tickCount++;
+			due += period();
+			long now = System.nanoTime();
+			if (due < now) {
+				if (clockMode != ClockMode.AS_FAST_AS_POSSIBLE) {
+					lateTickCount++;
+				}
+				due = now;
+			}
+		}
+	}
+
+	private long period() {
+		switch (clockMode) {
+		case REAL_TIME:
+			return tickNanos;
+		case ACCELERATED:
+			return tickNanos / acceleration;
+		default:
+			return 0;
+		}
+	}
+}
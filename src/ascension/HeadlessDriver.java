@@ -0,0 +1,113 @@
+package ascension;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import ascension.PrimaryModel.Player;
+
+/**
+ * <p>
+ * <code>HeadlessDriver</code> plays scripted matches on a
+ * {@link PrimaryModel PrimaryModel} with no listener and no clock, and
+ * reports how many turns it resolves per second. Nothing of Swing or
+ * the window system is loaded, so it runs on machines with no display.
+ * </p>
+ *
+ * <p>
+ * Arguments, all optional, are the grid size, the number of players, the
+ * number of units placed for each player, the number of turns, the seed,
+ * and a file to write the match's {@link TurnLog TurnLog} to, for the
+ * {@link ReplayEngine ReplayEngine}. Units are placed at random, and each
+ * turn every unit is ordered to a random square within its move speed,
+ * so that resolution sees a steady load of moves and conflicts. The
+ * script draws from its own generator, seeded like the match, so a run
+ * is repeated exactly by repeating its arguments. A turn here is a full
+ * round: every player in turn gives orders, and the round is resolved.
+ * What the model prints while playing is discarded, and the time of each
+ * phase of the turn is reported against its {@link PhaseBudgets budget}.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+public class HeadlessDriver {
+
+	public static void main(String args[]) throws IOException {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int unitsPerPlayer = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+		int turns = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+		String logFile = args.length > 5 ? args[5] : null;
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+			}
+		}));
+		long start = System.nanoTime();
+		PrimaryModel model = new PrimaryModel();
+		model.loadInitialModelState(gridSize, playerCount, seed);
+		Random script = new Random(seed);
+		int placed = 0;
+		for (int k = 0; k < playerCount; k++) {
+			// Squares taken or impassable are skipped, up to a point, so a crowded map still sets up.
+			int placedForPlayer = 0;
+			for (int i = 0; i < unitsPerPlayer * 4 && placedForPlayer < unitsPerPlayer; i++) {
+				if (model.placeUnit(Player.playerOrdinals[k], script.nextInt(gridSize), script.nextInt(gridSize)) != null) {
+					placedForPlayer++;
+				}
+			}
+			placed += placedForPlayer;
+		}
+		long setUp = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int turn = 0; turn < turns; turn++) {
+			for (int k = 0; k < playerCount; k++) {
+				orderAll(model, model.listOfActiveUnitArrays.get(k), script);
+				model.rotateTurn();
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		System.setOut(out);
+
+		System.out.println("grid " + gridSize + ", " + playerCount + " players, " + placed + " units placed, seed " + seed);
+		System.out.printf("set up %.2f ms, %d turns in %.2f s, %.1f turns per second%n", setUp / 1e6, turns, nanos / 1e9, turns / (nanos / 1e9));
+		if (logFile != null) {
+			OutputStream logOut = new BufferedOutputStream(new FileOutputStream(logFile));
+			try {
+				model.turnLog.writeTo(logOut);
+			} finally {
+				logOut.close();
+			}
+			System.out.println("turn log, " + model.turnLog.size() + " bytes, written to " + logFile);
+		}
+		model.phaseBudgets.printReport(System.out);
+		model.workerPool.shutdown();
+	}
+
+	/*
+	 * Orders every unit of the active player to a random square within its move speed.
+	 */
+	private static void orderAll(PrimaryModel model, UnitGrid units, Random script) {
+		for (int slot = 0; slot < units.capacity(); slot++) {
+			AbstractUnit unit = units.unitAt(slot);
+			if (unit == null) {
+				continue;
+			}
+			int speed = unit.getMovSpd();
+			int row = Math.max(0, Math.min(model.gridSize - 1, unit.curLoc.x + script.nextInt(speed * 2 + 1) - speed));
+			int column = Math.max(0, Math.min(model.gridSize - 1, unit.curLoc.y + script.nextInt(speed * 2 + 1) - speed));
+			model.focusTarget = unit;
+			model.requestMoveTo(row, column);
+		}
+	}
+}
@@ -0,0 +1,536 @@
+package ascension;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>HierarchicalPathFinder</code> plans paths across the whole map
+ * by searching an abstraction of it, in the manner of HPA*.
+ * </p>
+ *
+ * <p>
+ * The map is cut into square clusters. Wherever units can step from
+ * one cluster into the next, an entrance is placed: at both ends of a
+ * wide opening, in the middle of a narrow one, and wherever a lone
+ * diagonal step crosses a border or corner. The squares either side of
+ * each entrance become nodes, and the cheapest way between every pair
+ * of nodes within a cluster is precomputed by a Dijkstra search confined
+ * to it. Like every other search, a step costs the
+ * {@link PathFinder#movementCost(Terrain.TerrainSubType, Locomotion) movement cost}
+ * of the square stepped onto, including the step across an entrance. A
+ * long path is then found by an A* search over nodes alone, and refined
+ * afterwards into squares, one cluster at a time. Paths are not always
+ * the very cheapest, since they must pass through entrances, but they
+ * are never blocked where a path exists.
+ * </p>
+ *
+ * <p>
+ * Each locomotion has its own abstraction, built the first time it is
+ * needed. A terrain change marks the cluster holding it, and any
+ * cluster sharing the border it lies on, for rebuilding before the next
+ * search; the rest of the abstraction is kept.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class HierarchicalPathFinder {
+
+	/**
+	 * The side of a cluster used by {@link PathFinder PathFinder}.
+	 */
+	static final int DEFAULT_CLUSTER_SIZE = 16;
+	// Openings at least this wide get an entrance at each end instead of one in the middle.
+	private static final int WIDE_ENTRANCE = 6;
+	private static final int NONE = -1, UNREACHABLE = Integer.MAX_VALUE;
+
+	private final PassabilityMap passabilityMap;
+	private final int gridSize, clusterSize, clustersPerSide;
+	private final Abstraction[] abstractions;
+
+	// Abstract searches run over map squares, so their workspaces are map sized.
+	private static final ThreadLocal<SearchWorkspace> workspaces = new ThreadLocal<SearchWorkspace>() {
+
+		@Override
+		protected SearchWorkspace initialValue() {
+			return new SearchWorkspace();
+		}
+	};
+	private static final ThreadLocal<ClusterSearch> clusterSearches = new ThreadLocal<ClusterSearch>() {
+
+		@Override
+		protected ClusterSearch initialValue() {
+			return new ClusterSearch();
+		}
+	};
+
+	/*
+	 * The abstract graph for one locomotion. Nodes are identified by
+	 * their map square, and each cluster keeps its nodes along with the
+	 * distances between every pair of them.
+	 */
+	private class Abstraction {
+		final Locomotion locomotion;
+		final int[] nodeIndex;
+		final int[][] clusterNodes, clusterDistances;
+		final boolean[] dirty;
+		boolean anyDirty;
+
+		Abstraction(Locomotion locomotion) {
+			this.locomotion = locomotion;
+			nodeIndex = new int[gridSize * gridSize];
+			Arrays.fill(nodeIndex, NONE);
+			int clusters = clustersPerSide * clustersPerSide;
+			clusterNodes = new int[clusters][0];
+			clusterDistances = new int[clusters][0];
+			dirty = new boolean[clusters];
+			Arrays.fill(dirty, true);
+			anyDirty = true;
+		}
+	}
+
+	/**
+	 * Creates a new <code>HierarchicalPathFinder</code> with no abstraction built yet.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain searched over
+	 * @param clusterSize - the number of squares in one row of a cluster
+	 */
+	HierarchicalPathFinder(PassabilityMap passabilityMap, int clusterSize) {
+		this.passabilityMap = passabilityMap;
+		this.clusterSize = clusterSize;
+		gridSize = passabilityMap.getGridSize();
+		clustersPerSide = (gridSize + clusterSize - 1) / clusterSize;
+		abstractions = new Abstraction[Locomotion.values().length];
+	}
+
+	/**
+	 * Finds a path between any two squares of the map.
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param locomotion - the locomotion of the moving unit
+	 * @return the squares stepped through, excluding the start and ending with the destination,
+	 *         or null if the destination cannot be reached
+	 */
+	ArrayList<Point> getPath(int sRow, int sColumn, int dRow, int dColumn, Locomotion locomotion) {
+		Abstraction abstraction = prepare(locomotion);
+		int start = sRow * gridSize + sColumn, destination = dRow * gridSize + dColumn;
+		if (!passabilityMap.isPassable(destination, locomotion)) {
+			return null;
+		}
+		int startCluster = clusterOf(start), destinationCluster = clusterOf(destination);
+		ClusterSearch clusterSearch = clusterSearches.get();
+
+		// Tie the start and destination into the graph by searching their own clusters.
+		clusterSearch.run(passabilityMap, abstraction.locomotion, clusterSize, startCluster, start);
+		int[] startNodes = abstraction.clusterNodes[startCluster];
+		int[] startCosts = new int[startNodes.length];
+		for (int i = 0; i < startNodes.length; i++) {
+			startCosts[i] = clusterSearch.distanceTo(startNodes[i]);
+		}
+		int directCost = startCluster == destinationCluster ? clusterSearch.distanceTo(destination) : UNREACHABLE;
+		clusterSearch.run(passabilityMap, abstraction.locomotion, clusterSize, destinationCluster, destination);
+		int[] destinationNodes = abstraction.clusterNodes[destinationCluster];
+		int[] destinationCosts = new int[destinationNodes.length];
+		for (int i = 0; i < destinationNodes.length; i++) {
+			// Walked the other way, a path pays for the destination rather than the node it starts from.
+			int distance = clusterSearch.distanceTo(destinationNodes[i]);
+			destinationCosts[i] = distance == UNREACHABLE ? UNREACHABLE
+					: distance + passabilityMap.getCost(destination, locomotion) - passabilityMap.getCost(destinationNodes[i], locomotion);
+		}
+
+		SearchWorkspace workspace = workspaces.get();
+		workspace.reset(gridSize, 0, 0);
+		workspace.record(start, 0, chebyshev(start, destination), SearchWorkspace.NONE);
+		workspace.pushOpen(start, workspace.getFCost(start), chebyshev(start, destination));
+		int current;
+		while ((current = workspace.pollOpen()) != SearchWorkspace.NONE) {
+			if (current == destination) {
+				return refine(abstraction, clusterSearch, workspace, start, destination);
+			}
+			workspace.close(current);
+			int gCost = workspace.getGCost(current), cluster = clusterOf(current), index = abstraction.nodeIndex[current];
+			if (current == start) {
+				for (int i = 0; i < startNodes.length; i++) {
+					relax(workspace, current, startNodes[i], gCost, startCosts[i], destination);
+				}
+				relax(workspace, current, destination, gCost, directCost, destination);
+			} else if (index != NONE) {
+				int[] nodes = abstraction.clusterNodes[cluster], distances = abstraction.clusterDistances[cluster];
+				for (int j = 0; j < nodes.length; j++) {
+					relax(workspace, current, nodes[j], gCost, distances[index * nodes.length + j], destination);
+				}
+			}
+			if (index != NONE) {
+				// Entrances lead straight into whichever neighboring cluster's node lies beside them.
+				int row = current / gridSize, column = current % gridSize;
+				for (int r = Math.max(0, row - 1); r < Math.min(gridSize, row + 2); r++) {
+					for (int c = Math.max(0, column - 1); c < Math.min(gridSize, column + 2); c++) {
+						int neighbor = r * gridSize + c;
+						if (abstraction.nodeIndex[neighbor] != NONE && clusterOf(neighbor) != cluster) {
+							relax(workspace, current, neighbor, gCost, passabilityMap.getCost(neighbor, locomotion), destination);
+						}
+					}
+				}
+				if (cluster == destinationCluster) {
+					relax(workspace, current, destination, gCost, destinationCosts[index], destination);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Marks the clusters affected by a change of terrain for rebuilding.
+	 *
+	 * @param row - the row of the changed square
+	 * @param column - the column of the changed square
+	 */
+	synchronized void terrainChanged(int row, int column) {
+		int clusterRow = row / clusterSize, clusterColumn = column / clusterSize;
+		for (Abstraction abstraction : abstractions) {
+			if (abstraction == null) {
+				continue;
+			}
+			markDirty(abstraction, clusterRow, clusterColumn);
+			// A square on a cluster's edge also decides the entrances of the cluster across that edge.
+			if (row % clusterSize == 0) {
+				markDirty(abstraction, clusterRow - 1, clusterColumn);
+			}
+			if (row % clusterSize == clusterSize - 1) {
+				markDirty(abstraction, clusterRow + 1, clusterColumn);
+			}
+			if (column % clusterSize == 0) {
+				markDirty(abstraction, clusterRow, clusterColumn - 1);
+			}
+			if (column % clusterSize == clusterSize - 1) {
+				markDirty(abstraction, clusterRow, clusterColumn + 1);
+			}
+			// Corner squares also decide the diagonal entrance to the cluster across the corner.
+			if ((row % clusterSize == 0 || row % clusterSize == clusterSize - 1)
+					&& (column % clusterSize == 0 || column % clusterSize == clusterSize - 1)) {
+				markDirty(abstraction, row % clusterSize == 0 ? clusterRow - 1 : clusterRow + 1,
+						column % clusterSize == 0 ? clusterColumn - 1 : clusterColumn + 1);
+			}
+		}
+	}
+
+	int getClusterSize() {
+		return clusterSize;
+	}
+
+	private void markDirty(Abstraction abstraction, int clusterRow, int clusterColumn) {
+		if (clusterRow < 0 || clusterRow >= clustersPerSide || clusterColumn < 0 || clusterColumn >= clustersPerSide) {
+			return;
+		}
+		abstraction.dirty[clusterRow * clustersPerSide + clusterColumn] = true;
+		abstraction.anyDirty = true;
+	}
+
+	/*
+	 * Returns the abstraction for a locomotion with every dirty cluster rebuilt.
+	 */
+	private synchronized Abstraction prepare(Locomotion locomotion) {
+		Abstraction abstraction = abstractions[locomotion.ordinal()];
+		if (abstraction == null) {
+			abstraction = new Abstraction(locomotion);
+			abstractions[locomotion.ordinal()] = abstraction;
+		}
+		if (abstraction.anyDirty) {
+			// Nodes first, since the distances of a cluster only need its own nodes.
+			for (int cluster = 0; cluster < abstraction.dirty.length; cluster++) {
+				if (abstraction.dirty[cluster]) {
+					rebuildNodes(abstraction, cluster);
+				}
+			}
+			ClusterSearch clusterSearch = clusterSearches.get();
+			for (int cluster = 0; cluster < abstraction.dirty.length; cluster++) {
+				if (abstraction.dirty[cluster]) {
+					rebuildDistances(abstraction, clusterSearch, cluster);
+					abstraction.dirty[cluster] = false;
+				}
+			}
+			abstraction.anyDirty = false;
+		}
+		return abstraction;
+	}
+
+	private void rebuildNodes(Abstraction abstraction, int cluster) {
+		for (int node : abstraction.clusterNodes[cluster]) {
+			abstraction.nodeIndex[node] = NONE;
+		}
+		int clusterRow = cluster / clustersPerSide, clusterColumn = cluster % clustersPerSide;
+		int rowStart = clusterRow * clusterSize, rowEnd = Math.min(rowStart + clusterSize, gridSize);
+		int columnStart = clusterColumn * clusterSize, columnEnd = Math.min(columnStart + clusterSize, gridSize);
+		IntList nodes = new IntList();
+
+		// Each border is scanned the same way from both sides, so the clusters agree on its entrances.
+		if (clusterRow > 0) {
+			scanBorder(abstraction, nodes, false, rowStart - 1, columnStart, columnEnd, false);
+		}
+		if (rowEnd < gridSize) {
+			scanBorder(abstraction, nodes, false, rowEnd - 1, columnStart, columnEnd, true);
+		}
+		if (clusterColumn > 0) {
+			scanBorder(abstraction, nodes, true, columnStart - 1, rowStart, rowEnd, false);
+		}
+		if (columnEnd < gridSize) {
+			scanBorder(abstraction, nodes, true, columnEnd - 1, rowStart, rowEnd, true);
+		}
+		scanCorner(abstraction, nodes, rowStart, columnStart, -1, -1);
+		scanCorner(abstraction, nodes, rowStart, columnEnd - 1, -1, 1);
+		scanCorner(abstraction, nodes, rowEnd - 1, columnStart, 1, -1);
+		scanCorner(abstraction, nodes, rowEnd - 1, columnEnd - 1, 1, 1);
+
+		int[] cells = nodes.toArray();
+		Arrays.sort(cells);
+		int count = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (i == 0 || cells[i] != cells[i - 1]) {
+				cells[count++] = cells[i];
+			}
+		}
+		cells = Arrays.copyOf(cells, count);
+		for (int i = 0; i < cells.length; i++) {
+			abstraction.nodeIndex[cells[i]] = i;
+		}
+		abstraction.clusterNodes[cluster] = cells;
+	}
+
+	/*
+	 * Scans the border between line and line + 1, which are rows, or columns
+	 * if vertical, over the given span. Squares on the first side are taken
+	 * when takeFirst is set, squares on the second side otherwise.
+	 */
+	private void scanBorder(Abstraction abstraction, IntList nodes, boolean vertical, int line, int spanStart, int spanEnd,
+			boolean takeFirst) {
+		int runStart = NONE;
+		for (int p = spanStart; p <= spanEnd; p++) {
+			boolean open = p < spanEnd && walkable(abstraction, vertical, line, p) && walkable(abstraction, vertical, line + 1, p);
+			if (open && runStart == NONE) {
+				runStart = p;
+			} else if (!open && runStart != NONE) {
+				int runEnd = p - 1;
+				if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+					nodes.add(square(vertical, takeFirst ? line : line + 1, runStart));
+					nodes.add(square(vertical, takeFirst ? line : line + 1, runEnd));
+				} else {
+					nodes.add(square(vertical, takeFirst ? line : line + 1, (runStart + runEnd) >>> 1));
+				}
+				runStart = NONE;
+			}
+		}
+		// A diagonal step can still cross where no straight one can.
+		for (int p = spanStart; p < spanEnd - 1; p++) {
+			if ((walkable(abstraction, vertical, line, p) && walkable(abstraction, vertical, line + 1, p))
+					|| (walkable(abstraction, vertical, line, p + 1) && walkable(abstraction, vertical, line + 1, p + 1))) {
+				continue;
+			}
+			if (walkable(abstraction, vertical, line, p) && walkable(abstraction, vertical, line + 1, p + 1)) {
+				nodes.add(takeFirst ? square(vertical, line, p) : square(vertical, line + 1, p + 1));
+			} else if (walkable(abstraction, vertical, line, p + 1) && walkable(abstraction, vertical, line + 1, p)) {
+				nodes.add(takeFirst ? square(vertical, line, p + 1) : square(vertical, line + 1, p));
+			}
+		}
+	}
+
+	private void scanCorner(Abstraction abstraction, IntList nodes, int row, int column, int dRow, int dColumn) {
+		int acrossRow = row + dRow, acrossColumn = column + dColumn;
+		if (acrossRow < 0 || acrossRow >= gridSize || acrossColumn < 0 || acrossColumn >= gridSize) {
+			return;
+		}
+		if (passabilityMap.isPassable(row * gridSize + column, abstraction.locomotion)
+				&& passabilityMap.isPassable(acrossRow * gridSize + acrossColumn, abstraction.locomotion)) {
+			nodes.add(row * gridSize + column);
+		}
+	}
+
+	private boolean walkable(Abstraction abstraction, boolean vertical, int line, int p) {
+		return passabilityMap.isPassable(square(vertical, line, p), abstraction.locomotion);
+	}
+
+	private int square(boolean vertical, int line, int p) {
+		return vertical ? p * gridSize + line : line * gridSize + p;
+	}
+
+	private void rebuildDistances(Abstraction abstraction, ClusterSearch clusterSearch, int cluster) {
+		int[] nodes = abstraction.clusterNodes[cluster];
+		int[] distances = new int[nodes.length * nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			clusterSearch.run(passabilityMap, abstraction.locomotion, clusterSize, cluster, nodes[i]);
+			for (int j = 0; j < nodes.length; j++) {
+				distances[i * nodes.length + j] = clusterSearch.distanceTo(nodes[j]);
+			}
+		}
+		abstraction.clusterDistances[cluster] = distances;
+	}
+
+	private void relax(SearchWorkspace workspace, int from, int to, int gCost, int cost, int destination) {
+		if (cost == UNREACHABLE || to == from || workspace.isClosed(to)) {
+			return;
+		}
+		int tentative = gCost + cost;
+		if (tentative >= workspace.getGCost(to)) {
+			return;
+		}
+		int hCost = chebyshev(to, destination);
+		workspace.record(to, tentative, tentative + hCost, from);
+		workspace.pushOpen(to, tentative + hCost, hCost);
+	}
+
+	/*
+	 * Expands the chain of nodes found by the abstract search into squares.
+	 * Consecutive nodes either share a cluster, and are joined by a search
+	 * confined to it, or sit either side of an entrance one step apart.
+	 */
+	private ArrayList<Point> refine(Abstraction abstraction, ClusterSearch clusterSearch, SearchWorkspace workspace, int start,
+			int destination) {
+		IntList chain = new IntList();
+		for (int node = destination; node != SearchWorkspace.NONE; node = workspace.getParent(node)) {
+			chain.add(node);
+		}
+		ArrayList<Point> path = new ArrayList<Point>(workspace.getGCost(destination));
+		IntList leg = new IntList();
+		for (int i = chain.size() - 1; i > 0; i--) {
+			int from = chain.get(i), to = chain.get(i - 1);
+			if (clusterOf(from) != clusterOf(to)) {
+				path.add(new Point(to / gridSize, to % gridSize));
+				continue;
+			}
+			clusterSearch.run(passabilityMap, abstraction.locomotion, clusterSize, clusterOf(from), from);
+			leg.clear();
+			for (int square = to; square != from; square = clusterSearch.parentOf(square)) {
+				leg.add(square);
+			}
+			for (int j = leg.size() - 1; j >= 0; j--) {
+				path.add(new Point(leg.get(j) / gridSize, leg.get(j) % gridSize));
+			}
+		}
+		return path;
+	}
+
+	private int clusterOf(int square) {
+		return (square / gridSize / clusterSize) * clustersPerSide + (square % gridSize) / clusterSize;
+	}
+
+	private int chebyshev(int from, int to) {
+		return Math.max(Math.abs(from / gridSize - to / gridSize), Math.abs(from % gridSize - to % gridSize));
+	}
+
+	/*
+	 * A Dijkstra search confined to one cluster, giving the least cost of
+	 * reaching every square of it from a source along with the way back.
+	 * Step costs are small, so the frontier is a bucket queue.
+	 */
+	private static class ClusterSearch {
+		private final BucketQueue frontier = new BucketQueue(PathFinder.MAX_COST + 1);
+		private int gridSize, rowStart, columnStart, rows, columns;
+		private int[] distances = new int[0], parents = new int[0];
+		private boolean[] settled = new boolean[0];
+
+		void run(PassabilityMap passabilityMap, Locomotion locomotion, int clusterSize, int cluster, int source) {
+			gridSize = passabilityMap.getGridSize();
+			int clustersPerSide = (gridSize + clusterSize - 1) / clusterSize;
+			rowStart = cluster / clustersPerSide * clusterSize;
+			columnStart = cluster % clustersPerSide * clusterSize;
+			rows = Math.min(clusterSize, gridSize - rowStart);
+			columns = Math.min(clusterSize, gridSize - columnStart);
+			if (distances.length < clusterSize * clusterSize) {
+				distances = new int[clusterSize * clusterSize];
+				parents = new int[clusterSize * clusterSize];
+				settled = new boolean[clusterSize * clusterSize];
+			}
+			Arrays.fill(distances, 0, rows * columns, UNREACHABLE);
+			Arrays.fill(settled, 0, rows * columns, false);
+			if (!passabilityMap.isPassable(source, locomotion)) {
+				return;
+			}
+			int local = toLocal(source);
+			distances[local] = 0;
+			parents[local] = NONE;
+			frontier.clear(0);
+			frontier.push(local, 0);
+			while (!frontier.isEmpty()) {
+				int current = frontier.poll();
+				if (settled[current]) {
+					continue; // A stale entry for a square since reached more cheaply.
+				}
+				settled[current] = true;
+				int row = current / columns, column = current % columns;
+				for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++) {
+					for (int c = Math.max(0, column - 1); c < Math.min(columns, column + 2); c++) {
+						int neighbor = r * columns + c, square = (rowStart + r) * gridSize + columnStart + c;
+						if (settled[neighbor] || !passabilityMap.isPassable(square, locomotion)) {
+							continue;
+						}
+						int distance = distances[current] + passabilityMap.getCost(square, locomotion);
+						if (distance >= distances[neighbor]) {
+							continue;
+						}
+						distances[neighbor] = distance;
+						parents[neighbor] = current;
+						frontier.push(neighbor, distance);
+					}
+				}
+			}
+		}
+
+		int distanceTo(int square) {
+			return distances[toLocal(square)];
+		}
+
+		int parentOf(int square) {
+			int parent = parents[toLocal(square)];
+			return (rowStart + parent / columns) * gridSize + columnStart + parent % columns;
+		}
+
+		private int toLocal(int square) {
+			return (square / gridSize - rowStart) * columns + square % gridSize - columnStart;
+		}
+	}
+
+	/*
+	 * A growable list of ints.
+	 */
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>IndexedHeap</code> is a binary min-heap of small non-negative
+ * int items, each with an int key, which tracks where every item sits.
+ * </p>
+ *
+ * <p>
+ * Besides the heap array itself, the heap keeps each item's key and its
+ * position in the heap, both indexed by item. Membership is therefore a
+ * single comparison, and an item whose key drops can be sifted up from
+ * where it already is instead of being pushed a second time. Positions
+ * are checked against the heap array before being trusted, so clearing
+ * the heap only resets its size. Ties between equal keys go to the lower
+ * item, which keeps the order of removal deterministic.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class IndexedHeap {
+
+	private int[] heap, keys, positions;
+	private int size;
+
+	/**
+	 * Creates a new, empty <code>IndexedHeap</code>.
+	 *
+	 * @param capacity - one more than the highest item expected
+	 */
+	IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new int[capacity];
+		positions = new int[capacity];
+	}
+
+	/**
+	 * Grows the heap, if need be, so that it can hold every item below the given bound.
+	 * The heap must be empty.
+	 *
+	 * @param capacity - one more than the highest item expected
+	 */
+	void ensureCapacity(int capacity) {
+		if (heap.length < capacity) {
+			heap = new int[capacity];
+			keys = new int[capacity];
+			positions = new int[capacity];
+		}
+	}
+
+	/**
+	 * Empties the heap in constant time.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Indicates whether or not an item is in the heap.
+	 *
+	 * @param item - the item
+	 * @return true if the item is in the heap
+	 */
+	boolean contains(int item) {
+		int position = positions[item];
+		return position < size && heap[position] == item;
+	}
+
+	/**
+	 * Returns the key of an item in the heap.
+	 *
+	 * @param item - an item in the heap
+	 * @return the item's key
+	 */
+	int keyOf(int item) {
+		return keys[item];
+	}
+
+	/**
+	 * Adds an item, or lowers its key if it is already present with a higher one.
+	 *
+	 * @param item - the item
+	 * @param key - the item's key
+	 * @return true if the heap changed
+	 */
+	boolean offer(int item, int key) {
+		if (contains(item)) {
+			return decreaseKey(item, key);
+		}
+		keys[item] = key;
+		heap[size] = item;
+		positions[item] = size;
+		siftUp(size++);
+		return true;
+	}
+
+	/**
+	 * Lowers the key of an item in the heap.
+	 *
+	 * @param item - an item in the heap
+	 * @param key - the new key
+	 * @return true if the key was lowered, false if it was already no higher
+	 */
+	boolean decreaseKey(int item, int key) {
+		if (key >= keys[item]) {
+			return false;
+		}
+		keys[item] = key;
+		siftUp(positions[item]);
+		return true;
+	}
+
+	/**
+	 * Returns the item of lowest key without removing it.
+	 *
+	 * @return the item, or -1 if the heap is empty
+	 */
+	int peek() {
+		return size == 0 ? -1 : heap[0];
+	}
+
+	/**
+	 * Removes and returns the item of lowest key.
+	 *
+	 * @return the item, or -1 if the heap is empty
+	 */
+	int poll() {
+		if (size == 0) {
+			return -1;
+		}
+		int top = heap[0];
+		int last = heap[--size];
+		if (size > 0) {
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		// Leave a position which no longer matches the heap array.
+		positions[top] = size;
+		return top;
+	}
+
+	private boolean less(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void siftUp(int index) {
+		int item = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!less(item, heap[parent])) {
+				break;
+			}
+			heap[index] = heap[parent];
+			positions[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = item;
+		positions[item] = index;
+	}
+
+	private void siftDown(int index) {
+		int item = heap[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && less(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], item)) {
+				break;
+			}
+			heap[index] = heap[child];
+			positions[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = item;
+		positions[item] = index;
+	}
+}
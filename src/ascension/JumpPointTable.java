@@ -0,0 +1,234 @@
+package ascension;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>JumpPointTable</code> holds precomputed jump distances for
+ * Jump Point Search over one player's view of the map.
+ * </p>
+ *
+ * <p>
+ * For every square, every one of the eight directions, and every
+ * locomotion, the table records how far a unit can travel from that
+ * square in that direction before reaching either a jump point or a
+ * square it cannot enter. A positive entry <code>d</code> means a jump
+ * point lies <code>d</code> steps away; an entry <code>-d</code>, or
+ * zero, means <code>d</code> open steps are followed by a wall. A jump
+ * therefore costs one lookup instead of a scan of the squares passed.
+ * </p>
+ *
+ * <p>
+ * Jump points are those of Jump Point Search with corner cutting, the
+ * same moves {@link PathFinder PathFinder} allows: a straight move stops
+ * beside a wall corner which opens up a new diagonal, and a diagonal move
+ * stops wherever one of its straight components would stop. Tables are
+ * built lazily per locomotion, at sixteen bytes per square each, and
+ * patched in place by
+ * {@link JumpPointTable#terrainChanged(int, int) terrainChanged(int, int)}
+ * when terrain changes.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class JumpPointTable {
+
+	// @formatter:off
+	// The eight directions, in the same order as the path finder's.
+	static final int[] DIRECTION_ROWS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	static final int[] DIRECTION_COLUMNS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+	// @formatter:on
+
+	private final PassabilityMap passabilityMap;
+	private final int gridSize;
+	private final short[][][] distances;
+
+	/**
+	 * Creates a new <code>JumpPointTable</code> with nothing computed yet.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param passabilityMap - the passability of the terrain searched over
+	 */
+	JumpPointTable(PassabilityMap passabilityMap) {
+		this.passabilityMap = passabilityMap;
+		gridSize = passabilityMap.getGridSize();
+		distances = new short[Locomotion.values().length][][];
+	}
+
+	/**
+	 * Returns the jump distances for a locomotion, building them if they
+	 * are not yet. Entries are indexed by direction and then by packed
+	 * square; a positive entry is the number of steps to a jump point, and
+	 * any other the negated number of open steps before a wall. The arrays
+	 * returned stay valid across terrain changes, so a search may fetch
+	 * them once and index them directly.
+	 *
+	 * @param locomotion - the locomotion of the moving unit
+	 * @return the jump distances, by direction then square
+	 */
+	synchronized short[][] getDistances(Locomotion locomotion) {
+		if (distances[locomotion.ordinal()] == null) {
+			distances[locomotion.ordinal()] = build(locomotion);
+		}
+		return distances[locomotion.ordinal()];
+	}
+
+	/**
+	 * Brings every built table up to date after the terrain of a square
+	 * changed.
+	 *
+	 * <p>
+	 * A straight entry looks no further than one square to either side of
+	 * its line, so only the straight entries along the three rows and three
+	 * columns through the square can change, and those lines are redone.
+	 * A diagonal entry depends only on the entry ahead of it and on what
+	 * lies around the square ahead, so the diagonal entries behind each
+	 * square of those lines are redone, walking back along the diagonal
+	 * until an entry comes out as it was.
+	 * </p>
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#terrainChanged(int, int) PathFinder.terrainChanged(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the changed square
+	 * @param column - the column of the changed square
+	 */
+	synchronized void terrainChanged(int row, int column) {
+		for (Locomotion locomotion : Locomotion.values()) {
+			short[][] table = distances[locomotion.ordinal()];
+			if (table == null) {
+				continue;
+			}
+			// Straight directions first, since diagonal jumps depend on them.
+			for (int direction = 0; direction < 8; direction++) {
+				int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+				if (dRow != 0 && dColumn != 0) {
+					continue;
+				}
+				int across = dRow == 0 ? row : column;
+				for (int line = Math.max(0, across - 1); line < Math.min(gridSize, across + 2); line++) {
+					for (int i = 0; i < gridSize; i++) {
+						int along = dRow + dColumn > 0 ? gridSize - 1 - i : i;
+						int r = dRow == 0 ? line : along, c = dRow == 0 ? along : line;
+						table[direction][r * gridSize + c] = distance(locomotion, table, direction, r, c);
+					}
+				}
+			}
+			for (int direction = 0; direction < 8; direction++) {
+				int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+				if (dRow == 0 || dColumn == 0) {
+					continue;
+				}
+				// Rows furthest along the direction first, so that the entry ahead is always final.
+				for (int i = 0; i < gridSize; i++) {
+					int r = dRow > 0 ? gridSize - 1 - i : i;
+					if (Math.abs(r + dRow - row) <= 1) {
+						for (int c = 0; c < gridSize; c++) {
+							walkBack(locomotion, table, direction, r, c);
+						}
+					} else {
+						for (int c = Math.max(0, column - 1 - dColumn); c < Math.min(gridSize, column + 2 - dColumn); c++) {
+							walkBack(locomotion, table, direction, r, c);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Redoes the entry of a square in a diagonal direction and, while it
+	 * changes, the entries of the squares behind it.
+	 */
+	private void walkBack(Locomotion locomotion, short[][] table, int direction, int row, int column) {
+		int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+		for (; row >= 0 && row < gridSize && column >= 0 && column < gridSize; row -= dRow, column -= dColumn) {
+			short distance = distance(locomotion, table, direction, row, column);
+			if (distance == table[direction][row * gridSize + column]) {
+				return;
+			}
+			table[direction][row * gridSize + column] = distance;
+		}
+	}
+
+	private short[][] build(Locomotion locomotion) {
+		short[][] table = new short[8][gridSize * gridSize];
+		// Straight directions first, since diagonal jumps depend on them.
+		for (int pass = 0; pass < 2; pass++) {
+			for (int direction = 0; direction < 8; direction++) {
+				int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+				if ((dRow != 0 && dColumn != 0) != (pass == 1)) {
+					continue;
+				}
+				// Visit squares so that the square ahead is always done first.
+				for (int i = 0; i < gridSize; i++) {
+					int r = dRow > 0 ? gridSize - 1 - i : i;
+					for (int j = 0; j < gridSize; j++) {
+						int c = dColumn > 0 ? gridSize - 1 - j : j;
+						table[direction][r * gridSize + c] = distance(locomotion, table, direction, r, c);
+					}
+				}
+			}
+		}
+		return table;
+	}
+
+	/*
+	 * Works out the entry of a square in a direction from the entry of the square ahead.
+	 */
+	private short distance(Locomotion locomotion, short[][] table, int direction, int row, int column) {
+		int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+		int aheadRow = row + dRow, aheadColumn = column + dColumn;
+		if (!isWalkable(locomotion, aheadRow, aheadColumn)) {
+			return 0;
+		}
+		if (isJumpPoint(locomotion, table, aheadRow, aheadColumn, dRow, dColumn)) {
+			return 1;
+		}
+		short ahead = table[direction][aheadRow * gridSize + aheadColumn];
+		return (short) (ahead > 0 ? ahead + 1 : ahead - 1);
+	}
+
+	private boolean isJumpPoint(Locomotion locomotion, short[][] table, int row, int column, int dRow, int dColumn) {
+		if (dRow != 0 && dColumn != 0) {
+			return (isWalkable(locomotion, row - dRow, column + dColumn) && !isWalkable(locomotion, row - dRow, column))
+					|| (isWalkable(locomotion, row + dRow, column - dColumn) && !isWalkable(locomotion, row, column - dColumn))
+					|| table[directionIndex(dRow, 0)][row * gridSize + column] > 0
+					|| table[directionIndex(0, dColumn)][row * gridSize + column] > 0;
+		}
+		if (dRow != 0) {
+			return (isWalkable(locomotion, row + dRow, column + 1) && !isWalkable(locomotion, row, column + 1))
+					|| (isWalkable(locomotion, row + dRow, column - 1) && !isWalkable(locomotion, row, column - 1));
+		}
+		return (isWalkable(locomotion, row + 1, column + dColumn) && !isWalkable(locomotion, row + 1, column))
+				|| (isWalkable(locomotion, row - 1, column + dColumn) && !isWalkable(locomotion, row - 1, column));
+	}
+
+	private boolean isWalkable(Locomotion locomotion, int row, int column) {
+		return passabilityMap.isPassable(row, column, locomotion);
+	}
+
+	/**
+	 * Returns the index of a direction in the direction tables.
+	 *
+	 * @param dRow - the row step, -1, 0, or 1
+	 * @param dColumn - the column step, -1, 0, or 1, not both zero
+	 * @return the direction's index
+	 */
+	static int directionIndex(int dRow, int dColumn) {
+		int index = (dRow + 1) * 3 + dColumn + 1;
+		return index > 4 ? index - 1 : index;
+	}
+}
@@ -0,0 +1,90 @@
+package ascension;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * <code>MatchRandom</code> is the root of every random number drawn in
+ * a match, so that a match played again from the same seed plays out
+ * the same, bit for bit.
+ * </p>
+ *
+ * <p>
+ * The seed starts a <code>SplittableRandom</code>, which is split once
+ * per subsystem: one stream for generating the map and one for settling
+ * conflicts. Each subsystem splits its stream again for every piece of
+ * work it may hand to another thread, such as a zone of the map or a
+ * region of a resolution pass, always on the model thread and always in
+ * the same order. A piece of work then draws only from its own stream,
+ * so no two threads share a generator, nothing is contended, and the
+ * numbers each piece draws do not depend on how the pieces were
+ * scheduled. Unlike <code>Math.random()</code>, which draws every number
+ * of the program from one shared generator, nothing outside the match
+ * can disturb its sequence.
+ * </p>
+ *
+ * <p>
+ * Like the generators it hands out, a <code>MatchRandom</code> is not
+ * thread-safe, and is only split on the model thread.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class MatchRandom {
+
+	private final long seed;
+	private final SplittableRandom mapRandom, conflictRandom;
+
+	/**
+	 * Creates a new <code>MatchRandom</code> from a seed.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int, long) loadInitialModelState(int, int, long)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param seed - the seed of the match
+	 */
+	MatchRandom(long seed) {
+		this.seed = seed;
+		SplittableRandom root = new SplittableRandom(seed);
+		mapRandom = root.split();
+		conflictRandom = root.split();
+	}
+
+	/**
+	 * Returns a seed for a match nobody has asked to play again, drawn
+	 * from the default seeding of <code>SplittableRandom</code>.
+	 *
+	 * @return a fresh seed
+	 */
+	static long newSeed() {
+		return new SplittableRandom().nextLong();
+	}
+
+	long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Splits off a new stream for generating the map.
+	 *
+	 * @return the stream
+	 */
+	SplittableRandom splitForMap() {
+		return mapRandom.split();
+	}
+
+	/**
+	 * Splits off a new stream for settling conflicts.
+	 *
+	 * @return the stream
+	 */
+	SplittableRandom splitForConflicts() {
+		return conflictRandom.split();
+	}
+}
@@ -0,0 +1,58 @@
+package ascension;
+
+import ascension.PhaseBudgets.Phase;
+import ascension.PrimaryModel.Player;
+
+/**
+ * <p>
+ * <code>ModelListener</code> is told by the {@link PrimaryModel PrimaryModel}
+ * of the changes it makes on its own, so that whatever presents the
+ * model, such as the {@link PrimaryController PrimaryController}, can
+ * follow along.
+ * </p>
+ *
+ * <p>
+ * The model knows nothing of its listener beyond this interface, so it
+ * runs just the same with a window, with some other listener, or with
+ * no listener at all. A listener is called on the thread which changed
+ * the model.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+interface ModelListener {
+
+	/**
+	 * Called once the turn has rotated, and any round which ended with it
+	 * has been resolved.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param notification - a message describing the rotation
+	 * @param playerGainingControl - the player whose turn it now is
+	 */
+	void turnRotated(String notification, Player playerGainingControl);
+
+	/**
+	 * Called at the end of a rotation of the turn for each phase which took longer than its budget.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PhaseBudgets#endRotation(ModelListener) endRotation(ModelListener)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param phase - the phase which overran
+	 * @param spentNanos - the time the phase took, in nanoseconds
+	 * @param budgetNanos - the phase's budget, in nanoseconds
+	 */
+	void phaseOverran(Phase phase, long spentNanos, long budgetNanos);
+}
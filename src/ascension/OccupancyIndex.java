@@ -0,0 +1,121 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>OccupancyIndex</code> records, for every square of the map,
+ * which players have at least one unit there.
+ * </p>
+ *
+ * <p>
+ * Each square is a single byte holding one bit per player, keyed by
+ * the packed square <code>row * gridSize + column</code>. The index is
+ * shared by every player's {@link UnitGrid UnitGrid} and kept current
+ * by them as units arrive and leave. Asking whether a square holds an
+ * enemy of some player is therefore a single lookup and mask instead of
+ * a scan over every other player's grid.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class OccupancyIndex {
+
+	private final int gridSize;
+	private final byte[] presence;
+	private final RegionVersions regionVersions;
+
+	/**
+	 * Creates a new <code>OccupancyIndex</code> with every square empty.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 */
+	OccupancyIndex(int gridSize) {
+		this(gridSize, null);
+	}
+
+	/**
+	 * Creates a new <code>OccupancyIndex</code> with every square empty
+	 * which bumps the version of a region whenever its occupancy changes.
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 * @param regionVersions - the region versions to bump, or null
+	 */
+	OccupancyIndex(int gridSize, RegionVersions regionVersions) {
+		this.gridSize = gridSize;
+		this.regionVersions = regionVersions;
+		presence = new byte[gridSize * gridSize];
+	}
+
+	/**
+	 * Returns the players present in a square as a mask with bit
+	 * <code>1 << player.ordinal()</code> set for each.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the mask of players present
+	 */
+	int playersAt(int row, int column) {
+		return presence[row * gridSize + column];
+	}
+
+	/**
+	 * Returns the players other than the given one present in a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param player - the ordinal of the player whose enemies are sought
+	 * @return the mask of enemy players present, 0 if none
+	 */
+	int enemiesAt(int row, int column, int player) {
+		return presence[row * gridSize + column] & ~(1 << player);
+	}
+
+	/**
+	 * Indicates whether or not any player other than the given one has a unit in a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param player - the ordinal of the player whose enemies are sought
+	 * @return true if an enemy unit is present
+	 */
+	boolean hasEnemyAt(int row, int column, int player) {
+		return enemiesAt(row, column, player) != 0;
+	}
+
+	/**
+	 * Marks a player as present in or absent from a square.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link UnitGrid UnitGrid}, when a square's chain gains its first unit or loses its last
+	 * </ul>
+	 * </p>
+	 *
+	 * @param cell - the packed square
+	 * @param player - the ordinal of the player
+	 * @param present - if true, the player now has a unit in the square
+	 */
+	void setPresent(int cell, int player, boolean present) {
+		if (present) {
+			presence[cell] |= 1 << player;
+		} else {
+			presence[cell] &= ~(1 << player);
+		}
+		if (regionVersions != null) {
+			regionVersions.bump(cell / gridSize, cell % gridSize);
+		}
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+}
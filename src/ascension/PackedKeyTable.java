@@ -0,0 +1,156 @@
+package ascension;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>PackedKeyTable</code> maps packed <code>long</code> keys to
+ * <code>int</code> values, for indexes keyed by squares, sub-steps, and
+ * the like, which are looked up many times a turn and thrown away after.
+ * </p>
+ *
+ * <p>
+ * Keys live in an open addressing hash table of primitive arrays with
+ * linear probing, so nothing is allocated and nothing is boxed per entry.
+ * Each slot is stamped with the generation in which it was written, so
+ * {@link PackedKeyTable#clear() clear} just bumps the generation and takes
+ * constant time. The arrays double whenever the table passes half full,
+ * and keep their size from then on.
+ * </p>
+ *
+ * <p>
+ * Both the {@link TargetIndex TargetIndex} and the
+ * {@link ReservationTable ReservationTable} are built on one.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class PackedKeyTable {
+
+	/**
+	 * The value of a key which is not in the table.
+	 */
+	static final int NONE = -1;
+
+	private long[] keys;
+	private int[] values, stamps;
+	private int generation, size;
+
+	/**
+	 * Creates a new, empty <code>PackedKeyTable</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link TargetIndex#TargetIndex(int) TargetIndex(int)}
+	 * <li> {@link ReservationTable#ReservationTable(int, int) ReservationTable(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param capacity - the number of slots to start with, a power of two
+	 */
+	PackedKeyTable(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		stamps = new int[capacity];
+		generation = 1;
+	}
+
+	/**
+	 * Forgets every key.
+	 */
+	void clear() {
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the value of a key.
+	 *
+	 * @param key - the key
+	 * @return the value, or {@link PackedKeyTable#NONE NONE} if the key is not in the table
+	 */
+	int get(long key) {
+		int slot = slotOf(key);
+		return stamps[slot] == generation ? values[slot] : NONE;
+	}
+
+	/**
+	 * Sets the value of a key, replacing any value it had.
+	 *
+	 * @param key - the key
+	 * @param value - the value
+	 */
+	void put(long key, int value) {
+		int slot = slotOf(key);
+		values[slot] = value;
+		if (stamps[slot] != generation) {
+			insert(slot, key);
+		}
+	}
+
+	/**
+	 * Sets the value of a key, unless it has one already.
+	 *
+	 * @param key - the key
+	 * @param value - the value
+	 * @return the value the key already had, or {@link PackedKeyTable#NONE NONE} if it was added
+	 */
+	int putIfAbsent(long key, int value) {
+		int slot = slotOf(key);
+		if (stamps[slot] == generation) {
+			return values[slot];
+		}
+		values[slot] = value;
+		insert(slot, key);
+		return NONE;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void insert(int slot, long key) {
+		stamps[slot] = generation;
+		keys[slot] = key;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/*
+	 * Finds the slot holding a key, or the empty slot where it would go.
+	 */
+	private int slotOf(long key) {
+		int mask = keys.length - 1;
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (mixed >>> 32 ^ mixed) & mask;
+		while (stamps[slot] == generation && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values, oldStamps = stamps;
+		int oldGeneration = generation;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		stamps = new int[oldKeys.length * 2];
+		generation = 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStamps[i] == oldGeneration) {
+				int slot = slotOf(oldKeys[i]);
+				stamps[slot] = generation;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package ascension;
+
+import ascension.AbstractUnit.Locomotion;
+import ascension.Terrain.TerrainSubType;
+
+/**
+ * <p>
+ * <code>PassabilityMap</code> records which squares of the map each
+ * locomotion may enter, compiled from the terrain into packed bitmaps.
+ * </p>
+ *
+ * <p>
+ * Each locomotion has one bit per square, sixty-four squares to a
+ * <code>long</code>, keyed by the packed square
+ * <code>row * gridSize + column</code>. The bits are derived once with
+ * {@link PathFinder#isPassable(Terrain.TerrainSubType, Locomotion) isPassable}
+ * when the map loads and recompiled square by square as terrain changes,
+ * so searches read a bit rather than looking up a terrain sub type and
+ * switching over it for every square they visit. The
+ * {@link PathFinder#movementCost(Terrain.TerrainSubType, Locomotion) movement cost}
+ * of entering each square is compiled alongside, one byte per square,
+ * along with a second bitmap marking the passable squares which cost
+ * more than one, so a stretch of the map is checked for uniform cost a
+ * word at a time.
+ * </p>
+ *
+ * <p>
+ * Bits only change on the model thread, between searches, so any number
+ * of searches may read the map at once.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class PassabilityMap {
+
+	private static final Locomotion[] LOCOMOTIONS = Locomotion.values();
+
+	private final VisibilityGrid navigableTerrain;
+	private final int gridSize;
+	private final long[][] bits, roughBits;
+	private final byte[][] costs;
+
+	/**
+	 * Creates a new <code>PassabilityMap</code> compiled from the given terrain.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param navigableTerrain - the terrain compiled
+	 */
+	PassabilityMap(VisibilityGrid navigableTerrain) {
+		this.navigableTerrain = navigableTerrain;
+		gridSize = navigableTerrain.getGridSize();
+		bits = new long[LOCOMOTIONS.length][(gridSize * gridSize + 63) >>> 6];
+		roughBits = new long[LOCOMOTIONS.length][bits[0].length];
+		costs = new byte[LOCOMOTIONS.length][gridSize * gridSize];
+		for (int r = 0; r < gridSize; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				update(r, c);
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether or not a unit of the given locomotion may enter a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param locomotion - the locomotion of the unit
+	 * @return true if the square is on the map and passable
+	 */
+	boolean isPassable(int row, int column, Locomotion locomotion) {
+		if (row < 0 || row >= gridSize || column < 0 || column >= gridSize) {
+			return false;
+		}
+		return isPassable(row * gridSize + column, locomotion);
+	}
+
+	/**
+	 * Indicates whether or not a unit of the given locomotion may enter a square.
+	 *
+	 * @param square - the packed square, which must be on the map
+	 * @param locomotion - the locomotion of the unit
+	 * @return true if the square is passable
+	 */
+	boolean isPassable(int square, Locomotion locomotion) {
+		return (bits[locomotion.ordinal()][square >>> 6] & 1L << square) != 0;
+	}
+
+	/**
+	 * Returns the cost for a unit of the given locomotion of stepping onto a square.
+	 *
+	 * @param square - the packed square, which must be on the map and passable
+	 * @param locomotion - the locomotion of the unit
+	 * @return the cost, from 1 to {@link PathFinder#MAX_COST MAX_COST}
+	 */
+	int getCost(int square, Locomotion locomotion) {
+		return costs[locomotion.ordinal()][square];
+	}
+
+	/**
+	 * Indicates whether or not every passable square of a rectangle costs
+	 * one to enter. The rectangle is clipped to the map.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder PathFinder}, before a jump point search
+	 * </ul>
+	 * </p>
+	 *
+	 * @param rowStart - the first row
+	 * @param rowEnd - the row after the last
+	 * @param columnStart - the first column
+	 * @param columnEnd - the column after the last
+	 * @param locomotion - the locomotion of the unit
+	 * @return true if no passable square of the rectangle costs more than one
+	 */
+	boolean isUniformCost(int rowStart, int rowEnd, int columnStart, int columnEnd, Locomotion locomotion) {
+		long[] rough = roughBits[locomotion.ordinal()];
+		columnStart = Math.max(0, columnStart);
+		columnEnd = Math.min(gridSize, columnEnd);
+		for (int r = Math.max(0, rowStart), last = Math.min(gridSize, rowEnd); r < last; r++) {
+			if (anySet(rough, r * gridSize + columnStart, r * gridSize + columnEnd)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Indicates whether or not any bit from one packed square up to another is set.
+	 */
+	private static boolean anySet(long[] words, int from, int to) {
+		if (from >= to) {
+			return false;
+		}
+		int first = from >>> 6, last = (to - 1) >>> 6;
+		long firstMask = -1L << from, lastMask = -1L >>> -to; // Shifts use the low six bits only.
+		if (first == last) {
+			return (words[first] & firstMask & lastMask) != 0;
+		}
+		if ((words[first] & firstMask) != 0) {
+			return true;
+		}
+		for (int i = first + 1; i < last; i++) {
+			if (words[i] != 0) {
+				return true;
+			}
+		}
+		return (words[last] & lastMask) != 0;
+	}
+
+	/**
+	 * Recompiles the bits and costs of a square from its terrain.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#terrainChanged(int, int) terrainChanged(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 */
+	void update(int row, int column) {
+		int square = row * gridSize + column;
+		TerrainSubType terrainSubType = navigableTerrain.getTerrainSubType(row, column);
+		for (Locomotion locomotion : LOCOMOTIONS) {
+			costs[locomotion.ordinal()][square] = (byte) PathFinder.movementCost(terrainSubType, locomotion);
+			if (PathFinder.isPassable(terrainSubType, locomotion)) {
+				bits[locomotion.ordinal()][square >>> 6] |= 1L << square;
+			} else {
+				bits[locomotion.ordinal()][square >>> 6] &= ~(1L << square);
+			}
+			if (PathFinder.isPassable(terrainSubType, locomotion) && costs[locomotion.ordinal()][square] > 1) {
+				roughBits[locomotion.ordinal()][square >>> 6] |= 1L << square;
+			} else {
+				roughBits[locomotion.ordinal()][square >>> 6] &= ~(1L << square);
+			}
+		}
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+}
@@ -0,0 +1,247 @@
+package ascension;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ascension.AbstractUnit.Locomotion;
+
+/**
+ * <p>
+ * <code>PathCache</code> remembers the most recently found passive
+ * paths, so that repeated orders need not be searched again.
+ * </p>
+ *
+ * <p>
+ * Entries are keyed by origin, destination, locomotion, speed, and footprint, and
+ * the least recently used entry is dropped once the cache is full. Each
+ * entry is stamped with the {@link RegionVersions RegionVersions} of the
+ * regions its path crosses; a path found not to exist is stamped with
+ * every region of its search window instead, since a change anywhere in
+ * it might open a way. An entry whose stamp has gone stale is evicted
+ * when next looked up, so a change to the map costs nothing until then
+ * and only ever evicts the paths touching it.
+ * </p>
+ *
+ * <p>
+ * Paths are copied in and out, so callers may alter what they are
+ * given. Lookups and stores are synchronized, as batched searches run on
+ * several threads at once.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class PathCache {
+
+	/**
+	 * The number of paths kept by {@link PathFinder PathFinder}.
+	 */
+	static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * The highest speed whose paths can be cached.
+	 */
+	static final int MAX_SPEED = 0xFF;
+	/**
+	 * Returned by {@link PathCache#get(int, int, int, int, int, Locomotion, int) get} when it is known
+	 * that no path exists. Compare by identity.
+	 */
+	static final ArrayList<Point> NO_PATH = new ArrayList<Point>(0);
+
+	private final RegionVersions regionVersions;
+	private final LinkedHashMap<Long, Entry> entries;
+	private long hits, misses, evictions;
+
+	/*
+	 * A cached path, or the lack of one, with the region versions it depends on.
+	 */
+	private static class Entry {
+		final ArrayList<Point> path;
+		final int[] regions, versions;
+
+		Entry(ArrayList<Point> path, int[] regions, int[] versions) {
+			this.path = path;
+			this.regions = regions;
+			this.versions = versions;
+		}
+	}
+
+	/**
+	 * Creates a new, empty <code>PathCache</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#PathFinder(VisibilityGrid, RegionVersions) PathFinder(VisibilityGrid, RegionVersions)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param regionVersions - the versions stamped on entries
+	 * @param capacity - the most paths kept at once
+	 */
+	PathCache(RegionVersions regionVersions, final int capacity) {
+		this.regionVersions = regionVersions;
+		entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Looks up a path.
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param speed - the distance the search may stray from the start, at most {@link PathCache#MAX_SPEED MAX_SPEED}
+	 * @param locomotion - the locomotion of the moving unit
+	 * @param footprint - the side of the moving unit's footprint, at most {@link ClearanceMap#MAX_CLEARANCE MAX_CLEARANCE}
+	 * @return a copy of the cached path, {@link PathCache#NO_PATH NO_PATH} if none exists, or null on a miss
+	 */
+	synchronized ArrayList<Point> get(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion, int footprint) {
+		Long key = key(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint);
+		Entry entry = entries.get(key);
+		if (entry != null && !isCurrent(entry)) {
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.path == null ? NO_PATH : copy(entry.path);
+	}
+
+	/**
+	 * Stores the result of a search.
+	 *
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param speed - the distance the search may stray from the start, at most {@link PathCache#MAX_SPEED MAX_SPEED}
+	 * @param locomotion - the locomotion of the moving unit
+	 * @param footprint - the side of the moving unit's footprint, at most {@link ClearanceMap#MAX_CLEARANCE MAX_CLEARANCE}
+	 * @param path - the path found, or null if there was none
+	 */
+	synchronized void put(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion, int footprint,
+			ArrayList<Point> path) {
+		int[] regions;
+		if (path != null) {
+			regions = new int[path.size() + 1];
+			regions[0] = regionVersions.regionOf(sRow, sColumn);
+			for (int i = 0; i < path.size(); i++) {
+				regions[i + 1] = regionVersions.regionOf(path.get(i).x, path.get(i).y);
+			}
+		} else {
+			int gridSize = regionVersions.getGridSize(), regionSize = regionVersions.getRegionSize();
+			int rowStart = Math.max(0, sRow - speed), rowEnd = Math.min(gridSize - 1, sRow + speed);
+			int columnStart = Math.max(0, sColumn - speed), columnEnd = Math.min(gridSize - 1, sColumn + speed);
+			regions = new int[(rowEnd / regionSize - rowStart / regionSize + 1) * (columnEnd / regionSize - columnStart / regionSize + 1)];
+			int count = 0;
+			for (int r = rowStart / regionSize; r <= rowEnd / regionSize; r++) {
+				for (int c = columnStart / regionSize; c <= columnEnd / regionSize; c++) {
+					regions[count++] = regionVersions.regionOf(r * regionSize, c * regionSize);
+				}
+			}
+		}
+		regions = distinct(regions);
+		int[] versions = new int[regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			versions[i] = regionVersions.versionOf(regions[i]);
+		}
+		entries.put(key(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint), new Entry(copy(path), regions, versions));
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries evicted because the map changed under them.
+	 * Entries dropped for want of room are not counted.
+	 *
+	 * @return the number of stale entries evicted
+	 */
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Empties the cache and zeroes its counters.
+	 */
+	synchronized void clear() {
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long lookups = hits + misses;
+		return "PathCache: " + entries.size() + " paths, " + hits + " hits, " + misses + " misses ("
+				+ (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate), " + evictions + " stale evictions";
+	}
+
+	private boolean isCurrent(Entry entry) {
+		for (int i = 0; i < entry.regions.length; i++) {
+			if (regionVersions.versionOf(entry.regions[i]) != entry.versions[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Packs a lookup into one long. The two squares share the upper bits,
+	 * which leaves three bits for the footprint, a byte for the speed, and
+	 * a bit for the locomotion.
+	 */
+	private long key(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion, int footprint) {
+		int gridSize = regionVersions.getGridSize();
+		long start = sRow * gridSize + sColumn, destination = dRow * gridSize + dColumn;
+		return ((start * gridSize * gridSize + destination) << 12) | (footprint - 1) << 9 | speed << 1 | locomotion.ordinal();
+	}
+
+	private static int[] distinct(int[] values) {
+		Arrays.sort(values);
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (i == 0 || values[i] != values[i - 1]) {
+				values[count++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, count);
+	}
+
+	private static ArrayList<Point> copy(ArrayList<Point> path) {
+		if (path == null) {
+			return null;
+		}
+		ArrayList<Point> copy = new ArrayList<Point>(path.size());
+		for (Point point : path) {
+			copy.add(new Point(point));
+		}
+		return copy;
+	}
+}
@@ -2,11 +2,14 @@ package ascension;
 
 import java.awt.Point;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
-
-import com.sun.xml.internal.bind.v2.runtime.unmarshaller.XsiNilLoader.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ascension.AbstractUnit.Locomotion;
+import ascension.Terrain.TerrainSubType;
 
 /**
  * <p>
@@ -32,7 +35,61 @@ class PathFinder {
 	 * G-cost in light of that in addition to the F-cost.
 	 */
 
-	VisibilityState[][] navigableTerrain;
+	/**
+	 * The search run by {@link PathFinder#getPassivePath(int, int, int, int, int, Locomotion) getPassivePath}.
+	 * A* and Dial's algorithm find paths of the same, least, total
+	 * {@link PathFinder#movementCost(TerrainSubType, Locomotion) movement cost}.
+	 */
+	enum SearchStrategy {
+		/**
+		 * A* over every neighbor of every square, with a binary heap for the open set.
+		 */
+		A_STAR,
+		/**
+		 * A* with a {@link BucketQueue BucketQueue} for the open set, as in
+		 * Dial's algorithm, which the small integer costs of terrain allow.
+		 */
+		DIAL,
+		/**
+		 * Jump Point Search, which skips over runs of squares offering no new choices.
+		 * Runs are only alike when every step costs the same, so it ignores terrain
+		 * cost, and a window holding any rougher terrain is searched with
+		 * {@link SearchStrategy#DIAL DIAL} instead. It is kept as an experiment and
+		 * is not the default: on windows as small as a unit's move, Dial's algorithm
+		 * expands little more than the path itself, and jump point search is slower
+		 * wherever walls are scattered about.
+		 */
+		JUMP_POINT
+	}
+
+	/**
+	 * The greatest cost of stepping onto a single square.
+	 */
+	static final int MAX_COST = 6;
+
+	private static final int[] DIRECTION_ROWS = JumpPointTable.DIRECTION_ROWS, DIRECTION_COLUMNS = JumpPointTable.DIRECTION_COLUMNS;
+	private static final int ALL_DIRECTIONS = 0xFF;
+	// Batches smaller than this are solved on the calling thread; larger ones are split down to it.
+	private static final int BATCH_GRAIN = 4;
+
+	VisibilityGrid navigableTerrain;
+	private final PassabilityMap passabilityMap;
+	private final ClearanceMap clearanceMap;
+	private final ConnectedComponents connectedComponents;
+	private final JumpPointTable jumpPointTable;
+	private final HierarchicalPathFinder hierarchicalPathFinder;
+	private final RegionVersions regionVersions;
+	private final PathCache pathCache;
+	private SearchStrategy searchStrategy;
+
+	// Searches are thread-confined, so each thread reuses its own workspace.
+	private static final ThreadLocal<SearchWorkspace> workspaces = new ThreadLocal<SearchWorkspace>() {
+
+		@Override
+		protected SearchWorkspace initialValue() {
+			return new SearchWorkspace();
+		}
+	};
 
 	/**
 	 * Creates a new <code>PathFinder</code>.
@@ -44,177 +101,639 @@ class PathFinder {
 	 * </ul>
 	 * </p>
 	 * 
-	 * @param navigableTerrain
+	 * @param navigableTerrain - the terrain searched over
+	 * @param regionVersions - the region versions stamped on cached paths, which may be shared
 	 */
 
-	PathFinder(VisibilityState[][] navigableTerrain) {
+	PathFinder(VisibilityGrid navigableTerrain, RegionVersions regionVersions) {
 		this.navigableTerrain = navigableTerrain;
+		this.regionVersions = regionVersions;
+		pathCache = new PathCache(regionVersions, PathCache.DEFAULT_CAPACITY);
+		passabilityMap = new PassabilityMap(navigableTerrain);
+		clearanceMap = new ClearanceMap(passabilityMap);
+		connectedComponents = new ConnectedComponents(passabilityMap);
+		jumpPointTable = new JumpPointTable(passabilityMap);
+		hierarchicalPathFinder = new HierarchicalPathFinder(passabilityMap, HierarchicalPathFinder.DEFAULT_CLUSTER_SIZE);
+		searchStrategy = SearchStrategy.DIAL;
 	}
 
+	/**
+	 * Finds a cheapest path from one square to another within a window
+	 * of <code>speed</code> squares around the start.
+	 * 
+	 * <p>
+	 * The search state lives in this thread's {@link SearchWorkspace SearchWorkspace},
+	 * so apart from the returned path, searching allocates nothing once the
+	 * workspace has grown to the widest window in play. Terrain is only
+	 * consulted for squares the search actually reaches.
+	 * </p>
+	 * 
+	 * <p>
+	 * A destination in another {@link ConnectedComponents connected component}
+	 * than the start is turned down before any search runs. Otherwise results,
+	 * including the lack of a path, are kept in a {@link PathCache PathCache}
+	 * until the terrain or occupancy of a region they depend on changes, so
+	 * a repeated order is answered without searching.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#requestMoveTo(int, int) requestMoveTo(int, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param speed - the distance the search may stray from the start
+	 * @param locomotion - the locomotion of the moving unit
+	 * @return the squares stepped through, excluding the start and ending with the destination,
+	 *         or null if no path exists within the window
+	 */
 	ArrayList<Point> getPassivePath(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion) {
-		// Create a nodeMap, then fill it with default nodes.
-		Node[][] nodeMap = new Node[speed * 2 + 1][speed * 2 + 1];
-		for (int r = 0; r < nodeMap.length; r++) {
-			for (int c = 0; c < nodeMap.length; c++) {
-				nodeMap[r][c] = new Node(r, c);
-			}
+		return getPassivePath(sRow, sColumn, dRow, dColumn, speed, locomotion, 1);
+	}
+
+	/**
+	 * Finds a cheapest path for a unit larger than one square, as
+	 * {@link PathFinder#getPassivePath(int, int, int, int, int, Locomotion) getPassivePath}
+	 * does for a unit of one square.
+	 * 
+	 * <p>
+	 * Squares stand for the top left corner of the unit's footprint, and a
+	 * square may only be stepped on where the {@link ClearanceMap ClearanceMap}
+	 * says the whole footprint fits. A step costs what the corner square
+	 * costs to enter. Footprints wider than one always use Dial's
+	 * algorithm, as jump point search assumes a unit of one square.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#requestMoveTo(int, int) requestMoveTo(int, int)}
+	 * <li> {@link PathFinder#getPassivePaths(List, ForkJoinPool) getPassivePaths(List, ForkJoinPool)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param speed - the distance the search may stray from the start
+	 * @param locomotion - the locomotion of the moving unit
+	 * @param footprint - the side of the unit's footprint, at most {@link ClearanceMap#MAX_CLEARANCE MAX_CLEARANCE}
+	 * @return the squares stepped through, excluding the start and ending with the destination,
+	 *         or null if no path exists within the window
+	 */
+	ArrayList<Point> getPassivePath(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion, int footprint) {
+		if (!connectedComponents.mayConnect(sRow, sColumn, dRow, dColumn, locomotion)) {
+			return null; // A larger unit can reach no more than a unit of one square.
+		}
+		if (speed > PathCache.MAX_SPEED) {
+			return searchPassivePath(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint);
+		}
+		ArrayList<Point> path = pathCache.get(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint);
+		if (path == null) {
+			path = searchPassivePath(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint);
+			pathCache.put(sRow, sColumn, dRow, dColumn, speed, locomotion, footprint, path);
+		} else if (path == PathCache.NO_PATH) {
+			return null;
 		}
+		return path;
+	}
 
-		Node start = nodeMap[speed][speed]; // Taking stock of naught-based indexing
+	private ArrayList<Point> searchPassivePath(int sRow, int sColumn, int dRow, int dColumn, int speed, Locomotion locomotion,
+			int footprint) {
+		int side = speed * 2 + 1;
+		// Window squares are offset so that the start sits at the centre.
+		int rowOffset = sRow - speed, columnOffset = sColumn - speed;
+		int destinationRow = dRow - rowOffset, destinationColumn = dColumn - columnOffset;
+		if (destinationRow < 0 || destinationRow >= side || destinationColumn < 0 || destinationColumn >= side) {
+			return null;
+		}
 
-		// I know this seems a bit odd, but I did it out on paper...SO...yeah...
-		Node destination = nodeMap[(speed - (sRow - dRow))][(speed - (sColumn - dColumn))];
+		SearchWorkspace workspace = workspaces.get();
+		workspace.reset(side, rowOffset, columnOffset);
+		int start = speed * side + speed, destination = destinationRow * side + destinationColumn;
+		workspace.record(start, 0, chebyshev(speed, speed, destinationRow, destinationColumn), SearchWorkspace.NONE);
+		workspace.pushOpen(start, workspace.getFCost(start), workspace.getFCost(start));
 
-		// Since default initialization is to 0, 1 represents a closed node.
-		// Additionally, impassable terrain counts as a closed node because
-		// the path could not possibly consider it.
-		int[][] closedSet = new int[speed * 2 + 1][speed * 2 + 1];
+		SearchStrategy strategy = searchStrategy;
+		if (strategy == SearchStrategy.JUMP_POINT
+				&& (footprint > 1 || !passabilityMap.isUniformCost(rowOffset, rowOffset + side, columnOffset, columnOffset + side, locomotion))) {
+			strategy = SearchStrategy.DIAL;
+		}
+		boolean found;
+		switch (strategy) {
+		case DIAL:
+			workspace.clearBuckets(workspace.getFCost(start));
+			workspace.pushBucket(start, workspace.getFCost(start));
+			found = searchBuckets(workspace, destination, locomotion, footprint);
+			break;
+		case JUMP_POINT:
+			found = searchJumpPoints(workspace, destination, locomotion);
+			break;
+		default:
+			found = searchAStar(workspace, destination, locomotion, footprint);
+			break;
+		}
+		return found ? tracePath(workspace, start, destination) : null; // Failure signifies no path.
+		// TODO Consider a throws declaration here so that it is clear that nothing can actually end up returning null here.
+		// TODO Effective Java - Book
+	}
 
-		// We'll iterate over the closed set array to account for impassable terrain,
-		// enemies, and other relevant path finding concerns.
-		for (int r = 0; r < speed * 2 + 1; r++) {
-			for (int c = 0; c < speed * 2 + 1; c++) {
-				if (sRow - speed + r < 0 || sRow + speed - r >= navigableTerrain.length
-						|| sColumn - speed + c < 0 || sColumn + speed - c >= navigableTerrain.length) {
-					closedSet[r][c] = 1;
-					continue;
-				}
-				switch (navigableTerrain[sRow - speed + r][sColumn - speed + c].terrainSubType) { // TODO This will have to change as we go forward.
-				// Some account of enemy units will need to be made. I'm just trying to avoid breaking code while I work on the view stuff.
-				case EIGHT: // Completely impassable terrain
-					closedSet[r][c] = 1;
-					break;
-				case SEVEN: // Flying only
-					if (locomotion != Locomotion.AIR) { // Unit can't fly
-						closedSet[r][c] = 1;
-					}
-					break;
-				default: // 0 - Must be open
-					break;
-				}
+	/**
+	 * Finds paths for a whole batch of units at once.
+	 * 
+	 * <p>
+	 * Each request is solved as by {@link PathFinder#getPassivePath(int, int, int, int, int, Locomotion) getPassivePath},
+	 * from the unit's current square within a window of its move speed.
+	 * Larger batches are split across the pool, each thread searching in its
+	 * own workspace. Every search reads only the terrain, so the paths are
+	 * the same however the batch is split, and each is returned at the index
+	 * of its request.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#reattemptPassivePathFindingFor(List) reattemptPassivePathFindingFor(List)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param requests - the requests to solve
+	 * @param pool - the pool to solve larger batches on
+	 * @return one path per request, in request order, with null wherever no path exists
+	 */
+	List<ArrayList<Point>> getPassivePaths(final List<PathRequest> requests, ForkJoinPool pool) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		final ArrayList<Point>[] paths = new ArrayList[requests.size()];
+		if (requests.size() < BATCH_GRAIN * 2) {
+			solve(requests, paths, 0, requests.size());
+		} else {
+			pool.invoke(new BatchTask(requests, paths, 0, requests.size()));
+		}
+		return Arrays.asList(paths);
+	}
+
+	private void solve(List<PathRequest> requests, ArrayList<Point>[] paths, int from, int to) {
+		for (int i = from; i < to; i++) {
+			PathRequest request = requests.get(i);
+			AbstractUnit unit = request.getUnit();
+			paths[i] = getPassivePath(unit.curLoc.x, unit.curLoc.y, request.getRow(), request.getColumn(), unit.getMovSpd(),
+					unit.getLocomotion(), unit.getFootprint());
+		}
+	}
+
+	/*
+	 * Solves a contiguous range of a batch, halving it until it is small.
+	 */
+	private class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<PathRequest> requests;
+		private final ArrayList<Point>[] paths;
+		private final int from, to;
+
+		BatchTask(List<PathRequest> requests, ArrayList<Point>[] paths, int from, int to) {
+			this.requests = requests;
+			this.paths = paths;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_GRAIN) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new BatchTask(requests, paths, from, middle), new BatchTask(requests, paths, middle, to));
+				return;
 			}
+			solve(requests, paths, from, to);
 		}
+	}
 
-		PriorityQueue<Node> openSet = new PriorityQueue<Node>();
-		openSet.add(start);
-		start.setGCost(0);
-		start.setFCost(calculateHCost(start, destination));
+	/**
+	 * Finds a path from one square to any other on the map, however far.
+	 * 
+	 * <p>
+	 * The path is planned by the {@link HierarchicalPathFinder HierarchicalPathFinder},
+	 * so it is found quickly but may be a little longer than the shortest.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#requestMoveTo(int, int) requestMoveTo(int, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param sRow - the row of the start
+	 * @param sColumn - the column of the start
+	 * @param dRow - the row of the destination
+	 * @param dColumn - the column of the destination
+	 * @param locomotion - the locomotion of the moving unit
+	 * @return the squares stepped through, excluding the start and ending with the destination,
+	 *         or null if the destination cannot be reached
+	 */
+	ArrayList<Point> getLongRangePath(int sRow, int sColumn, int dRow, int dColumn, Locomotion locomotion) {
+		if (!connectedComponents.mayConnect(sRow, sColumn, dRow, dColumn, locomotion)) {
+			return null;
+		}
+		return hierarchicalPathFinder.getPath(sRow, sColumn, dRow, dColumn, locomotion);
+	}
 
-		// We're going to assume the longest travel.
-		// This merely sets the initial memory capacity of the container though.
-		ArrayList<Point> bestPath = new ArrayList<Point>(speed);
+	/**
+	 * Returns the passability of this path finder's terrain, kept current by
+	 * {@link PathFinder#terrainChanged(int, int) terrainChanged}.
+	 * 
+	 * @return the passability map
+	 */
+	PassabilityMap getPassabilityMap() {
+		return passabilityMap;
+	}
 
-		while (!openSet.isEmpty()) {
-			Node current = openSet.poll();
+	/**
+	 * Returns the clearances of this path finder's terrain, kept current by
+	 * {@link PathFinder#terrainChanged(int, int) terrainChanged}.
+	 * 
+	 * @return the clearance map
+	 */
+	ClearanceMap getClearanceMap() {
+		return clearanceMap;
+	}
 
-			// We found the shortest path!
-			if (current.equals(destination)) {
-				// We'll add the points in last to first always inserting left of the
-				// previous inserts so that the recipient can iterate easily.
-				// Loop backwards through the parents until you hit the start.
-				// The points are added according to the locations under consideration by the caller.
-				while (!current.equals(start)) {
-					int rMovement = current.getRow() - current.getParent().getRow();
-					int cMovement = current.getColumn() - current.getParent().getColumn();
-					bestPath.add(0, new Point(dRow, dColumn));
-					dRow -= rMovement;
-					dColumn -= cMovement;
-					current = current.getParent();
-				}
+	/**
+	 * Returns the cache of passive paths, whose counters show how well it is doing.
+	 * 
+	 * @return the path cache
+	 */
+	PathCache getPathCache() {
+		return pathCache;
+	}
 
-				return bestPath;
-			}
+	SearchStrategy getSearchStrategy() {
+		return searchStrategy;
+	}
 
-			closedSet[current.getRow()][current.getColumn()] = 1;
+	void setSearchStrategy(SearchStrategy searchStrategy) {
+		this.searchStrategy = searchStrategy;
+		pathCache.clear(); // Jump point search may choose other paths.
+	}
+
+	/*
+	 * Plain A*, expanding all eight neighbors of every square. The Chebyshev
+	 * distance never overestimates, since every step costs at least one.
+	 */
+	private boolean searchAStar(SearchWorkspace workspace, int destination, Locomotion locomotion, int footprint) {
+		int side = workspace.getSide(), destinationRow = destination / side, destinationColumn = destination % side;
+		int current;
+		while ((current = workspace.pollOpen()) != SearchWorkspace.NONE) {
+			// We found the shortest path!
+			if (current == destination) {
+				return true;
+			}
+			workspace.close(current);
 
 			// Looking at the neighbors of the current node for info.
-			for (int r = current.getRow() - 1; r < current.getRow() + 2; r++) {
-				for (int c = current.getColumn() - 1; c < current.getColumn() + 2; c++) {
-					if (r < 0 || r == nodeMap.length
-							|| c < 0 || c == nodeMap.length
-							|| closedSet[r][c] == 1) {
-						continue;		// Ignore the neighbor which is already evaluated or nodes off of the map.
+			int currentRow = current / side, currentColumn = current % side;
+			int currentCost = workspace.getGCost(current);
+			for (int r = Math.max(0, currentRow - 1); r < Math.min(side, currentRow + 2); r++) {
+				for (int c = Math.max(0, currentColumn - 1); c < Math.min(side, currentColumn + 2); c++) {
+					int neighbor = r * side + c;
+					if (workspace.isClosed(neighbor)) {
+						continue; // Already evaluated.
 					}
-
-					if (!openSet.contains(current))	// Discover a new node
-						openSet.add(nodeMap[r][c]);
-
-					// The distance from start to a neighbor
-					int tempGCost = current.getGCost() + 1;
-					if (tempGCost >= nodeMap[r][c].getGCost()) {
-						continue;		// This is not a better path.
+					int stepCost = stepCost(workspace, r, c, locomotion, footprint);
+					if (stepCost == 0) {
+						workspace.close(neighbor); // Impassable terrain counts as closed.
+						continue;
+					}
+					int gCost = currentCost + stepCost; // The cost from start to the neighbor
+					if (gCost >= workspace.getGCost(neighbor)) {
+						continue; // This is not a better path.
 					}
 					// This path is the best until now. Record it!
-					nodeMap[r][c].setParent(current);
-					nodeMap[r][c].setGCost(tempGCost);
-					nodeMap[r][c].setFCost(nodeMap[r][c].getGCost() + calculateHCost(nodeMap[r][c], destination));
+					int hCost = chebyshev(r, c, destinationRow, destinationColumn);
+					workspace.record(neighbor, gCost, gCost + hCost, current);
+					workspace.pushOpen(neighbor, gCost + hCost, hCost);
 				}
 			}
 		}
-		return null; // Exiting the while loop signifies failure.
-		// TODO Consider a throws declaration here so that it is clear that nothing can actually end up returning null here.
-		// TODO Effective Java - Book
+		return false;
 	}
 
-	private int calculateHCost(Node start, Node destination) {
-		return Math.max(Math.abs(start.getRow() - destination.getRow()), Math.abs(start.getColumn() - destination.getColumn()));
+	/*
+	 * The same A* with the open set kept in buckets by f-cost. A step raises
+	 * the f-cost by at most its own cost plus one, so every open square lies
+	 * within MAX_COST + 1 of the square last polled. Rather than lowering a
+	 * square in place, a better route adds it again, and the stale entry is
+	 * passed over once the square has been closed.
+	 */
+	private boolean searchBuckets(SearchWorkspace workspace, int destination, Locomotion locomotion, int footprint) {
+		int side = workspace.getSide(), destinationRow = destination / side, destinationColumn = destination % side;
+		int current;
+		while ((current = workspace.pollBucket()) != SearchWorkspace.NONE) {
+			if (workspace.isClosed(current)) {
+				continue; // A stale entry for a square since reached more cheaply.
+			}
+			if (current == destination) {
+				return true;
+			}
+			workspace.close(current);
+
+			int currentRow = current / side, currentColumn = current % side;
+			int currentCost = workspace.getGCost(current);
+			for (int r = Math.max(0, currentRow - 1); r < Math.min(side, currentRow + 2); r++) {
+				for (int c = Math.max(0, currentColumn - 1); c < Math.min(side, currentColumn + 2); c++) {
+					int neighbor = r * side + c;
+					if (workspace.isClosed(neighbor)) {
+						continue;
+					}
+					int stepCost = stepCost(workspace, r, c, locomotion, footprint);
+					if (stepCost == 0) {
+						workspace.close(neighbor);
+						continue;
+					}
+					int gCost = currentCost + stepCost;
+					if (gCost >= workspace.getGCost(neighbor)) {
+						continue;
+					}
+					int fCost = gCost + chebyshev(r, c, destinationRow, destinationColumn);
+					workspace.record(neighbor, gCost, fCost, current);
+					workspace.pushBucket(neighbor, fCost);
+				}
+			}
+		}
+		return false;
 	}
 
 	/*
-	 * Nodes track their most efficient ancestor as well as various costs.
+	 * Jump Point Search. From each square only the neighbors which no
+	 * shorter or equal path could reach without it are followed, and each
+	 * is followed in a straight line until a square with a forced neighbor,
+	 * the destination, or a wall. Only those jump points enter the open set.
+	 * Jump lengths come from the precomputed JumpPointTable, clipped to the
+	 * window. Jump point search ignores terrain cost and is only run on a
+	 * window where every step costs 1, so the cost of a jump is the
+	 * Chebyshev distance it covers.
 	 */
-	private class Node  implements Comparable<Node>{
-		private int gCost, // Cost of getting from start to this. 
-		fCost, // Cost, partly heuristic, of getting to goal through this node. f = h + g.
-		row, column; // The location of the node on the grid relative to other nodes.
-		Node parent; // Most efficient prior node.
-
-		Node(int _row, int _column) {
-			fCost = 9999;
-			gCost = 9999;
-			row = _row;
-			column = _column;
-			parent = null;
+	private boolean searchJumpPoints(SearchWorkspace workspace, int destination, Locomotion locomotion) {
+		int side = workspace.getSide(), destinationRow = destination / side, destinationColumn = destination % side;
+		short[][] jumpDistances = jumpPointTable.getDistances(locomotion);
+		int current;
+		while ((current = workspace.pollOpen()) != SearchWorkspace.NONE) {
+			if (current == destination) {
+				return true;
+			}
+			workspace.close(current);
+
+			int row = current / side, column = current % side, parent = workspace.getParent(current);
+			int directions = parent == SearchWorkspace.NONE ? ALL_DIRECTIONS
+					: prunedDirections(workspace, row, column, Integer.signum(row - parent / side), Integer.signum(column - parent % side),
+							locomotion);
+			for (int direction = 0; direction < 8; direction++) {
+				if ((directions & (1 << direction)) == 0) {
+					continue;
+				}
+				int jumpPoint = jump(workspace, jumpDistances, row, column, direction, destination, locomotion);
+				if (jumpPoint == SearchWorkspace.NONE || workspace.isClosed(jumpPoint)) {
+					continue;
+				}
+				int jumpRow = jumpPoint / side, jumpColumn = jumpPoint % side;
+				int gCost = workspace.getGCost(current) + chebyshev(row, column, jumpRow, jumpColumn);
+				if (gCost >= workspace.getGCost(jumpPoint)) {
+					continue;
+				}
+				int hCost = chebyshev(jumpRow, jumpColumn, destinationRow, destinationColumn);
+				workspace.record(jumpPoint, gCost, gCost + hCost, current);
+				workspace.pushOpen(jumpPoint, gCost + hCost, hCost);
+			}
 		}
+		return false;
+	}
 
-		void setParent(Node _parent) {
-			parent = _parent;
+	/*
+	 * Returns, as a mask over the direction tables, the natural and forced
+	 * neighbors of a square entered moving in the given direction.
+	 */
+	private int prunedDirections(SearchWorkspace workspace, int row, int column, int dRow, int dColumn, Locomotion locomotion) {
+		int directions;
+		if (dRow != 0 && dColumn != 0) {
+			directions = directionBit(dRow, dColumn) | directionBit(dRow, 0) | directionBit(0, dColumn);
+			if (!isWalkable(workspace, row - dRow, column, locomotion)) {
+				directions |= directionBit(-dRow, dColumn);
+			}
+			if (!isWalkable(workspace, row, column - dColumn, locomotion)) {
+				directions |= directionBit(dRow, -dColumn);
+			}
+		} else if (dRow != 0) {
+			directions = directionBit(dRow, 0);
+			if (!isWalkable(workspace, row, column + 1, locomotion)) {
+				directions |= directionBit(dRow, 1);
+			}
+			if (!isWalkable(workspace, row, column - 1, locomotion)) {
+				directions |= directionBit(dRow, -1);
+			}
+		} else {
+			directions = directionBit(0, dColumn);
+			if (!isWalkable(workspace, row + 1, column, locomotion)) {
+				directions |= directionBit(1, dColumn);
+			}
+			if (!isWalkable(workspace, row - 1, column, locomotion)) {
+				directions |= directionBit(-1, dColumn);
+			}
 		}
+		return directions;
+	}
 
-		int getGCost() {
-			return gCost;
+	/*
+	 * Looks up where a jump from a square in the given direction ends within
+	 * the window. The destination ends a jump which passes it, and a diagonal
+	 * jump which passes the destination's row or column ends there so that
+	 * a straight jump can finish the path. The table stops a diagonal jump
+	 * wherever a straight jump would find a jump point anywhere on the map,
+	 * so a diagonal jump carries on past squares whose straight jumps would
+	 * only leave the window and which have no forced neighbor.
+	 */
+	private int jump(SearchWorkspace workspace, short[][] jumpDistances, int row, int column, int direction, int destination,
+			Locomotion locomotion) {
+		int side = workspace.getSide(), gridSize = passabilityMap.getGridSize();
+		int rowOffset = workspace.getRowOffset(), columnOffset = workspace.getColumnOffset();
+		int dRow = DIRECTION_ROWS[direction], dColumn = DIRECTION_COLUMNS[direction];
+		int window = Integer.MAX_VALUE; // The steps which stay within the window.
+		if (dRow != 0) {
+			window = Math.min(window, dRow > 0 ? side - 1 - row : row);
+		}
+		if (dColumn != 0) {
+			window = Math.min(window, dColumn > 0 ? side - 1 - column : column);
 		}
 
-		void setGCost(int _gCost) {
-			gCost = _gCost;
+		int toRow = destination / side - row, toColumn = destination % side - column;
+		int steps = -1;
+		if (dRow != 0 && dColumn != 0) {
+			if (Integer.signum(toRow) == dRow && Integer.signum(toColumn) == dColumn) {
+				steps = Math.min(Math.abs(toRow), Math.abs(toColumn));
+			}
+		} else if (dRow != 0 ? toColumn == 0 && Integer.signum(toRow) == dRow : toRow == 0 && Integer.signum(toColumn) == dColumn) {
+			steps = Math.abs(toRow + toColumn);
 		}
 
-		void setFCost(int _fCost) {
-			fCost = _fCost;
+		for (int travelled = 0;;) {
+			int r = row + travelled * dRow, c = column + travelled * dColumn;
+			int distance = jumpDistances[direction][(r + rowOffset) * gridSize + c + columnOffset];
+			int reach = Math.min(travelled + Math.abs(distance), window); // The steps which stay on open terrain.
+			if (steps > 0 && steps <= reach && (distance <= 0 || steps <= travelled + distance)) {
+				return (row + steps * dRow) * side + column + steps * dColumn;
+			}
+			if (distance <= 0 || travelled + distance > reach) {
+				return SearchWorkspace.NONE;
+			}
+			travelled += distance;
+			r = row + travelled * dRow;
+			c = column + travelled * dColumn;
+			if (dRow == 0 || dColumn == 0 || isDiagonalJumpPoint(workspace, jumpDistances, r, c, dRow, dColumn, locomotion)) {
+				return r * side + c;
+			}
 		}
+	}
 
-		int getRow() {
-			return row;
+	/*
+	 * Indicates whether or not a square reached diagonally has a forced
+	 * neighbor or a straight jump which ends within the window.
+	 */
+	private boolean isDiagonalJumpPoint(SearchWorkspace workspace, short[][] jumpDistances, int row, int column, int dRow, int dColumn,
+			Locomotion locomotion) {
+		int side = workspace.getSide();
+		int square = (row + workspace.getRowOffset()) * passabilityMap.getGridSize() + column + workspace.getColumnOffset();
+		int alongRows = jumpDistances[JumpPointTable.directionIndex(dRow, 0)][square];
+		int alongColumns = jumpDistances[JumpPointTable.directionIndex(0, dColumn)][square];
+		return (alongRows > 0 && alongRows <= (dRow > 0 ? side - 1 - row : row))
+				|| (alongColumns > 0 && alongColumns <= (dColumn > 0 ? side - 1 - column : column))
+				|| (isWalkable(workspace, row - dRow, column + dColumn, locomotion) && !isWalkable(workspace, row - dRow, column, locomotion))
+				|| (isWalkable(workspace, row + dRow, column - dColumn, locomotion) && !isWalkable(workspace, row, column - dColumn, locomotion));
+	}
+
+	private static int directionBit(int dRow, int dColumn) {
+		return 1 << JumpPointTable.directionIndex(dRow, dColumn);
+	}
+
+	/*
+	 * Walks the parents back from the destination, then puts the points in
+	 * first to last order so that the recipient can iterate easily. Parents
+	 * which are not adjacent, as left by jump point search, always lie on a
+	 * straight or diagonal line, so the squares between are stepped through.
+	 */
+	private ArrayList<Point> tracePath(SearchWorkspace workspace, int start, int destination) {
+		int side = workspace.getSide(), rowOffset = workspace.getRowOffset(), columnOffset = workspace.getColumnOffset();
+		ArrayList<Point> bestPath = new ArrayList<Point>(workspace.getGCost(destination));
+		for (int square = destination; square != start;) {
+			int parent = workspace.getParent(square);
+			int row = square / side, column = square % side, parentRow = parent / side, parentColumn = parent % side;
+			int dRow = Integer.signum(parentRow - row), dColumn = Integer.signum(parentColumn - column);
+			while (row != parentRow || column != parentColumn) {
+				bestPath.add(new Point(row + rowOffset, column + columnOffset));
+				row += dRow;
+				column += dColumn;
+			}
+			square = parent;
 		}
+		Collections.reverse(bestPath);
+		return bestPath;
+	}
+
+	/*
+	 * Indicates whether or not a square of the search window may be stepped on.
+	 */
+	private boolean isWalkable(SearchWorkspace workspace, int row, int column, Locomotion locomotion) {
+		int side = workspace.getSide();
+		return row >= 0 && row < side && column >= 0 && column < side
+				&& !isBlocked(row + workspace.getRowOffset(), column + workspace.getColumnOffset(), locomotion);
+	}
+
+	private boolean isBlocked(int row, int column, Locomotion locomotion) {
+		return !passabilityMap.isPassable(row, column, locomotion);
+	}
 
-		int getColumn() {
-			return column;
+	/*
+	 * Returns the cost of stepping a footprint's corner onto a square of
+	 * the search window, or zero if the footprint does not fit there.
+	 */
+	private int stepCost(SearchWorkspace workspace, int row, int column, Locomotion locomotion, int footprint) {
+		int mapRow = row + workspace.getRowOffset(), mapColumn = column + workspace.getColumnOffset();
+		if (footprint == 1 ? !passabilityMap.isPassable(mapRow, mapColumn, locomotion) : !clearanceMap.fits(mapRow, mapColumn, locomotion, footprint)) {
+			return 0;
 		}
+		return passabilityMap.getCost(mapRow * passabilityMap.getGridSize() + mapColumn, locomotion);
+	}
 
-		Node getParent() {
-			return parent;
+	/**
+	 * Indicates whether or not a unit of the given locomotion may enter terrain of the given sub type.
+	 *
+	 * @param terrainSubType - the terrain sub type
+	 * @param locomotion - the locomotion of the unit
+	 * @return true if the terrain is passable
+	 */
+	static boolean isPassable(TerrainSubType terrainSubType, Locomotion locomotion) {
+		switch (terrainSubType) { // TODO This will have to change as we go forward.
+		// Some account of enemy units will need to be made. I'm just trying to avoid breaking code while I work on the view stuff.
+		case EIGHT: // Completely impassable terrain
+			return false;
+		case SEVEN: // Flying only
+			return locomotion == Locomotion.AIR; // Unit can't fly
+		default: // 0 - Must be open
+			return true;
 		}
+	}
 
-		/**
-		 * This particular implementation returns negative iff
-		 * this F cost is less than that F cost, zero iff equal,
-		 * positive iff greater than.
-		 * 
-		 * @see java.lang.Comparable#compareTo(java.lang.Object)
-		 */
-		@Override
-		public int compareTo(Node other) {
-			return this.fCost - other.fCost;
+	/**
+	 * Returns the cost for a unit of the given locomotion of stepping onto
+	 * terrain of the given sub type. Open ground, sub types zero and one,
+	 * costs one, and sub types two to six cost their number, so rough
+	 * ground slows a unit down. A flying unit pays one over anything it may
+	 * cross.
+	 *
+	 * @param terrainSubType - the terrain sub type
+	 * @param locomotion - the locomotion of the unit
+	 * @return the cost, from 1 to {@link PathFinder#MAX_COST MAX_COST}
+	 */
+	static int movementCost(TerrainSubType terrainSubType, Locomotion locomotion) {
+		if (locomotion == Locomotion.AIR) {
+			return 1;
 		}
+		return Math.max(1, Math.min(MAX_COST, terrainSubType.ordinal()));
+	}
+
+	/**
+	 * Forgets anything precomputed from the terrain of a square. Must be
+	 * called whenever the terrain of the navigable grid changes.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#changeTerrainAt(int, int, TerrainSubType) changeTerrainAt(int, int, TerrainSubType)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param row - the row of the changed square
+	 * @param column - the column of the changed square
+	 */
+	void terrainChanged(int row, int column) {
+		// Clearances above and to the left depend on the square too, so paths through them go stale with it.
+		int top = Math.max(0, row - ClearanceMap.MAX_CLEARANCE + 1), left = Math.max(0, column - ClearanceMap.MAX_CLEARANCE + 1);
+		regionVersions.bump(row, column);
+		regionVersions.bump(top, column);
+		regionVersions.bump(row, left);
+		regionVersions.bump(top, left);
+		passabilityMap.update(row, column);
+		clearanceMap.update(row, column);
+		connectedComponents.terrainChanged(row, column);
+		jumpPointTable.terrainChanged(row, column);
+		hierarchicalPathFinder.terrainChanged(row, column);
+	}
+
+	private static int chebyshev(int row, int column, int destinationRow, int destinationColumn) {
+		return Math.max(Math.abs(row - destinationRow), Math.abs(column - destinationColumn));
 	}
 }
\ No newline at end of file
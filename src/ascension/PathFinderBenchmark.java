@@ -0,0 +1,86 @@
+package ascension;
+
+import java.util.Random;
+
+import ascension.AbstractUnit.Locomotion;
+import ascension.PathFinder.SearchStrategy;
+import ascension.Terrain.TerrainSubType;
+import ascension.Terrain.TerrainType;
+
+/**
+ * <p>
+ * <code>PathFinderBenchmark</code> times each
+ * {@link PathFinder.SearchStrategy SearchStrategy} of the
+ * {@link PathFinder PathFinder} over the same weighted map and the same
+ * queries.
+ * </p>
+ *
+ * <p>
+ * Arguments, all optional, are the grid size, the fraction of squares
+ * which are impassable, the move speed searched within, and the number
+ * of queries. Passable squares are given sub types one to six at random,
+ * so steps cost from one to six. Each query runs from a random square to
+ * a random square within the speed of it, and the random seed is fixed
+ * so that every strategy sees identical queries. Jump point search
+ * ignores the costs, and hands any window with rougher terrain to Dial's
+ * algorithm; run with only sub type one, by passing a negative blocking
+ * fraction, to time jump point search itself.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+public class PathFinderBenchmark {
+
+	private static final int WARMUP_QUERIES = 2000;
+
+	public static void main(String args[]) {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		double blockingFraction = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+		int speed = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int queries = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+		boolean uniform = blockingFraction < 0;
+		blockingFraction = Math.abs(blockingFraction);
+
+		Random random = new Random(1);
+		VisibilityGrid navigableTerrain = new VisibilityGrid(gridSize);
+		for (int r = 0; r < gridSize; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				TerrainSubType terrainSubType = random.nextDouble() < blockingFraction ? TerrainSubType.EIGHT
+						: uniform ? TerrainSubType.ONE : TerrainSubType.terrainSubTypeOrdinals[1 + random.nextInt(PathFinder.MAX_COST)];
+				navigableTerrain.setTerrainType(r, c, TerrainType.DIRT, terrainSubType);
+			}
+		}
+
+		System.out.println("grid " + gridSize + ", " + blockingFraction + " blocking, " + (uniform ? "uniform" : "weighted") + " terrain, speed "
+				+ speed + ", " + queries + " queries");
+		for (SearchStrategy searchStrategy : SearchStrategy.values()) {
+			run(searchStrategy, navigableTerrain, speed, queries);
+		}
+		System.exit(0);
+	}
+
+	private static void run(SearchStrategy searchStrategy, VisibilityGrid navigableTerrain, int speed, int queries) {
+		int gridSize = navigableTerrain.getGridSize();
+		PathFinder pathFinder = new PathFinder(navigableTerrain, new RegionVersions(gridSize, HierarchicalPathFinder.DEFAULT_CLUSTER_SIZE));
+		pathFinder.setSearchStrategy(searchStrategy);
+		Random random = new Random(2);
+		long nanos = 0;
+		int found = 0;
+		for (int query = 0; query < WARMUP_QUERIES + queries; query++) {
+			int sRow = random.nextInt(gridSize), sColumn = random.nextInt(gridSize);
+			int dRow = Math.max(0, Math.min(gridSize - 1, sRow + random.nextInt(2 * speed + 1) - speed));
+			int dColumn = Math.max(0, Math.min(gridSize - 1, sColumn + random.nextInt(2 * speed + 1) - speed));
+			pathFinder.getPathCache().clear(); // Every query is searched, not looked up.
+			long start = System.nanoTime();
+			boolean hasPath = pathFinder.getPassivePath(sRow, sColumn, dRow, dColumn, speed, Locomotion.GROUND) != null;
+			if (query >= WARMUP_QUERIES) {
+				nanos += System.nanoTime() - start;
+				found += hasPath ? 1 : 0;
+			}
+		}
+
+		System.out.printf("%-11s %8.2f us per query, %d found%n", searchStrategy, nanos / 1e3 / queries, found);
+	}
+}
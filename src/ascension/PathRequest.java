@@ -0,0 +1,48 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>PathRequest</code> asks for a path from a unit's current square
+ * to a destination, as one entry of a batch handed to
+ * {@link PathFinder#getPassivePaths(java.util.List, java.util.concurrent.ForkJoinPool) getPassivePaths}.
+ * </p>
+ *
+ * <p>
+ * The search window and locomotion are taken from the unit itself. The
+ * unit must not move while the batch is being solved.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class PathRequest {
+
+	private final AbstractUnit unit;
+	private final int row, column;
+
+	/**
+	 * Creates a new <code>PathRequest</code>.
+	 *
+	 * @param unit - the unit to be moved
+	 * @param row - the row of the destination
+	 * @param column - the column of the destination
+	 */
+	PathRequest(AbstractUnit unit, int row, int column) {
+		this.unit = unit;
+		this.row = row;
+		this.column = column;
+	}
+
+	AbstractUnit getUnit() {
+		return unit;
+	}
+
+	int getRow() {
+		return row;
+	}
+
+	int getColumn() {
+		return column;
+	}
+}
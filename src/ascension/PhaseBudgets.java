@@ -0,0 +1,208 @@
+package ascension;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>PhaseBudgets</code> gives each phase of a rotation of the turn a
+ * budget of time, measures what each phase actually takes, and reports
+ * the phases which overrun.
+ * </p>
+ *
+ * <p>
+ * A rotation which ends a round gathers the orders into the activity
+ * queue, then in every pass groups the moves by target, resolves the
+ * groups, and re-plans the displaced units; every rotation then brings
+ * vision up to date. The time of each phase is summed over the rotation,
+ * read from <code>System.nanoTime()</code> as a phase ends, and compared
+ * with its budget once the rotation is over. The defaults keep a whole
+ * rotation within about a twentieth of a second, short enough not to be
+ * felt between ticks of the clock. Nothing is allocated along the way.
+ * </p>
+ *
+ * <p>
+ * Like the model it measures, a <code>PhaseBudgets</code> is used on the
+ * model thread only.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class PhaseBudgets {
+
+	/**
+	 * A phase of a rotation of the turn.
+	 */
+	enum Phase {
+		/**
+		 * Handing every unit's orders over to the activity queue.
+		 */
+		GATHER,
+		/**
+		 * Grouping the moves of each pass by target.
+		 */
+		GROUP,
+		/**
+		 * Resolving the groups of each pass, and clearing emptied lists from the queue.
+		 */
+		RESOLVE,
+		/**
+		 * Re-planning the units displaced in each pass.
+		 */
+		REPLAN,
+		/**
+		 * Bringing each player's visibility up to date.
+		 */
+		VISION;
+		static final Phase phaseOrdinals[] = values();
+	}
+
+	private static final long MILLISECOND = 1000000L;
+	private static final long[] DEFAULT_BUDGETS = { 2 * MILLISECOND, 4 * MILLISECOND, 16 * MILLISECOND, 16 * MILLISECOND,
+			8 * MILLISECOND };
+
+	private final long[] budgets, spent, totals;
+	private final int[] overruns;
+	private int rotations;
+
+	/**
+	 * Creates a new <code>PhaseBudgets</code> with the default budgets.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#PrimaryModel(ModelListener, TurnClock) PrimaryModel(ModelListener, TurnClock)}
+	 * </ul>
+	 * </p>
+	 */
+	PhaseBudgets() {
+		budgets = Arrays.copyOf(DEFAULT_BUDGETS, DEFAULT_BUDGETS.length);
+		spent = new long[budgets.length];
+		totals = new long[budgets.length];
+		overruns = new int[budgets.length];
+	}
+
+	long getBudget(Phase phase) {
+		return budgets[phase.ordinal()];
+	}
+
+	/**
+	 * Sets the time a phase may take in one rotation.
+	 *
+	 * @param phase - the phase
+	 * @param nanos - the budget, in nanoseconds
+	 */
+	void setBudget(Phase phase, long nanos) {
+		budgets[phase.ordinal()] = nanos;
+	}
+
+	/**
+	 * Starts measuring a new rotation.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @return the time now, from which the first phase is measured
+	 */
+	long beginRotation() {
+		Arrays.fill(spent, 0);
+		return System.nanoTime();
+	}
+
+	/**
+	 * Charges a phase with the time since it began.
+	 *
+	 * @param phase - the phase which has just ended
+	 * @param start - the time it began
+	 * @return the time now, from which the next phase may be measured
+	 */
+	long charge(Phase phase, long start) {
+		long now = System.nanoTime();
+		spent[phase.ordinal()] += now - start;
+		return now;
+	}
+
+	/**
+	 * Ends a rotation, comparing each phase with its budget and telling
+	 * the listener of every phase which overran.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link ModelListener#phaseOverran(Phase, long, long) phaseOverran(Phase, long, long)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param listener - told of each overrun, or null
+	 */
+	void endRotation(ModelListener listener) {
+		rotations++;
+		for (Phase phase : Phase.phaseOrdinals) {
+			int p = phase.ordinal();
+			totals[p] += spent[p];
+			if (spent[p] > budgets[p]) {
+				overruns[p]++;
+				if (listener != null) {
+					listener.phaseOverran(phase, spent[p], budgets[p]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the time a phase took in the last rotation.
+	 *
+	 * @param phase - the phase
+	 * @return the time, in nanoseconds
+	 */
+	long getSpent(Phase phase) {
+		return spent[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the time a phase has taken over every rotation measured.
+	 *
+	 * @param phase - the phase
+	 * @return the time, in nanoseconds
+	 */
+	long getTotal(Phase phase) {
+		return totals[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the number of rotations in which a phase overran its budget.
+	 *
+	 * @param phase - the phase
+	 * @return the number of overruns
+	 */
+	int getOverruns(Phase phase) {
+		return overruns[phase.ordinal()];
+	}
+
+	int getRotations() {
+		return rotations;
+	}
+
+	/**
+	 * Prints, for each phase, its budget, its mean time per rotation, and the number of overruns.
+	 *
+	 * @param out - the stream to print to
+	 */
+	void printReport(PrintStream out) {
+		for (Phase phase : Phase.phaseOrdinals) {
+			int p = phase.ordinal();
+			out.printf("%-8s budget %7.2f ms, mean %7.2f ms, %d of %d over%n", phase, budgets[p] / 1e6,
+					totals[p] / 1e6 / Math.max(1, rotations), overruns[p], rotations);
+		}
+	}
+}
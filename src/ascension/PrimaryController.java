@@ -2,6 +2,7 @@ package ascension;
 
 import java.awt.Container;
 import java.awt.DisplayMode;
+import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
@@ -15,12 +16,19 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferStrategy;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.Timer;
 
 import ascension.AbstractUnit.UnitType;
+import ascension.GameClock.ClockMode;
+import ascension.PhaseBudgets.Phase;
 import ascension.PrimaryModel.Player;
 
 /**
@@ -38,7 +46,7 @@ import ascension.PrimaryModel.Player;
  * @version 1.0
  */
 
-class PrimaryController extends JFrame implements MouseListener, MouseMotionListener, KeyListener {
+class PrimaryController extends JFrame implements MouseListener, MouseMotionListener, KeyListener, ModelListener {
 
 	/**
 	 * A timer, initialized in {@link PrimaryController#startGame() startGame()}, which
@@ -58,6 +66,7 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	private GraphicsDevice primaryGDev;
 	private boolean isFSSupported;
 	private PrimaryModel gameModel;
+	private GameClock gameClock;
 	private PrimaryView gameView;
 	private Container contentPane;
 	private BufferStrategy bufferStrategy;
@@ -103,7 +112,15 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	 * </p>
 	 */
 	void loadInitialGameState() {
-		gameModel = new PrimaryModel(this);
+		// The clock paces the game on its own thread, and the game runs on the event thread with the input.
+		gameClock = new GameClock(ClockMode.REAL_TIME, new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				EventQueue.invokeLater(command);
+			}
+		});
+		gameModel = new PrimaryModel(this, gameClock);
 		gridSize = 500;
 		gameModel.loadInitialModelState(gridSize, 4);
 		gameView = new PrimaryView();
@@ -225,7 +242,7 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	protected void render(Graphics g) {
 		try {
 			g = bufferStrategy.getDrawGraphics();
-			gameView.render(g, gameModel.getVisualModel());
+			gameView.render(g, gameModel.getVisualModel(), gameModel.getVisibilityLayer());
 		} finally {
 			// Prudent to free system resources when finished.
 			g.dispose();
@@ -248,8 +265,11 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	 * <p>
 	 * This method will likely be replaced in the future by
 	 * implementing <code>KeyBinding</code>. However, for now
-	 * the only interactive key is the <code>esc</code> key.
-	 * Upon releasing the key, the game exits.
+	 * the only interactive keys are the <code>esc</code> key,
+	 * upon the release of which the game exits, the <code>f</code>
+	 * key, which steps the clock on to its next {@link ClockMode ClockMode},
+	 * and the <code>l</code> key, which writes the match so far to a
+	 * {@link TurnLog TurnLog} file for the {@link ReplayEngine ReplayEngine}.
 	 * </p>
 
 	 * @param arg0 - the triggering event. This may be any key.
@@ -258,6 +278,30 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	public void keyReleased(KeyEvent arg0) {
 		if (arg0.getKeyCode() == KeyEvent.VK_ESCAPE) {
 			System.exit(0);
+		} else if (arg0.getKeyCode() == KeyEvent.VK_F) {
+			ClockMode clockMode = ClockMode.clockModeOrdinals[(gameClock.getClockMode().ordinal() + 1) % ClockMode.clockModeOrdinals.length];
+			gameClock.setClockMode(clockMode);
+			System.out.println("Clock: " + clockMode);
+		} else if (arg0.getKeyCode() == KeyEvent.VK_L) {
+			writeTurnLog();
+		}
+	}
+
+	/*
+	 * Writes the model's turn log to a new file in the working directory, named for the time.
+	 */
+	private void writeTurnLog() {
+		String fileName = "ascension-" + System.currentTimeMillis() + ".turnlog";
+		try {
+			OutputStream logOut = new BufferedOutputStream(new FileOutputStream(fileName));
+			try {
+				gameModel.turnLog.writeTo(logOut);
+			} finally {
+				logOut.close();
+			}
+			System.out.println("Turn log, " + gameModel.turnLog.size() + " bytes, written to " + fileName);
+		} catch (IOException e) {
+			System.out.println("The turn log could not be written to " + fileName + ": " + e.getMessage());
 		}
 	}
 
@@ -294,7 +338,7 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 			// Identify the target of the click.
 			int c = gameView.getVisX(), r = gameView.getVisY(),
 					row = (r + y - gameView.getYOffset()) / gameView.getUnitLength(), column = (c + x - gameView.getXOffset()) / gameView.getUnitLength();
-			UnitType occupyingUnitType = gameModel.getVisualModel()[row][column].occupyingUnitType;
+			UnitType occupyingUnitType = gameModel.getVisualModel().getOccupyingUnitType(row, column);
 
 			if (!unitIsSelected && !terrainIsSelected) { // If nothing is currently selected
 				if (occupyingUnitType == UnitType.EMPTY) {
@@ -394,9 +438,10 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 	 * </p>
 	 * 
 	 * @param notification - a message describing the notification
-	 * @param type - the type of notification
+	 * @param playerGainingControl - the player whose turn it now is
 	 */
-	void rotateTurn(String notification, Player playerGainingControl) {
+	@Override
+	public void turnRotated(String notification, Player playerGainingControl) {
 		System.out.println(notification);
 		unitIsSelected = false;
 		terrainIsSelected = false;
@@ -406,6 +451,25 @@ class PrimaryController extends JFrame implements MouseListener, MouseMotionList
 		actionDisabled = true;
 	}
 
+	/**
+	 * Reports a phase of the turn which took longer than its budget.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PhaseBudgets#endRotation(ModelListener) endRotation(ModelListener)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param phase - the phase which overran
+	 * @param spentNanos - the time the phase took, in nanoseconds
+	 * @param budgetNanos - the phase's budget, in nanoseconds
+	 */
+	@Override
+	public void phaseOverran(Phase phase, long spentNanos, long budgetNanos) {
+		System.out.printf("%s took %.2f ms of a %.2f ms budget%n", phase, spentNanos / 1e6, budgetNanos / 1e6);
+	}
+
 	@Override
 	public void mouseDragged(MouseEvent arg0) {
 		// TODO Auto-generated method stub
@@ -1,28 +1,25 @@
 package ascension;
 
 import java.awt.Point;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-
-import javax.swing.ImageIcon;
-import javax.swing.Timer;
-
-import com.sun.javafx.print.Units;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ascension.AbstractUnit.Locomotion;
+import ascension.PathFinder.SearchStrategy;
+import ascension.PhaseBudgets.Phase;
 import ascension.AbstractUnit.UnitType;
 import ascension.Terrain.TerrainSubType;
 import ascension.Terrain.TerrainType;
+import ascension.VisionEngine.VisionMode;
 
 /**
  * <p>
@@ -52,7 +49,18 @@ class PrimaryModel {
 
 	/**
 	 * At every tick of the clock the turn advances a bit closer
-	 * to completion.
+	 * to completion. Null if the turn only rotates when asked.
+	 * 
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#tick tick}
+	 * </ul>
+	 * </p>
+	 */
+	TurnClock turnClock;
+	PhaseBudgets phaseBudgets;
+	/**
+	 * Run at every tick of the {@link PrimaryModel#turnClock turnClock}.
 	 * 
 	 * <b>Calls</b> -
 	 * <ul>
@@ -60,25 +68,89 @@ class PrimaryModel {
 	 * </ul>
 	 * </p>
 	 */
-	Timer turnTimer;
-	ArrayList<ArrayList<ArrayList<ArrayList<AbstractUnit>>>> listOfActiveUnitArrays;
-	ArrayList<VisibilityState[][]> listOfActiveVisibilityArrays;
+	private final Runnable tick = new Runnable() {
+
+		@Override
+		public void run() {
+			if (percent == 10) {
+				percent = -1;
+				rotateTurn();
+			}
+			percent++;
+		}
+	};
+	ArrayList<UnitGrid> listOfActiveUnitArrays;
+	ArrayList<VisibilityGrid> listOfActiveVisibilityArrays;
+	ArrayList<VisibilityLayer> listOfActiveVisibilityLayers;
 	ArrayList<Terrain[][]> listOfActiveTerrainArrays;
 	ArrayList<PathFinder> listOfActivePathFinders;
-	ArrayList<ArrayList<ArrayList<AbstractUnit>>> unitsP1, unitsP2, unitsP3, unitsP4;
+	ArrayList<FlowFieldService> listOfActiveFlowFieldServices;
+	ArrayList<CooperativePlanner> listOfActiveCooperativePlanners;
+	UnitGrid unitsP1, unitsP2, unitsP3, unitsP4;
 	AbstractUnit focusTarget = null;
 	Terrain[][] terrainP1, terrainP2, terrainP3, terrainP4;
-	VisibilityState[][] visualModelP1, visualModelP2, visualModelP3, visualModelP4;
+	VisibilityGrid visualModelP1, visualModelP2, visualModelP3, visualModelP4;
 	int turnLength, percent, playerCount, waitingState, gridSize;
+	boolean cooperativeMovement;
 	PathFinder pathFinderP1, pathFinderP2, pathFinderP3, pathFinderP4;
+	VisionEngine visionEngine;
+	OccupancyIndex occupancyIndex;
+	RegionVersions regionVersions;
+	FieldOfView fieldOfView;
+	ForkJoinPool workerPool;
+	MatchRandom matchRandom;
+	TurnLog turnLog;
 	ArrayList<ActivityList> activityQueue;
+	// The activity lists of the resolution pass under way, and their grouping by target.
+	private ArrayList<ActivityList> passActivityLists;
+	private TargetIndex targetIndex;
+	// The unit of each activity list of the pass, and the squares it stood on before the pass and after, for the turn log.
+	private AbstractUnit[] passUnits;
+	private int[] passFromSquares, passToSquares;
+	// Passes with fewer groups than this are resolved on the model thread alone.
+	private static final int PARALLEL_GROUPS = 256;
+	private static final int NO_REGION = -1;
+	private static final long MILLISECOND = 1000000L;
 	enum Player { PLAYER_1, PLAYER_2, PLAYER_3, PLAYER_4;
 		public static final Player playerOrdinals[] = values(); };
 	Player activePlayer;
-	PrimaryController controller;
+	ModelListener listener;
 
-	public PrimaryModel(PrimaryController primaryController) {
-		controller = primaryController;
+	/**
+	 * Creates a new <code>PrimaryModel</code>.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryController#loadInitialGameState() loadInitialGameState()}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param listener - told of the changes the model makes on its own, or null
+	 * @param turnClock - ticks the model through its turns, or null to rotate the turn only when asked
+	 */
+	PrimaryModel(ModelListener listener, TurnClock turnClock) {
+		this.listener = listener;
+		this.turnClock = turnClock;
+		phaseBudgets = new PhaseBudgets();
+	}
+
+	/**
+	 * Creates a new <code>PrimaryModel</code> with no listener, and so
+	 * no view, and no clock. The turn only rotates when
+	 * {@link PrimaryModel#rotateTurn() rotateTurn()} is called, as fast as
+	 * the caller likes.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link ReplayEngine#replay() replay()}
+	 * <li> {@link HeadlessDriver#main(String[]) HeadlessDriver}
+	 * </ul>
+	 * </p>
+	 */
+	PrimaryModel() {
+		this(null, null);
 	}
 
 	/**
@@ -106,36 +178,48 @@ class PrimaryModel {
 	 * @param playerCount - the number of players in the match
 	 */
 	void loadInitialModelState(int size, int playerCount) {
+		loadInitialModelState(size, playerCount, MatchRandom.newSeed());
+	}
+
+	/**
+	 * Takes in a set of values from the <i>model</i> in order
+	 * to instantiate various things such as the clock and arrays,
+	 * drawing every random number of the match from the given seed.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param size - the number of squares in the square map
+	 * @param playerCount - the number of players in the match
+	 * @param seed - the seed of the match's {@link MatchRandom MatchRandom}
+	 */
+	void loadInitialModelState(int size, int playerCount, long seed) {
 		gridSize = size;
 		waitingState = 0;
 		activePlayer = Player.PLAYER_1;
 		this.playerCount = playerCount;
 
-		// Clock instantiation
+		// Clock face; the clock itself starts once the model is ready.
 		percent = -1;
 		turnLength = 10 * 1000 * 10; // Multiply to lengthen the turns; Millisecond units by default
-		turnTimer = new Timer(0, new ActionListener() {
-
-			@Override
-			public void actionPerformed(ActionEvent evt) {
-				if (percent == 9) {
-					turnTimer.setRepeats(false);
-				}
-				if (percent == 10) {
-					percent = -1;
-					rotateTurn();
-				}
-				percent++;
-			}
-		});
-		turnTimer.setDelay(turnLength / 10);
-		turnTimer.setRepeats(true);
 
 		// This ought to help me reinvent some control structures to avoid clunky switch statements.
-		listOfActiveUnitArrays = new ArrayList<ArrayList<ArrayList<ArrayList<AbstractUnit>>>>(4);
-		listOfActiveVisibilityArrays = new ArrayList<VisibilityState[][]>();
+		listOfActiveUnitArrays = new ArrayList<UnitGrid>(4);
+		listOfActiveVisibilityArrays = new ArrayList<VisibilityGrid>();
+		listOfActiveVisibilityLayers = new ArrayList<VisibilityLayer>();
 		listOfActiveTerrainArrays = new ArrayList<Terrain[][]>();
 		listOfActivePathFinders = new ArrayList<PathFinder>();
+		listOfActiveFlowFieldServices = new ArrayList<FlowFieldService>();
+		listOfActiveCooperativePlanners = new ArrayList<CooperativePlanner>();
+
+		matchRandom = new MatchRandom(seed);
+		workerPool = new ForkJoinPool();
+		turnLog = new TurnLog();
+		turnLog.logMatch(seed, size, playerCount);
 
 		// Creates 2d arrays for terrain, units, and model.
 		// Initializes them.
@@ -153,29 +237,19 @@ class PrimaryModel {
 		// We are done initializing the map.
 		// TODO End removal directive
 		
-		// Initialization is essential here since there is no default creation for ArrayList<T> like there is for T[]
-		unitsP1  = new ArrayList<ArrayList<ArrayList<AbstractUnit>>>(size);
+		// A unit grid costs one int per square until units actually arrive.
+		// Cached paths are stamped with the versions of the regions they cross.
+		regionVersions = new RegionVersions(size, HierarchicalPathFinder.DEFAULT_CLUSTER_SIZE);
+		occupancyIndex = new OccupancyIndex(size, regionVersions);
+		unitsP1 = new UnitGrid(size, occupancyIndex, Player.PLAYER_1.ordinal());
 		listOfActiveUnitArrays.add(unitsP1);
-		ArrayList<ArrayList<AbstractUnit>> listOfUnitLists;
-		ArrayList<AbstractUnit> unitList;
-		for (int i = 0; i < size; i++) {
-			listOfUnitLists = new ArrayList<ArrayList<AbstractUnit>>();
-			unitsP1.add(listOfUnitLists);
-			for (int j = 0; j < size; j++) {
-				unitList = new ArrayList<AbstractUnit>();
-				listOfUnitLists.add(unitList);
-			}
-		}
 		int row = 1; // (int) (Math.random() * size / 4);
 		int column = 1; // (int) (Math.random() * size / 4);
-		unitsP1.get(row).get(column).add(new PhysicalBuilder(Player.PLAYER_1, row, column));
-		unitsP1.get(row).get(column).get(0).setVisible(true);
-		unitsP1.get(row).get(column).get(0).setActive(true);
-		unitsP1.get(row).get(column).get(0).setMovable(true);
-		visualModelP1 = new VisibilityState[size][size];
+		placeStartingUnit(unitsP1, new PhysicalBuilder(Player.PLAYER_1, row, column), row, column);
+		visualModelP1 = new VisibilityGrid(size);
 		listOfActiveVisibilityArrays.add(visualModelP1);
 		generateVisualModel(visualModelP1, unitsP1, terrainP1);
-		pathFinderP1 = new PathFinder(visualModelP1); // This is a fairly rudimentary solution TODO
+		pathFinderP1 = new PathFinder(visualModelP1, regionVersions); // This is a fairly rudimentary solution TODO
 		listOfActivePathFinders.add(pathFinderP1);
 		/*
 		 * Each player uses their own path finder because each player
@@ -187,52 +261,30 @@ class PrimaryModel {
 		terrainP2 = new Terrain[size][size];
 		listOfActiveTerrainArrays.add(terrainP2);
 		copyMap(terrainP1, terrainP2);
-		unitsP2  = new ArrayList<ArrayList<ArrayList<AbstractUnit>>>(size);
+		unitsP2 = new UnitGrid(size, occupancyIndex, Player.PLAYER_2.ordinal());
 		listOfActiveUnitArrays.add(unitsP2);
-		for (int i = 0; i < size; i++) {
-			listOfUnitLists = new ArrayList<ArrayList<AbstractUnit>>();
-			unitsP2.add(listOfUnitLists);
-			for (int j = 0; j < size; j++) {
-				unitList = new ArrayList<AbstractUnit>();
-				listOfUnitLists.add(unitList);
-			}
-		}
 		row = 1; // (int) (Math.random() * size / 4 + size * 3 / 4);
 		column = 3; // (int) (Math.random() * size / 4 + size * 3 / 4);
-		unitsP2.get(row).get(column).add(new PhysicalBuilder(Player.PLAYER_2, row, column));
-		unitsP2.get(row).get(column).get(0).setVisible(true);
-		unitsP2.get(row).get(column).get(0).setActive(true);
-		unitsP2.get(row).get(column).get(0).setMovable(true);
-		visualModelP2 = new VisibilityState[size][size];
+		placeStartingUnit(unitsP2, new PhysicalBuilder(Player.PLAYER_2, row, column), row, column);
+		visualModelP2 = new VisibilityGrid(size);
 		listOfActiveVisibilityArrays.add(visualModelP2);
 		generateVisualModel(visualModelP2, unitsP2, terrainP2);
-		pathFinderP2 = new PathFinder(visualModelP2);
+		pathFinderP2 = new PathFinder(visualModelP2, regionVersions);
 		listOfActivePathFinders.add(pathFinderP2);
 
 		if (playerCount > 2) {
 			terrainP3 = new Terrain[size][size];
 			listOfActiveTerrainArrays.add(terrainP3);
 			copyMap(terrainP1, terrainP3);
-			unitsP3  = new ArrayList<ArrayList<ArrayList<AbstractUnit>>>(size);
+			unitsP3 = new UnitGrid(size, occupancyIndex, Player.PLAYER_3.ordinal());
 			listOfActiveUnitArrays.add(unitsP3);
-			for (int i = 0; i < size; i++) {
-				listOfUnitLists = new ArrayList<ArrayList<AbstractUnit>>();
-				unitsP3.add(listOfUnitLists);
-				for (int j = 0; j < size; j++) {
-					unitList = new ArrayList<AbstractUnit>();
-					listOfUnitLists.add(unitList);
-				}
-			}
 			row = 7; // (int) (Math.random() * size / 4);
 			column = 7; // (int) (Math.random() * size / 4 + size * 3 / 4);
-			unitsP3.get(row).get(column).add(new PhysicalBuilder(Player.PLAYER_3, row, column));
-			unitsP3.get(row).get(column).get(0).setVisible(true);
-			unitsP3.get(row).get(column).get(0).setActive(true);
-			unitsP3.get(row).get(column).get(0).setMovable(true);
-			visualModelP3 = new VisibilityState[size][size];
+			placeStartingUnit(unitsP3, new PhysicalBuilder(Player.PLAYER_3, row, column), row, column);
+			visualModelP3 = new VisibilityGrid(size);
 			listOfActiveVisibilityArrays.add(visualModelP3);
 			generateVisualModel(visualModelP3, unitsP3, terrainP3);
-			pathFinderP3 = new PathFinder(visualModelP3);
+			pathFinderP3 = new PathFinder(visualModelP3, regionVersions);
 			listOfActivePathFinders.add(pathFinderP3);
 		}
 
@@ -240,71 +292,154 @@ class PrimaryModel {
 			terrainP4 = new Terrain[size][size];
 			listOfActiveTerrainArrays.add(terrainP4);
 			copyMap(terrainP1, terrainP4);
-			unitsP4  = new ArrayList<ArrayList<ArrayList<AbstractUnit>>>(size);
+			unitsP4 = new UnitGrid(size, occupancyIndex, Player.PLAYER_4.ordinal());
 			listOfActiveUnitArrays.add(unitsP4);
-			for (int i = 0; i < size; i++) {
-				listOfUnitLists = new ArrayList<ArrayList<AbstractUnit>>();
-				unitsP4.add(listOfUnitLists);
-				for (int j = 0; j < size; j++) {
-					unitList = new ArrayList<AbstractUnit>();
-					listOfUnitLists.add(unitList);
-				}
-			}
 			row = 7; // (int) (Math.random() * size / 4 + size * 3 / 4);
 			column = 5; // (int) (Math.random() * size / 4);
-			unitsP4.get(row).get(column).add(new PhysicalBuilder(Player.PLAYER_4, row, column));
-			unitsP4.get(row).get(column).get(0).setVisible(true);
-			unitsP4.get(row).get(column).get(0).setActive(true);
-			unitsP4.get(row).get(column).get(0).setMovable(true);
-			visualModelP4 = new VisibilityState[size][size];
+			placeStartingUnit(unitsP4, new PhysicalBuilder(Player.PLAYER_4, row, column), row, column);
+			visualModelP4 = new VisibilityGrid(size);
 			listOfActiveVisibilityArrays.add(visualModelP4);
 			generateVisualModel(visualModelP4, unitsP4, terrainP4);
-			pathFinderP4 = new PathFinder(visualModelP4);
+			pathFinderP4 = new PathFinder(visualModelP4, regionVersions);
 			listOfActivePathFinders.add(pathFinderP4);
 		}
 
+		for (int i = 0; i < playerCount; i++) {
+			listOfActiveVisibilityLayers.add(new VisibilityLayer(size));
+			listOfActiveFlowFieldServices.add(new FlowFieldService(listOfActivePathFinders.get(i).getPassabilityMap()));
+			listOfActiveCooperativePlanners.add(new CooperativePlanner(listOfActivePathFinders.get(i).getPassabilityMap(),
+					new ReservationTable(size, ReservationTable.DEFAULT_DEPTH)));
+		}
+
 		activityQueue = new ArrayList<ActivityList>();
-		updateVision();
+		passActivityLists = new ArrayList<ActivityList>();
+		targetIndex = new TargetIndex(size);
+		passUnits = new AbstractUnit[0];
+		passFromSquares = new int[0];
+		passToSquares = new int[0];
+		fieldOfView = new FieldOfView(terrainP1, false);
+		visionEngine = new VisionEngine(gridSize, listOfActiveUnitArrays, listOfActiveVisibilityArrays, listOfActiveVisibilityLayers, occupancyIndex,
+				fieldOfView, workerPool);
+		visionEngine.rebuild();
 		// TODO Think about moving the start of the turn to somewhere more practical.
 		// Maybe a "Start Game" screen or something. Probably something similar to the turn rotations.
-		turnTimer.start();
+		if (turnClock != null) {
+			turnClock.start(tick, turnLength / 10 * MILLISECOND);
+		}
 	}
 
-	private void updateVision() {
-		// First we flush the vision for each player to offer a clean update slate.
-		for (int r = 0; r < gridSize; r++) {
-			for (int c = 0; c < gridSize; c++) {
-				clearVisionInSquare(r, c); // This also adds back in any units known to the unit arrays
-			}
-		}
+	/**
+	 * Places a player's starting unit and readies it for the first turn.
+	 * 
+	 * @param units - the owning player's unit grid
+	 * @param unit - the starting unit
+	 * @param row - the row of the starting square
+	 * @param column - the column of the starting square
+	 */
+	private void placeStartingUnit(UnitGrid units, AbstractUnit unit, int row, int column) {
+		units.add(unit, row, column);
+		unit.setVisible(true);
+		unit.setActive(true);
+		unit.setMovable(true);
+	}
 
-		// Next, we iterate over the available units and structures and provide vision of squares in their range.
-		for (int r = 0; r < gridSize; r++) {
-			for (int c = 0; c < gridSize; c++) {
-				grantVisionInRangeOfSquare(r, c);
-			}
+	/**
+	 * Places a new unit for a player, as long as the square is on the map,
+	 * passable to the unit as its player sees it, and free of every unit.
+	 * The placement is recorded in the {@link TurnLog TurnLog} either way.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link HeadlessDriver#main(String[]) HeadlessDriver}
+	 * <li> {@link ReplayEngine#replay() replay()}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param player - the player the unit belongs to
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the unit placed, or null if it could not be
+	 */
+	AbstractUnit placeUnit(Player player, int row, int column) {
+		turnLog.logUnitPlaced(player.ordinal(), row * gridSize + column);
+		if (row < 0 || row >= gridSize || column < 0 || column >= gridSize || occupancyIndex.playersAt(row, column) != 0) {
+			return null;
 		}
-		
-		// TODO Probably could stand to just iterate over the grid once, but maybe not. Bears thinking though.
-		for (int r = 0; r < gridSize; r++) {
-			for (int c = 0; c < gridSize; c++) {
-				visualizeAllUnitPaths(r, c);
-			}
+		AbstractUnit unit = new PhysicalBuilder(player, row, column);
+		if (!listOfActivePathFinders.get(player.ordinal()).getPassabilityMap().isPassable(row, column, unit.getLocomotion())) {
+			return null;
 		}
+		placeStartingUnit(listOfActiveUnitArrays.get(player.ordinal()), unit, row, column);
+		listOfActiveVisibilityArrays.get(player.ordinal()).setOccupyingUnit(row, column, unit.unitType, player);
+		return unit;
 	}
 
-	private void visualizeAllUnitPaths(int r, int c) {
-		// Herein, we update the visibility state arrays with intended movements and destinations
-		for (int k = 0; k < listOfActiveUnitArrays.size(); k++) { // For each Unit Array...
-			if (!listOfActiveUnitArrays.get(k).get(r).get(c).isEmpty()) { // If there is at least one unit in this square...
-				for (AbstractUnit unitOfInterest : listOfActiveUnitArrays.get(k).get(r).get(c)) { // Cycle through the units in the square...
-					// And update the corresponding visibility state array with their intended paths.
-					visualizeIndividualUnitPath(unitOfInterest, k);
-				}
-			}
+	/**
+	 * Brings each player's visibility states up to date with unit movement.
+	 * 
+	 * <p>
+	 * Only units which moved or changed sight radius since the last call
+	 * cost anything here. Path indicators are maintained separately,
+	 * when orders are issued and when they enter resolution.
+	 * </p>
+	 * 
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link VisionEngine#update() update()}
+	 * </ul>
+	 * </p>
+	 */
+	private void updateVision() {
+		visionEngine.update();
+	}
+
+	/**
+	 * Switches between plain square vision and vision blocked by terrain.
+	 * 
+	 * <p>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link VisionEngine#setVisionMode(VisionMode) setVisionMode(VisionMode)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param visionMode - the new vision mode
+	 */
+	void setVisionMode(VisionMode visionMode) {
+		turnLog.logSetting(TurnLog.VISION_MODE, visionMode.ordinal());
+		visionEngine.setVisionMode(visionMode);
+	}
+
+	/**
+	 * Switches the search every player's path finder runs.
+	 * 
+	 * @param searchStrategy - the new search strategy
+	 */
+	void setSearchStrategy(SearchStrategy searchStrategy) {
+		turnLog.logSetting(TurnLog.SEARCH_STRATEGY, searchStrategy.ordinal());
+		for (PathFinder pathFinder : listOfActivePathFinders) {
+			pathFinder.setSearchStrategy(searchStrategy);
 		}
 	}
 
+	/**
+	 * Switches cooperative movement on or off. While it is on, each
+	 * player's moves are planned with a {@link CooperativePlanner CooperativePlanner},
+	 * in the order they are given, to keep clear of the moves given before,
+	 * and units take one step per activity. It is off by default.
+	 * 
+	 * @param cooperativeMovement - if true, plan moves cooperatively
+	 */
+	void setCooperativeMovement(boolean cooperativeMovement) {
+		turnLog.logSetting(TurnLog.COOPERATIVE_MOVEMENT, cooperativeMovement ? 1 : 0);
+		this.cooperativeMovement = cooperativeMovement;
+	}
+
+	boolean isCooperativeMovement() {
+		return cooperativeMovement;
+	}
+
 	private void visualizeIndividualUnitPath(AbstractUnit unitOfInterest, int playerOrdinal) {
 		// We're going to look through this unit's activity list and figure out
 		// with what exactly the visibility state array needs to be updated.
@@ -323,61 +458,34 @@ class PrimaryModel {
 		for (int i = 0; i < activitiesOfInterest.size() - 1; i ++) {
 			Activity activityOfInterest = activitiesOfInterest.get(i);
 			for (Point pointOfInterest : activityOfInterest.getTarget()) {
-				listOfActiveVisibilityArrays.get(playerOrdinal)[pointOfInterest.x][pointOfInterest.y].addInMotionUnit(unitOfInterest.unitType);
+				listOfActiveVisibilityArrays.get(playerOrdinal).addInMotionUnit(pointOfInterest.x, pointOfInterest.y, unitOfInterest.unitType);
 			}
 		}
 		
 		// Destination indicator with 75% transparency
 		Activity activityOfInterest = activitiesOfInterest.get(activitiesOfInterest.size() - 1);
 		for (Point pointOfInterest : activityOfInterest.getTarget()) {
-			listOfActiveVisibilityArrays.get(playerOrdinal)[pointOfInterest.x][pointOfInterest.y].setDestinationUnit(unitOfInterest.unitType);
+			listOfActiveVisibilityArrays.get(playerOrdinal).setDestinationUnit(pointOfInterest.x, pointOfInterest.y, unitOfInterest.unitType);
 		}
 	}
 
-	private void grantVisionInRangeOfSquare(int r, int c) {
-		int sightRadius = 0, trueSightRadius = 0; // TODO Eventually, units will sometimes possess true sight
-		for (int k = 0; k < listOfActiveUnitArrays.size(); k++) { // For each active square of each Unit Array...
-			if (!listOfActiveUnitArrays.get(k).get(r).get(c).isEmpty()) { 
-				for (AbstractUnit unitOfInterest : listOfActiveUnitArrays.get(k).get(r).get(c)) { // Find the greatest sight radius originating from that square
-					if (unitOfInterest.getSihtRd() > sightRadius) {
-						sightRadius = unitOfInterest.getSihtRd();
-						// TODO if (unitOfInterest.getTrueSightRadius() > trueSightRadius...
-					}
-				}
-
-				for (int i = Math.max(0, r - sightRadius); i < Math.min(r + sightRadius + 1, gridSize); i ++) {
-					for (int j = Math.max(0, c - sightRadius); j < Math.min(c + sightRadius + 1, gridSize); j++) {
-						if (!listOfActiveVisibilityArrays.get(k)[i][j].isInVisionRange) { // TODO need to add an additional check for true sight
-							listOfActiveVisibilityArrays.get(k)[i][j].isInVisionRange = true; // Let the square know it is in vision range
-
-							for (ArrayList<ArrayList<ArrayList<AbstractUnit>>> unitArray : listOfActiveUnitArrays) { // Detect enemy presence in the square
-								if (!unitArray.equals(listOfActiveUnitArrays.get(k))) {
-									if (!unitArray.get(i).get(j).isEmpty()) { // Enemy detected
-										// TODO We use only the 0th unit type, but this may need to change (leaning towards probably not).
-										listOfActiveVisibilityArrays.get(k)[i][j].setOccupyingUnit(unitArray.get(i).get(j).get(0).unitType); // Now the enemy is noted.
-										listOfActiveVisibilityArrays.get(k)[i][j].setControllingPlayer(unitArray.get(i).get(j).get(0).player); // And his controller is noted.
-									}
-								}
-							}
-						}
-					}
-				}
-			}
+	private void clearIndividualUnitPath(AbstractUnit unitOfInterest, int playerOrdinal) {
+		// This undoes exactly what visualizeIndividualUnitPath laid down for the same activity list.
+		ActivityList activitiesOfInterest = unitOfInterest.getActivityList();
+		
+		if (activitiesOfInterest.size() <= 0) {
+			return;
 		}
-	}
-
-	private void clearVisionInSquare(int row, int column) {
-		for (int i = 0; i < listOfActiveVisibilityArrays.size(); i++) {
-			listOfActiveVisibilityArrays.get(i)[row][column].controllingPlayer = null;
-			listOfActiveVisibilityArrays.get(i)[row][column].isInVisionRange = false;
-			listOfActiveVisibilityArrays.get(i)[row][column].setOccupyingUnit(UnitType.EMPTY);
-			listOfActiveVisibilityArrays.get(i)[row][column].halfTransparencyUnits.clear();
-			listOfActiveVisibilityArrays.get(i)[row][column].destinationUnit = null;
-			if (!listOfActiveUnitArrays.get(i).get(row).get(column).isEmpty()) { // Ensure that units owned by the player are accounted for in the respective visibility state
-				listOfActiveVisibilityArrays.get(i)[row][column].setOccupyingUnit(listOfActiveUnitArrays.get(i).get(row).get(column).get(0).unitType);
-				listOfActiveVisibilityArrays.get(i)[row][column].setControllingPlayer(Player.playerOrdinals[i]);
+		
+		for (int i = 0; i < activitiesOfInterest.size() - 1; i ++) {
+			for (Point pointOfInterest : activitiesOfInterest.get(i).getTarget()) {
+				listOfActiveVisibilityArrays.get(playerOrdinal).removeInMotionUnit(pointOfInterest.x, pointOfInterest.y, unitOfInterest.unitType);
 			}
 		}
+		
+		for (Point pointOfInterest : activitiesOfInterest.get(activitiesOfInterest.size() - 1).getTarget()) {
+			listOfActiveVisibilityArrays.get(playerOrdinal).setDestinationUnit(pointOfInterest.x, pointOfInterest.y, null);
+		}
 	}
 
 	/**
@@ -398,16 +506,14 @@ class PrimaryModel {
 	 * @param sourceUnits - the source unit array
 	 * @param terrain - the source terrain array
 	 */
-	private void generateVisualModel(VisibilityState[][] visM, ArrayList<ArrayList<ArrayList<AbstractUnit>>> sourceUnits, Terrain[][] terrain) {
-		for (int r = 0; r < sourceUnits.size(); r++) {
-			for (int c = 0; c < sourceUnits.size(); c++) {
-				visM[r][c] = new VisibilityState();
-				if (!sourceUnits.get(r).get(c).isEmpty()) {
+	private void generateVisualModel(VisibilityGrid visM, UnitGrid sourceUnits, Terrain[][] terrain) {
+		for (int r = 0; r < sourceUnits.getGridSize(); r++) {
+			for (int c = 0; c < sourceUnits.getGridSize(); c++) {
+				if (!sourceUnits.isEmpty(r, c)) {
 					// Should only need to account for the 0th since the map was just initialized
-					visM[r][c].setOccupyingUnit(sourceUnits.get(r).get(c).get(0).unitType);
-					visM[r][c].setControllingPlayer(sourceUnits.get(r).get(c).get(0).getPlayer());
+					visM.setOccupyingUnit(r, c, sourceUnits.first(r, c).unitType, sourceUnits.first(r, c).getPlayer());
 				}
-				visM[r][c].setTerrainType(terrain[r][c].terrainType, terrain[r][c].terrainSubType);
+				visM.setTerrainType(r, c, terrain[r][c].terrainType, terrain[r][c].terrainSubType);
 			}
 		}
 	}
@@ -437,6 +543,18 @@ class PrimaryModel {
 	 * Generates a randomized map.
 	 * 
 	 * <p>
+	 * The map is divided into seed zones, each of which grows a patch of
+	 * terrain out from its center. A patch reaches at most the first row
+	 * and column of the zones after it, so zones whose row and column
+	 * share their parity never touch, and each of the four parities is
+	 * grown in parallel on the worker pool, one after the other. Squares
+	 * left bare are then filled in parallel, row by row. Every zone and
+	 * every row draws from its own stream, split off the
+	 * {@link MatchRandom MatchRandom} in a fixed order beforehand, so the
+	 * map depends on the seed alone.
+	 * </p>
+	 * 
+	 * <p>
 	 * <b>Called By</b> -
 	 * <ul>
 	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
@@ -447,41 +565,103 @@ class PrimaryModel {
 	 */
 	private void generateMap(Terrain[][] dest) {
 		// Divide the map into 10-20% width and length seed zones.
-		int zonePercent = ((int) (11 * Math.random())) + 10, zoneLength = gridSize / zonePercent;
-		TerrainType seedType;
-
-		for (int x = 0; x < zonePercent; x++) {
-			for (int y = 0; y < zonePercent; y++) {
-				int seedC = zoneLength * x + zoneLength / 2;
-				int seedR = zoneLength * y + zoneLength / 2;
-				seedType = TerrainType.terrainTypeOrdinals[(int) (5 * Math.random())];
-				dest[seedR][seedC] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
-
-				for (int i = 1; i <= zoneLength / 2; i++) {
-					double chanceTarget = (double) i / (zoneLength / 2) - (double) 1 / (zoneLength / 2);
-
-					for (int c = seedC - i; c <= seedC + i; c++) {
-						if (Math.random() >= chanceTarget && seedR - i > -1 && c > -1 && c < gridSize)
-							dest[seedR - i][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
-						if (Math.random() >= chanceTarget && seedR + i < gridSize && c > -1 && c < gridSize)
-							dest[seedR + i][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
-					}
-					for (int r = seedR - i + 1; r <= seedR + i - 1; r++) {
-						if (Math.random() >= chanceTarget && seedC - i > -1 && r > -1 && r < gridSize)
-							dest[r][seedC - i] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
-						if (Math.random() >= chanceTarget && seedC + i < gridSize && r > -1 && r < gridSize)
-							dest[r][seedC + i] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
+		SplittableRandom random = matchRandom.splitForMap();
+		int zonePercent = random.nextInt(11) + 10, zoneLength = gridSize / zonePercent;
+
+		SplittableRandom[] zoneRandoms = new SplittableRandom[zonePercent * zonePercent];
+		for (int zone = 0; zone < zoneRandoms.length; zone++) {
+			zoneRandoms[zone] = random.split();
+		}
+		if (zoneLength > 0) {
+			int[] zones = new int[(zonePercent + 1) / 2 * ((zonePercent + 1) / 2)];
+			for (int parity = 0; parity < 4; parity++) {
+				int zoneCount = 0;
+				for (int x = parity / 2; x < zonePercent; x += 2) {
+					for (int y = parity % 2; y < zonePercent; y += 2) {
+						zones[zoneCount++] = x * zonePercent + y;
 					}
 				}
+				workerPool.invoke(new MapTask(dest, zones, 0, zoneCount, zoneRandoms, zonePercent, zoneLength));
 			}
 		}
 
+		SplittableRandom[] rowRandoms = new SplittableRandom[gridSize];
 		for (int r = 0; r < gridSize; r++) {
-			for (int c = 0; c < gridSize; c++) {
-				if (dest[r][c] == null) {
-					seedType = TerrainType.terrainTypeOrdinals[(int) (5 * Math.random())];
-					dest[r][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[(int) (9 * Math.random())]);
-				}
+			rowRandoms[r] = random.split();
+		}
+		workerPool.invoke(new MapTask(dest, null, 0, gridSize, rowRandoms, zonePercent, zoneLength));
+	}
+
+	/*
+	 * Grows the patch of terrain of one seed zone.
+	 */
+	private void growZone(Terrain[][] dest, int zone, SplittableRandom random, int zonePercent, int zoneLength) {
+		int seedC = zoneLength * (zone / zonePercent) + zoneLength / 2;
+		int seedR = zoneLength * (zone % zonePercent) + zoneLength / 2;
+		TerrainType seedType = TerrainType.terrainTypeOrdinals[random.nextInt(5)];
+		dest[seedR][seedC] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+
+		for (int i = 1; i <= zoneLength / 2; i++) {
+			double chanceTarget = (double) i / (zoneLength / 2) - (double) 1 / (zoneLength / 2);
+
+			for (int c = seedC - i; c <= seedC + i; c++) {
+				if (random.nextDouble() >= chanceTarget && seedR - i > -1 && c > -1 && c < gridSize)
+					dest[seedR - i][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+				if (random.nextDouble() >= chanceTarget && seedR + i < gridSize && c > -1 && c < gridSize)
+					dest[seedR + i][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+			}
+			for (int r = seedR - i + 1; r <= seedR + i - 1; r++) {
+				if (random.nextDouble() >= chanceTarget && seedC - i > -1 && r > -1 && r < gridSize)
+					dest[r][seedC - i] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+				if (random.nextDouble() >= chanceTarget && seedC + i < gridSize && r > -1 && r < gridSize)
+					dest[r][seedC + i] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+			}
+		}
+	}
+
+	/*
+	 * Fills the squares of one row which no seed zone reached.
+	 */
+	private void fillRow(Terrain[][] dest, int r, SplittableRandom random) {
+		for (int c = 0; c < gridSize; c++) {
+			if (dest[r][c] == null) {
+				TerrainType seedType = TerrainType.terrainTypeOrdinals[random.nextInt(5)];
+				dest[r][c] = new Terrain(seedType, TerrainSubType.terrainSubTypeOrdinals[random.nextInt(9)]);
+			}
+		}
+	}
+
+	/*
+	 * Grows a range of seed zones, or fills a range of rows when no zones
+	 * are given, halving the range until it is a single zone or row.
+	 */
+	private class MapTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Terrain[][] dest;
+		private final int[] zones;
+		private final SplittableRandom[] randoms;
+		private final int from, to, zonePercent, zoneLength;
+
+		MapTask(Terrain[][] dest, int[] zones, int from, int to, SplittableRandom[] randoms, int zonePercent, int zoneLength) {
+			this.dest = dest;
+			this.zones = zones;
+			this.from = from;
+			this.to = to;
+			this.randoms = randoms;
+			this.zonePercent = zonePercent;
+			this.zoneLength = zoneLength;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new MapTask(dest, zones, from, middle, randoms, zonePercent, zoneLength),
+						new MapTask(dest, zones, middle, to, randoms, zonePercent, zoneLength));
+			} else if (to > from && zones != null) {
+				growZone(dest, zones[from], randoms[zones[from]], zonePercent, zoneLength);
+			} else if (to > from) {
+				fillRow(dest, from, randoms[from]);
 			}
 		}
 	}
@@ -491,21 +671,25 @@ class PrimaryModel {
 	 * 
 	 * <p>
 	 * At the end of a round, processes the <code>ActivityQueue</code>
-	 * and resolves all pending <code>Activities</code>.
+	 * and resolves all pending <code>Activities</code>. Each phase of
+	 * the rotation is measured against its budget in the
+	 * {@link PhaseBudgets PhaseBudgets}, and overruns are reported to the
+	 * {@link ModelListener ModelListener}.
 	 * <p>
 	 * <b>Called By</b> -
 	 * <ul>
-	 * <li> {@link PrimaryModel#turnTimer turnTimer}
+	 * <li> {@link PrimaryModel#tick tick}
 	 * </ul>
 	 * <b>Calls</b> -
 	 * <ul>
-	 * <li> {@link PrimaryController#rotateTurn(String, int) generateNotification(String, int)}
-	 * <li> {@link AbstractUnit#getActivityList() getActivityList()}
-	 * <li> {@link ActivityQueue#process() process()}
+	 * <li> {@link ModelListener#turnRotated(String, Player) turnRotated(String, Player)}
+	 * <li> {@link PrimaryModel#resolveTurn() resolveTurn()}
 	 * </ul>
 	 * </p>
 	 */
 	void rotateTurn() {
+		turnLog.logRotateTurn(activePlayer.ordinal());
+		phaseBudgets.beginRotation();
 		// First we will terminate all in progress player activities by
 		// removing unit focus and interrupting any active mouse activities
 		focusTarget = null;
@@ -513,97 +697,390 @@ class PrimaryModel {
 			activePlayer = Player.values()[activePlayer.ordinal() + 1]; // Select the next player in sequence.
 		}
 		else {
-			/* Now, we'll ensure that all pending activity lists get popped into the processing queue.
-			 * The activityQueue is effectively an irregular 2d array where the left-most
-			 * activity in each list is prior to all right-hand activities. Thus, all activityList[n]
-			 * are prior to any activityList[n+1].
-			 */ 
-			for (int r = 0; r < unitsP1.size(); r++) {
-				for (int c = 0; c < unitsP1.size(); c++) {
-					for (ArrayList<ArrayList<ArrayList<AbstractUnit>>> unitArray : listOfActiveUnitArrays) {
-						addAllActivityListsAt(r, c, unitArray);
-					}	
-				}
-			}
+			resolveTurn();
+			activePlayer = Player.PLAYER_1;
+		}
+		if (listener != null) {
+			listener.turnRotated("Switching to Player: " + activePlayer.toString(), activePlayer);
+		}
+		if (turnClock != null) {
+			turnClock.start(tick, turnLength / 10 * MILLISECOND);
+		}
+		percent = 0;
+		waitingState = 1;
+		long visionStart = System.nanoTime();
+		updateVision();
+		phaseBudgets.charge(Phase.VISION, visionStart);
+		phaseBudgets.endRotation(listener);
+	}
+
+	/**
+	 * Resolves every activity given during the round, pass by pass, until
+	 * the activity queue is empty.
+	 * 
+	 * <p>
+	 * The outcome of every pass, and the number of passes, are appended
+	 * to the {@link TurnLog TurnLog}, and the time of each phase is
+	 * charged to the {@link PhaseBudgets PhaseBudgets}.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#resolveGroupsByRegion() resolveGroupsByRegion()}
+	 * <li> {@link PrimaryModel#reattemptPassivePathFindingFor(List) reattemptPassivePathFindingFor(List)}
+	 * <li> {@link PrimaryModel#continueLongRangeRoutes() continueLongRangeRoutes()}
+	 * </ul>
+	 * </p>
+	 */
+	private void resolveTurn() {
+		/* Now, we'll ensure that all pending activity lists get popped into the processing queue.
+		 * The activityQueue is effectively an irregular 2d array where the left-most
+		 * activity in each list is prior to all right-hand activities. Thus, all activityList[n]
+		 * are prior to any activityList[n+1].
+		 */ 
+		long mark = System.nanoTime();
+		for (UnitGrid unitArray : listOfActiveUnitArrays) {
+			addAllActivityLists(unitArray);
+		}
+		mark = phaseBudgets.charge(Phase.GATHER, mark);
+
+		/*
+		 * The magic starts here. We need a while loop to ensure that we can grind out all activities in
+		 * the processing queue. Basically, only once the queue is empty do we stop. Each activity list
+		 * loses at least one activity per turn (or so I believe before actually coding it all out) and
+		 * so it should reach the empty state reliably. We'll see. We'll see.
+		 */
 
-			/*
-			 * The magic starts here. We need a while loop to ensure that we can grind out all activities in
-			 * the processing queue. Basically, only once the queue is empty do we stop. Each activity list
-			 * loses at least one activity per turn (or so I believe before actually coding it all out) and
-			 * so it should reach the empty state reliably. We'll see. We'll see.
+		int passCount = 0;
+		while (!activityQueue.isEmpty()) {
+			/* 
+			 * Next, we do a pass over the queue to determine if
+			 * there will be any conflicts to resolve.
+			 * Notable conflicts include:
+			 * Two or more units attempting to occupy the same square as a destination.
+			 * Enemy units encounter one another.
+			 * The target of an ability is leaving the square where the ability is aimed
+			 * TODO Probably need some more notable cases. They will occur to me as time
+			 * goes on and as I add more features.
 			 */
 
-			while (!activityQueue.isEmpty()) {
-				/* 
-				 * Next, we do a pass over the queue to determine if
-				 * there will be any conflicts to resolve.
-				 * Notable conflicts include:
-				 * Two or more units attempting to occupy the same square as a destination.
-				 * Enemy units encounter one another.
-				 * The target of an ability is leaving the square where the ability is aimed
-				 * TODO Probably need some more notable cases. They will occur to me as time
-				 * goes on and as I add more features.
-				 */
-
-				// TODO As a proof of concept, I'm going to use a multimap to look for move targets
-				// The key is the target list of the 0th activity in the activity list
-				// The value is the activity list itself. Since I'm searching for overlaps,
-				// the activity lists are put into array lists. Any such list with more than
-				// two elements indicates an overlap.
-				Map<ArrayList<Point>, ArrayList<ActivityList>> movementDestinations = new HashMap<ArrayList<Point>, ArrayList<ActivityList>>();
-				for (ActivityList activityList : activityQueue) {
-					// First we handle the case of an already present key
-					if (movementDestinations.containsKey(activityList.get(0).getTarget())) {
-						movementDestinations.get(activityList.get(0).getTarget()).add(activityList);
-					} // Next, we address the case of a newly found key.
-					else {
-						ArrayList<ActivityList> mapElement = new ArrayList<ActivityList>();
-						mapElement.add(activityList);
-						movementDestinations.put(activityList.get(0).getTarget(), mapElement);
-					}
+			// Activity lists are grouped by the target of their 0th activity. The target index
+			// packs each target into a primitive key, and numbers the lists in queue order.
+			// A group of one list holds its target alone; two or more lists in a group overlap.
+			// The queue changes as activities execute, so the pass works from a copy.
+			passActivityLists.clear();
+			passActivityLists.addAll(activityQueue);
+			targetIndex.clear();
+			int passSize = passActivityLists.size();
+			if (passUnits.length < passSize) {
+				passUnits = new AbstractUnit[passSize * 2];
+				passFromSquares = new int[passSize * 2];
+				passToSquares = new int[passSize * 2];
+			}
+			for (int i = 0; i < passSize; i++) {
+				Activity activity = passActivityLists.get(i).get(0);
+				targetIndex.add(activity.getTarget());
+				passUnits[i] = activity.getActivityRequestor();
+				passFromSquares[i] = passUnits[i].curLoc.x * gridSize + passUnits[i].curLoc.y;
+			}
+			mark = phaseBudgets.charge(Phase.GROUP, mark);
+
+			// Groups are resolved region by region, in parallel where the pass is large enough.
+			ArrayList<ActivityList> displacedActivityLists = resolveGroupsByRegion();
+			mark = phaseBudgets.charge(Phase.RESOLVE, mark);
+
+			// Every unit displaced during this pass re-plans at once.
+			reattemptPassivePathFindingFor(displacedActivityLists);
+			mark = phaseBudgets.charge(Phase.REPLAN, mark);
+
+			for (int i = 0; i < passSize; i++) {
+				passToSquares[i] = passUnits[i].curLoc.x * gridSize + passUnits[i].curLoc.y;
+				passUnits[i] = null;
+			}
+			turnLog.logPass(passSize, passFromSquares, passToSquares);
+			passCount++;
+
+			// Lists emptied during the pass leave the queue in one sweep, rather than each
+			// searching the queue for itself, which would take time in the queue's length.
+			int kept = 0;
+			for (int i = 0; i < activityQueue.size(); i++) {
+				if (!activityQueue.get(i).isEmpty()) {
+					activityQueue.set(kept++, activityQueue.get(i));
 				}
+			}
+			activityQueue.subList(kept, activityQueue.size()).clear();
+			mark = phaseBudgets.charge(Phase.RESOLVE, mark);
+		}
+		turnLog.logTurnResolved(passCount);
+		for (CooperativePlanner cooperativePlanner : listOfActiveCooperativePlanners) {
+			cooperativePlanner.clear();
+		}
 
-				// At this point, movementDestinations should account for all activity lists.
-				// For any key of movementDestinations with a corresponding array list,
-				// if that array list has:
-				// zero values - something probably went wrong. oops
-				// one value - this activity target is held by exactly one unit
-				// two or more values - this target is held by two or more units
-				// For the case of two or more values, I must seek to resolve the conflict.
-				for (Entry<ArrayList<Point>, ArrayList<ActivityList>> keyValuePair : movementDestinations.entrySet()) {
-					// TODO The below if statements are expressive, but probably not optimal. Consider a switch.
-					if (keyValuePair.getValue().size() <= 0) {
-						System.out.println("THIS IS UNFORTUNATE!!! Why is it so tough to get things right the first time?");
-					}
-					if (keyValuePair.getValue().size() == 1) {
-						processPassiveConflictFreeMovementRequest(keyValuePair.getValue().get(0));
-					}
-					if (keyValuePair.getValue().size() > 1) {
-						System.out.println("It's a Conflict Rick!");
-						resolvePassiveMovementConflict(keyValuePair.getValue());
+		// Units part way along a long range route are given the next leg of it.
+		continueLongRangeRoutes();
+		phaseBudgets.charge(Phase.REPLAN, mark);
+	}
+
+	/**
+	 * Orders every unit still on a long range route along the next leg of
+	 * it, as far as its movement will carry it next round.
+	 * 
+	 * <p>
+	 * A unit carries on from where it stands when the next square of its
+	 * route is beside it and every square of the leg can still be crossed.
+	 * Otherwise, having been pushed aside in a conflict or found the
+	 * terrain changed, it plans a new route from where it stands to the
+	 * same destination, and gives up if there is none. Units are taken
+	 * player by player, in unit grid order, so a replay orders the same
+	 * legs.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#resolveTurn() resolveTurn()}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#getLongRangePath(int, int, int, int, Locomotion) getLongRangePath(int, int, int, int, Locomotion)}
+	 * <li> {@link PrimaryModel#orderMoveAlong(AbstractUnit, ArrayList, int) orderMoveAlong(AbstractUnit, ArrayList, int)}
+	 * </ul>
+	 * </p>
+	 */
+	private void continueLongRangeRoutes() {
+		for (int k = 0; k < playerCount; k++) {
+			UnitGrid units = listOfActiveUnitArrays.get(k);
+			PathFinder pathFinder = listOfActivePathFinders.get(k);
+			for (int slot = 0; slot < units.capacity(); slot++) {
+				AbstractUnit unit = units.unitAt(slot);
+				if (unit == null || unit.longRangeRoute == null) {
+					continue;
+				}
+				ArrayList<Point> route = unit.longRangeRoute;
+				unit.longRangeRoute = null;
+				int legLength = Math.min(route.size(), unit.getMovSpd());
+				Point next = route.get(0);
+				boolean onRoute = Math.abs(next.x - unit.curLoc.x) <= 1 && Math.abs(next.y - unit.curLoc.y) <= 1;
+				for (int i = 0; i < legLength && onRoute; i++) {
+					onRoute = pathFinder.getPassabilityMap().isPassable(route.get(i).x, route.get(i).y, unit.getLocomotion());
+				}
+				if (!onRoute) {
+					Point destination = route.get(route.size() - 1);
+					route = pathFinder.getLongRangePath(unit.curLoc.x, unit.curLoc.y, destination.x, destination.y, unit.getLocomotion());
+					if (route == null || route.isEmpty()) {
+						continue;
 					}
+					legLength = Math.min(route.size(), unit.getMovSpd());
 				}
+				ArrayList<Point> leg = orderMoveAlong(unit, new ArrayList<Point>(route.subList(0, legLength)), k);
+				if (leg.size() < route.size()) {
+					unit.longRangeRoute = new ArrayList<Point>(route.subList(leg.size(), route.size()));
+				}
+				if (cooperativeMovement) {
+					listOfActiveCooperativePlanners.get(k).reserve(unit.curLoc.x, unit.curLoc.y, leg);
+				}
+				unit.setMovable(false);
+				visualizeIndividualUnitPath(unit, k);
 			}
-			activePlayer = Player.PLAYER_1;
 		}
-		controller.rotateTurn("Switching to Player: " + activePlayer.toString(), activePlayer);
-		turnTimer.setRepeats(true);
-		percent = 0;
-		turnTimer.start();
-		waitingState = 1;
-		updateVision();
 	}
 
-	private void resolvePassiveMovementConflict(ArrayList<ActivityList> conflictedActivities) {
+	/**
+	 * Resolves every group of the current pass, splitting the work by
+	 * region of the map.
+	 * 
+	 * <p>
+	 * A group touches the squares its moves leave and the square they
+	 * target. A group which touches only one {@link RegionVersions region}
+	 * can only affect units, occupancy, and region versions within that
+	 * region, so the groups of different regions are independent. Each
+	 * region's groups are resolved on the worker pool, in group order,
+	 * while groups touching more than one region wait until every region
+	 * is done and are then resolved on this thread, also in group order.
+	 * The result is therefore the same however the regions are scheduled,
+	 * and the displaced activity lists are stitched together region by
+	 * region, and then border groups last, in a fixed order. Small passes
+	 * are resolved in group order on this thread alone.
+	 * </p>
+	 * 
+	 * <p>
+	 * Coin flips are drawn from streams split off the
+	 * {@link MatchRandom MatchRandom} on this thread before any group is
+	 * resolved: one for a small pass, or one per busy region and one for
+	 * the border groups. Each stream is drawn from in group order by a
+	 * single thread, so the flips too are the same however the regions
+	 * are scheduled.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#resolveTurn() resolveTurn()}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#processPassiveConflictFreeMovementRequest(ActivityList) processPassiveConflictFreeMovementRequest(ActivityList)}
+	 * <li> {@link PrimaryModel#resolvePassiveMovementConflict(ArrayList, SplittableRandom, ArrayList) resolvePassiveMovementConflict(ArrayList, SplittableRandom, ArrayList)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @return the activity lists displaced during the pass
+	 */
+	private ArrayList<ActivityList> resolveGroupsByRegion() {
+		int groupCount = targetIndex.groupCount();
+		ArrayList<ActivityList> displacedActivityLists = new ArrayList<ActivityList>();
+		if (groupCount < PARALLEL_GROUPS) {
+			SplittableRandom random = matchRandom.splitForConflicts();
+			for (int group = 0; group < groupCount; group++) {
+				resolveGroup(group, random, displacedActivityLists);
+			}
+			return displacedActivityLists;
+		}
+
+		// Counting sort of the groups by region, keeping group order within each region.
+		// Border groups go in one extra bucket after the last region.
+		int regionCount = regionVersions.getRegionCount();
+		int[] regionOfGroup = new int[groupCount], regionStarts = new int[regionCount + 2];
+		for (int group = 0; group < groupCount; group++) {
+			regionOfGroup[group] = regionOfGroup(group, regionCount);
+			regionStarts[regionOfGroup[group] + 1]++;
+		}
+		for (int region = 0; region <= regionCount; region++) {
+			regionStarts[region + 1] += regionStarts[region];
+		}
+		int[] groupsByRegion = new int[groupCount], filled = Arrays.copyOf(regionStarts, regionCount + 1);
+		for (int group = 0; group < groupCount; group++) {
+			groupsByRegion[filled[regionOfGroup[group]]++] = group;
+		}
+
+		int[] busyRegions = new int[regionCount];
+		int busyCount = 0;
+		for (int region = 0; region < regionCount; region++) {
+			if (regionStarts[region + 1] > regionStarts[region]) {
+				busyRegions[busyCount++] = region;
+			}
+		}
+		SplittableRandom[] regionRandoms = new SplittableRandom[busyCount];
+		for (int i = 0; i < busyCount; i++) {
+			regionRandoms[i] = matchRandom.splitForConflicts();
+		}
+		SplittableRandom borderRandom = matchRandom.splitForConflicts();
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		ArrayList<ActivityList>[] displacedByRegion = new ArrayList[busyCount];
+		if (busyCount > 0) {
+			workerPool.invoke(new RegionTask(busyRegions, 0, busyCount, regionStarts, groupsByRegion, regionRandoms, displacedByRegion));
+		}
+		for (ArrayList<ActivityList> displaced : displacedByRegion) {
+			displacedActivityLists.addAll(displaced);
+		}
+		for (int i = regionStarts[regionCount]; i < regionStarts[regionCount + 1]; i++) {
+			resolveGroup(groupsByRegion[i], borderRandom, displacedActivityLists);
+		}
+		return displacedActivityLists;
+	}
+
+	/*
+	 * Returns the one region every square a group touches lies in, or the
+	 * region count for a group on a border.
+	 */
+	private int regionOfGroup(int group, int regionCount) {
+		int region = NO_REGION;
+		for (int move = targetIndex.first(group); move != TargetIndex.NONE; move = targetIndex.next(move)) {
+			Activity activity = passActivityLists.get(move).get(0);
+			for (Point square : activity.getOrigin()) {
+				region = joinRegion(region, regionVersions.regionOf(square.x, square.y), regionCount);
+			}
+			for (Point square : activity.getSquaresOccupied()) {
+				region = joinRegion(region, regionVersions.regionOf(square.x, square.y), regionCount);
+			}
+		}
+		return region;
+	}
+
+	private static int joinRegion(int region, int squareRegion, int regionCount) {
+		return region == NO_REGION || region == squareRegion ? squareRegion : regionCount;
+	}
+
+	/*
+	 * Resolves a single group of the current pass, adding any activity lists it displaces.
+	 */
+	private void resolveGroup(int group, SplittableRandom random, ArrayList<ActivityList> displacedActivityLists) {
+		// For a group of one, this activity target is held by exactly one unit.
+		// For a group of two or more, the target is held by two or more units,
+		// and I must seek to resolve the conflict.
+		if (targetIndex.size(group) == 1) {
+			ActivityList activityList = passActivityLists.get(targetIndex.first(group));
+			if (!processPassiveConflictFreeMovementRequest(activityList) && !activityList.isEmpty()) {
+				// Something already holds the square, so the rest of the route no longer starts where the unit stands.
+				displacedActivityLists.add(activityList);
+			}
+		} else {
+			ArrayList<ActivityList> conflictedActivities = new ArrayList<ActivityList>(targetIndex.size(group));
+			for (int move = targetIndex.first(group); move != TargetIndex.NONE; move = targetIndex.next(move)) {
+				conflictedActivities.add(passActivityLists.get(move));
+			}
+			resolvePassiveMovementConflict(conflictedActivities, random, displacedActivityLists);
+		}
+	}
+
+	/*
+	 * Resolves the groups of a range of regions, halving the range until
+	 * it is a single region, whose groups are resolved in order.
+	 */
+	private class RegionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] busyRegions, regionStarts, groupsByRegion;
+		private final SplittableRandom[] regionRandoms;
+		private final ArrayList<ActivityList>[] displacedByRegion;
+		private final int from, to;
+
+		RegionTask(int[] busyRegions, int from, int to, int[] regionStarts, int[] groupsByRegion, SplittableRandom[] regionRandoms,
+				ArrayList<ActivityList>[] displacedByRegion) {
+			this.busyRegions = busyRegions;
+			this.from = from;
+			this.to = to;
+			this.regionStarts = regionStarts;
+			this.groupsByRegion = groupsByRegion;
+			this.regionRandoms = regionRandoms;
+			this.displacedByRegion = displacedByRegion;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RegionTask(busyRegions, from, middle, regionStarts, groupsByRegion, regionRandoms, displacedByRegion),
+						new RegionTask(busyRegions, middle, to, regionStarts, groupsByRegion, regionRandoms, displacedByRegion));
+				return;
+			}
+			int region = busyRegions[from];
+			ArrayList<ActivityList> displaced = new ArrayList<ActivityList>();
+			for (int i = regionStarts[region]; i < regionStarts[region + 1]; i++) {
+				resolveGroup(groupsByRegion[i], regionRandoms[from], displaced);
+			}
+			displacedByRegion[from] = displaced;
+		}
+	}
+
+	private void resolvePassiveMovementConflict(ArrayList<ActivityList> conflictedActivities, SplittableRandom random,
+			ArrayList<ActivityList> displacedActivityLists) {
 		// TODO for now, to get things moving (heh) I'm going to just let these be coin flips
 		for (ActivityList activityList : conflictedActivities) {
-			activityList.get(0).setCoinFlipValue(Math.random());
+			activityList.get(0).setCoinFlipValue(random.nextDouble());
 		}
 		// Sort according to who has the best roll - low roll wins
 		Collections.sort(conflictedActivities);
 		
 		// The winner gets to occupy the square according to the processPassiveConflictFreeMovementRequest rules
-		processPassiveConflictFreeMovementRequest(conflictedActivities.remove(0));
+		ActivityList winner = conflictedActivities.remove(0);
+		if (!processPassiveConflictFreeMovementRequest(winner) && !winner.isEmpty()) {
+			displacedActivityLists.add(winner);
+		}
 		
 		// The remaining units need to figure out whether or not to keep trying to move
 		for (ActivityList activityList : conflictedActivities) {
@@ -615,77 +1092,132 @@ class PrimaryModel {
 			// as possible. If not, the unit should just stop for now, and possibly produce a command prompt
 			// for the player. Something like, < retreat, fight, do nothing >.
 			
-			reattemptPassivePathFindingFor(activityList);			
+			activityList.remove(0); // The lost step is given up.
+			if (!activityList.isEmpty()) {
+				displacedActivityLists.add(activityList);
+			} // An emptied list leaves the queue at the end of the pass.
 		}
 	}
 
-	private void reattemptPassivePathFindingFor(ActivityList activityList) {
-		// TODO This method is designed to re-structure a given passive movement path to account for
-		// passive movement conflicts. I'm really not sure where to begin here, but it will minimally
-		// call for invoking the pathfinding code.
-		
+	/**
+	 * Re-plans the movement of units which lost a passive movement conflict,
+	 * or found their next square already held.
+	 * 
+	 * <p>
+	 * Each unit has already given up the step it failed to take, and heads
+	 * for its original destination again from where it stands. Requests are batched per
+	 * player and solved on the worker pool, then applied in the order the
+	 * units were displaced, so resolution plays out the same however the
+	 * searches were scheduled. A new path is cut short so that it is never
+	 * longer than what remained of the old one; as every pass takes
+	 * at least one step from every activity list, resolution ends.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#resolveTurn() resolveTurn()}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#getPassivePaths(List, ForkJoinPool) getPassivePaths(List, ForkJoinPool)}
+	 * <li> {@link PrimaryModel#orderMoveAlong(AbstractUnit, ArrayList, int) orderMoveAlong(AbstractUnit, ArrayList, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param displacedActivityLists - the activity lists of the displaced units, in the order they were displaced
+	 */
+	private void reattemptPassivePathFindingFor(List<ActivityList> displacedActivityLists) {
+		if (displacedActivityLists.isEmpty()) {
+			return;
+		}
+		List<ArrayList<Point>> paths = new ArrayList<ArrayList<Point>>(Collections.nCopies(displacedActivityLists.size(), (ArrayList<Point>) null));
+		for (int k = 0; k < playerCount; k++) {
+			ArrayList<PathRequest> requests = new ArrayList<PathRequest>();
+			ArrayList<Integer> indices = new ArrayList<Integer>();
+			for (int i = 0; i < displacedActivityLists.size(); i++) {
+				ActivityList activityList = displacedActivityLists.get(i);
+				if (activityList.get(0).getPlayer().ordinal() != k) {
+					continue;
+				}
+				ArrayList<Point> finalTarget = activityList.get(activityList.size() - 1).getTarget();
+				Point destination = finalTarget.get(finalTarget.size() - 1);
+				requests.add(new PathRequest(activityList.get(0).getActivityRequestor(), destination.x, destination.y));
+				indices.add(i);
+			}
+			if (requests.isEmpty()) {
+				continue;
+			}
+			List<ArrayList<Point>> playerPaths = listOfActivePathFinders.get(k).getPassivePaths(requests, workerPool);
+			for (int j = 0; j < indices.size(); j++) {
+				paths.set(indices.get(j), playerPaths.get(j));
+			}
+		}
+
+		for (int i = 0; i < displacedActivityLists.size(); i++) {
+			ActivityList activityList = displacedActivityLists.get(i);
+			AbstractUnit unit = activityList.get(0).getActivityRequestor();
+			int stepsRemaining = 0;
+			for (Activity activity : activityList) {
+				stepsRemaining += activity.getSquaresOccupied().size();
+			}
+			ArrayList<Point> path = paths.get(i);
+			activityList.clear();
+			if (path == null || path.isEmpty()) {
+				// No way through for now, so the unit stops where it is, and its emptied list leaves the queue.
+				continue;
+			}
+			if (path.size() > stepsRemaining) {
+				path = new ArrayList<Point>(path.subList(0, stepsRemaining));
+			}
+			orderMoveAlong(unit, path, unit.getPlayer().ordinal());
+			activityList.organize();
+		}
 	}
 
-	private void processPassiveConflictFreeMovementRequest(ActivityList activityList) {
+	private boolean processPassiveConflictFreeMovementRequest(ActivityList activityList) {
 		// Exactly one activity list for one target indicates a lack of conflict at this resolution stage.
 		// The 0th activity can be removed and executed so long as the intended space is open.
 		// In other words, it is possible that although no other activity is currently in conflict
 		// with this one, it might be the case that an activity executed in the prior resolution
 		// stage left something in the square preventing this unit from moving in.
 		Activity toExecute = activityList.remove(0); // Pulling the first activity out
-		if (activityList.isEmpty()) {
-			//			System.out.println("Removing Activity List");
-			activityQueue.remove(activityList);
-		}
+		// Should that empty the list, it leaves the queue at the end of the pass.
 		//		System.out.println(toExecute);
 		ArrayList<Point> executionOrigin = toExecute.getOrigin(),
-				executionSquaresOccupied = toExecute.getSquaresOccupied(),
 				executionTarget = toExecute.getTarget(); // Getting the location information needed.
 		AbstractUnit activityRequestor = toExecute.getActivityRequestor();
-		Player controllingPlayer = toExecute.getPlayer();
-		int playerOrdinal = controllingPlayer.ordinal();
+		int playerOrdinal = toExecute.getPlayer().ordinal();
 		if (executionTarget.size() == 1) { // Small unit size, easy case.
 			int targetRow = executionTarget.get(0).x, targetCol = executionTarget.get(0).y,
 					originRow = executionOrigin.get(0).x, originCol = executionOrigin.get(0).y;
 			// Make sure the enemy has nothing in the square
-			boolean noEnemyUnitPresent = true;
-			for (int i = 0; i < listOfActiveUnitArrays.size(); i++) {
-				if (i != playerOrdinal) {
-					noEnemyUnitPresent = listOfActiveUnitArrays.get(i).get(targetRow).get(targetCol).isEmpty();
-				}
-			}
-
-			if (noEnemyUnitPresent) {
+			if (!occupancyIndex.hasEnemyAt(targetRow, targetCol, playerOrdinal)) {
 				// Make sure that the square is occupied by at most, in-motion, friendly units.
 				// TODO on the other hand, I'm really not sure what to make of two friendly units occupying the same space when they happen
 				// to encounter an enemy unexpectedly. I suppose I could just auto-link them, but it is problematic considering that the
 				// units in question could already be linked.
-				if (listOfActiveUnitArrays.get(playerOrdinal).get(targetRow).get(targetCol).isEmpty()) {
-					int requestorIndex = listOfActiveUnitArrays.get(playerOrdinal).get(originRow).get(originCol).indexOf(activityRequestor);
-					listOfActiveUnitArrays.get(playerOrdinal).get(targetRow).get(targetCol).
-					add(listOfActiveUnitArrays.get(playerOrdinal).get(originRow).get(originCol).get(requestorIndex));
-					listOfActiveUnitArrays.get(playerOrdinal).get(originRow).get(originCol).remove(requestorIndex);
-					listOfActiveVisibilityArrays.get(playerOrdinal)[targetRow][targetCol].setOccupyingUnit(activityRequestor.unitType);
+				if (listOfActiveUnitArrays.get(playerOrdinal).isEmpty(targetRow, targetCol)
+						&& listOfActiveUnitArrays.get(playerOrdinal).move(activityRequestor, originRow, originCol, targetRow, targetCol)) {
+					// The visibility grids are left to the vision engine, which refreshes the squares
+					// each unit started and finished the round on once resolution is over.
 					activityRequestor.curLoc = executionTarget.get(0);
-					do {
-						Point temp = executionSquaresOccupied.remove(0);
-						listOfActiveVisibilityArrays.get(playerOrdinal)[temp.x][temp.y].halfTransparencyUnits.remove(activityRequestor.unitType);
-					} while (executionSquaresOccupied.size() > 0);
-					if (activityList.isEmpty()) { // We've reached our destination
-						listOfActiveVisibilityArrays.get(playerOrdinal)[targetRow][targetCol].destinationUnit = null;
-					}
+					return true;
 				}
 			}
 		}
+		return false;
 	}
 
-	private void addAllActivityListsAt(int row, int column, ArrayList<ArrayList<ArrayList<AbstractUnit>>> unitArray) {
-		if (!unitArray.get(row).get(column).isEmpty()) {
-			for (AbstractUnit unitOfInterest : unitArray.get(row).get(column)) {
-				if (unitOfInterest.activityList.size() > 0) {
-					unitOfInterest.activityList.organize();
-					activityQueue.add(unitOfInterest.activityList);
-				}
+	private void addAllActivityLists(UnitGrid unitArray) {
+		// Walking the unit table visits only live units rather than every square of the map.
+		for (int slot = 0; slot < unitArray.capacity(); slot++) {
+			AbstractUnit unitOfInterest = unitArray.unitAt(slot);
+			if (unitOfInterest != null && unitOfInterest.activityList.size() > 0) {
+				// Indicators come down as the orders are handed over to resolution.
+				clearIndividualUnitPath(unitOfInterest, unitOfInterest.player.ordinal());
+				unitOfInterest.activityList.organize();
+				activityQueue.add(unitOfInterest.activityList);
 			}
 		}
 	}
@@ -704,10 +1236,26 @@ class PrimaryModel {
 	 * 
 	 * @return the current visual model
 	 */
-	VisibilityState[][] getVisualModel() {
+	VisibilityGrid getVisualModel() {
 		return listOfActiveVisibilityArrays.get(activePlayer.ordinal());
 	}
 
+	/**
+	 * Returns the vision range bitmap associated with the current turn.
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryController#render(java.awt.Graphics) render(java.awt.Graphics)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @return the current vision range bitmap
+	 */
+	VisibilityLayer getVisibilityLayer() {
+		return listOfActiveVisibilityLayers.get(activePlayer.ordinal());
+	}
+
 	/**
 	 * Returns the current clock face.
 	 * 
@@ -726,51 +1274,263 @@ class PrimaryModel {
 
 	String getDescriptor(int r, int c) {
 		for (int i = 0; i < playerCount; i++) {
-			if (!listOfActiveUnitArrays.get(i).get(r).get(c).isEmpty())
-				return listOfActiveUnitArrays.get(i).get(r).get(c).get(0).getDescriptor();
+			if (!listOfActiveUnitArrays.get(i).isEmpty(r, c))
+				return listOfActiveUnitArrays.get(i).first(r, c).getDescriptor();
 		}
 		return listOfActiveTerrainArrays.get(activePlayer.ordinal())[r][c].getDescriptor();
 	}
 
 	boolean setUnitFocusTarget(int r, int c) {
-		if (!listOfActiveUnitArrays.get(activePlayer.ordinal()).get(r).get(c).isEmpty()) {
-			focusTarget = listOfActiveUnitArrays.get(activePlayer.ordinal()).get(r).get(c).get(0);
+		if (!listOfActiveUnitArrays.get(activePlayer.ordinal()).isEmpty(r, c)) {
+			focusTarget = listOfActiveUnitArrays.get(activePlayer.ordinal()).first(r, c);
 			return true;
 		}
 		for (int i = 0; i < playerCount; i++) { // TODO may not actually need to set a focus target at all if I won't be issuing commands to it.
 			if (i != activePlayer.ordinal()) {
-				if (!listOfActiveUnitArrays.get(i).get(r).get(c).isEmpty()) {
-					focusTarget = listOfActiveUnitArrays.get(i).get(r).get(c).get(0);
+				if (!listOfActiveUnitArrays.get(i).isEmpty(r, c)) {
+					focusTarget = listOfActiveUnitArrays.get(i).first(r, c);
 				}
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Orders the focus target to a square.
+	 * 
+	 * <p>
+	 * A square within the unit's reach this turn is found with the
+	 * windowed search of its {@link PathFinder PathFinder}. A square
+	 * further off is reached along a route planned over the whole map in
+	 * one go: the unit walks as much of it as its movement allows this
+	 * turn, keeps the rest, and carries on along it in the turns after,
+	 * until it arrives or is given another order.
+	 * </p>
+	 * 
+	 * <p>
+	 * Routes over the whole map are planned for units of one square only,
+	 * as the {@link HierarchicalPathFinder HierarchicalPathFinder} knows
+	 * nothing of footprints. A larger unit may only be ordered to a square
+	 * within its reach this turn, and is told so when it is not.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryController#mouseClicked(java.awt.event.MouseEvent) mouseClicked(java.awt.event.MouseEvent)}
+	 * </ul>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#getPassivePath(int, int, int, int, int, Locomotion, int) getPassivePath(int, int, int, int, int, Locomotion, int)}
+	 * <li> {@link PathFinder#getLongRangePath(int, int, int, int, Locomotion) getLongRangePath(int, int, int, int, Locomotion)}
+	 * <li> {@link PrimaryModel#orderMoveAlong(AbstractUnit, ArrayList, int) orderMoveAlong(AbstractUnit, ArrayList, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param row - the row of the destination
+	 * @param column - the column of the destination
+	 */
 	void requestMoveTo(int row, int column) {
-		ArrayList<Point> path;
-		if ( listOfActiveTerrainArrays.get(activePlayer.ordinal())[row][column].terrainSubType == TerrainSubType.EIGHT ||
-				(listOfActiveTerrainArrays.get(activePlayer.ordinal())[row][column].terrainSubType == TerrainSubType.SEVEN && focusTarget.locomotion != Locomotion.AIR)) {
+		turnLog.logMoveOrder(activePlayer.ordinal(), focusTarget.getPlayer().ordinal(), focusTarget.curLoc.x * gridSize + focusTarget.curLoc.y,
+				row * gridSize + column);
+		focusTarget.longRangeRoute = null;
+		ArrayList<Point> path, route = null;
+		PathFinder pathFinder = listOfActivePathFinders.get(activePlayer.ordinal());
+		int footprint = focusTarget.getFootprint();
+		if (!pathFinder.getClearanceMap().fits(row, column, focusTarget.getLocomotion(), footprint)) {
 			System.out.println("This is an invalid move target. Try again.");
 			return;
 		}
-		path = listOfActivePathFinders.get(activePlayer.ordinal()).getPassivePath(focusTarget.curLoc.x, focusTarget.curLoc.y,
-				row, column, focusTarget.getMovSpd(), focusTarget.getLocomotion());
+		path = planCooperatively(focusTarget, row, column, activePlayer.ordinal());
+		if (path == null) {
+			path = pathFinder.getPassivePath(focusTarget.curLoc.x, focusTarget.curLoc.y,
+					row, column, focusTarget.getMovSpd(), focusTarget.getLocomotion(), footprint);
+		}
+		boolean withinReach = Math.max(Math.abs(row - focusTarget.curLoc.x), Math.abs(column - focusTarget.curLoc.y)) <= focusTarget.getMovSpd();
+		if (path == null && footprint > 1 && !withinReach) {
+			System.out.println("That spot is too far for a unit this size to plan for. Try somewhere nearer.");
+			return;
+		}
+		if (path == null && footprint == 1) {
+			// Out of reach this turn, so head off along a route planned over the whole map.
+			route = pathFinder.getLongRangePath(focusTarget.curLoc.x, focusTarget.curLoc.y, row, column, focusTarget.getLocomotion());
+			if (route != null) {
+				path = new ArrayList<Point>(route.subList(0, Math.min(route.size(), focusTarget.getMovSpd())));
+			}
+		}
 		
 		if (path == null) {
 			System.out.println("I can't reach that spot! Try again.");
 			return;
 		}
 
-		for (int i = 0; i < path.size() - 1; i++) { // Adding Half Transparency steps to the visual model
-			Point step = path.get(i);
-			listOfActiveVisibilityArrays.get(activePlayer.ordinal())[step.x][step.y].addInMotionUnit(focusTarget.unitType);
+		path = orderMoveAlong(focusTarget, path, activePlayer.ordinal());
+		if (route != null && path.size() < route.size()) {
+			focusTarget.longRangeRoute = new ArrayList<Point>(route.subList(path.size(), route.size()));
+		}
+		if (cooperativeMovement) {
+			listOfActiveCooperativePlanners.get(activePlayer.ordinal()).reserve(focusTarget.curLoc.x, focusTarget.curLoc.y, path);
 		}
+		focusTarget.setMovable(false);
 
-		listOfActiveVisibilityArrays.get(activePlayer.ordinal())[path.get(path.size() -1).x][path.get(path.size() -1).y].setDestinationUnit(focusTarget.unitType);;
+		// Adding Half Transparency steps and the destination to the visual model
+		visualizeIndividualUnitPath(focusTarget, activePlayer.ordinal());
+	}
 
-		focusTarget.generateMoveActivityWithPath(path);
-		focusTarget.setMovable(false);
+	/**
+	 * Gives a unit the activities for walking a path, as far as its
+	 * movement will carry it this turn.
+	 * 
+	 * <p>
+	 * Each step costs the {@link PathFinder#movementCost(TerrainSubType, Locomotion) movement cost}
+	 * of the square stepped onto, and the path is cut short once the next
+	 * step would cost more than the unit's move speed in total. The first
+	 * step is always taken, so a unit is never stuck in front of rough ground.
+	 * </p>
+	 * 
+	 * <p>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link AbstractUnit#generateMoveActivityWithPath(ArrayList, int[]) generateMoveActivityWithPath(ArrayList, int[])}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param unit - the unit to be moved
+	 * @param path - the path to walk, excluding the unit's square
+	 * @param player - the index of the player whose view of the terrain prices the steps
+	 * @return the part of the path the unit will walk
+	 */
+	private ArrayList<Point> orderMoveAlong(AbstractUnit unit, ArrayList<Point> path, int player) {
+		PassabilityMap passabilityMap = listOfActivePathFinders.get(player).getPassabilityMap();
+		int[] stepCosts = new int[path.size()];
+		int steps = 0, costSpent = 0;
+		for (Point step : path) {
+			int stepCost = passabilityMap.getCost(step.x * passabilityMap.getGridSize() + step.y, unit.getLocomotion());
+			if (steps > 0 && costSpent + stepCost > unit.getMovSpd()) {
+				break;
+			}
+			costSpent += stepCost;
+			stepCosts[steps++] = stepCost;
+		}
+		if (steps < path.size()) {
+			path = new ArrayList<Point>(path.subList(0, steps));
+		}
+		if (cooperativeMovement) {
+			unit.generateMoveActivityPerStep(path);
+		} else {
+			unit.generateMoveActivityWithPath(path, Arrays.copyOf(stepCosts, steps));
+		}
+		return path;
+	}
+
+	/*
+	 * While movement is cooperative, plans a unit of one square around the
+	 * moves its player has already given this turn. Returns null when
+	 * movement is not cooperative or no such plan exists, in which case the
+	 * unit is routed as usual and any collision is settled in resolution.
+	 */
+	private ArrayList<Point> planCooperatively(AbstractUnit unit, int row, int column, int player) {
+		if (!cooperativeMovement || unit.getFootprint() != 1) {
+			return null;
+		}
+		return listOfActiveCooperativePlanners.get(player).getPath(unit.curLoc.x, unit.curLoc.y, row, column, unit.getMovSpd(),
+				unit.getLocomotion());
+	}
+
+	/**
+	 * Orders a group of the active player's units to the same square.
+	 * 
+	 * <p>
+	 * Rather than each unit searching for its own path, the units share
+	 * one {@link FlowField FlowField} per locomotion leading to the square,
+	 * and each follows it for as far as it can move this turn. Fields are
+	 * laid out for units of one square, so larger units search for their
+	 * own paths instead. Units which have already moved or cannot reach
+	 * the square are left alone.
+	 * </p>
+	 * 
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link FlowFieldService#getFlowField(int, int, Locomotion) getFlowField(int, int, Locomotion)}
+	 * <li> {@link PrimaryModel#orderMoveAlong(AbstractUnit, ArrayList, int) orderMoveAlong(AbstractUnit, ArrayList, int)}
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param units - the units to be moved
+	 * @param row - the row of the destination
+	 * @param column - the column of the destination
+	 * @return the number of units given orders
+	 */
+	int requestGroupMoveTo(List<AbstractUnit> units, int row, int column) {
+		turnLog.logGroupMoveOrder(activePlayer.ordinal(), row * gridSize + column, units, gridSize);
+		FlowFieldService flowFieldService = listOfActiveFlowFieldServices.get(activePlayer.ordinal());
+		int ordered = 0;
+		for (AbstractUnit unit : units) {
+			if (!unit.canMove()) {
+				continue;
+			}
+			ArrayList<Point> path = planCooperatively(unit, row, column, activePlayer.ordinal());
+			if (path != null) {
+				// Already planned around the units ordered before it.
+			} else if (unit.getFootprint() == 1) {
+				FlowField flowField = flowFieldService.getFlowField(row, column, unit.getLocomotion());
+				path = flowField.getPath(unit.curLoc.x, unit.curLoc.y, unit.getMovSpd());
+			} else {
+				path = listOfActivePathFinders.get(activePlayer.ordinal()).getPassivePath(unit.curLoc.x, unit.curLoc.y, row, column,
+						unit.getMovSpd(), unit.getLocomotion(), unit.getFootprint());
+			}
+			if (path == null || path.isEmpty()) {
+				continue;
+			}
+			unit.longRangeRoute = null;
+			path = orderMoveAlong(unit, path, activePlayer.ordinal());
+			if (cooperativeMovement) {
+				listOfActiveCooperativePlanners.get(activePlayer.ordinal()).reserve(unit.curLoc.x, unit.curLoc.y, path);
+			}
+			unit.setMovable(false);
+			visualizeIndividualUnitPath(unit, activePlayer.ordinal());
+			ordered++;
+		}
+		if (ordered < units.size()) {
+			System.out.println("Some units can't reach that spot.");
+		}
+		return ordered;
+	}
+
+	/**
+	 * Changes the terrain of a square for every player, and brings what
+	 * was derived from it up to date.
+	 * 
+	 * <p>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link FieldOfView#setTerrain(int, int, TerrainSubType) setTerrain(int, int, TerrainSubType)}
+	 * <li> {@link PathFinder#terrainChanged(int, int) terrainChanged(int, int)}
+	 * <li> {@link FlowFieldService#terrainChanged() terrainChanged()}
+	 * <li> {@link VisionEngine#terrainChanged(int, int) terrainChanged(int, int)}
+	 * <li> {@link VisionEngine#update() update()}, in line of sight mode
+	 * </ul>
+	 * </p>
+	 * 
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param terrainSubType - the new terrain sub type
+	 */
+	void changeTerrainAt(int row, int column, TerrainSubType terrainSubType) {
+		turnLog.logTerrainChange(row * gridSize + column, terrainSubType.ordinal());
+		for (int i = 0; i < playerCount; i++) {
+			Terrain terrain = listOfActiveTerrainArrays.get(i)[row][column];
+			terrain.terrainSubType = terrainSubType;
+			listOfActiveVisibilityArrays.get(i).setTerrainType(row, column, terrain.terrainType, terrainSubType);
+			listOfActivePathFinders.get(i).terrainChanged(row, column);
+			listOfActiveFlowFieldServices.get(i).terrainChanged();
+		}
+		fieldOfView.setTerrain(row, column, terrainSubType);
+		if (visionEngine.getVisionMode() == VisionMode.LINE_OF_SIGHT) {
+			// Only the units which may see the square are cast again.
+			visionEngine.terrainChanged(row, column);
+			visionEngine.update();
+		}
 	}
 
 	public boolean focusTargetCanMove() {
@@ -251,9 +251,10 @@ class PrimaryView extends JPanel {
 	 * </p>
 	 * 
 	 * @param visibilityState - the currently active player's visible information
+	 * @param visibilityLayer - the currently active player's vision range
 	 * @param g - the <code>Graphics</code> object supplied by the <code>BufferStrategy</code>
 	 */
-	void render(Graphics g, VisibilityState[][] visibilityState) {
+	void render(Graphics g, VisibilityGrid visibilityState, VisibilityLayer visibilityLayer) {
 		// Calculate drawn squares
 		int cStart = visX / unitLength;
 		int rStart = visY / unitLength;
@@ -261,7 +262,7 @@ class PrimaryView extends JPanel {
 		int rEnd = rStart + (screenHeight - 2 * yOffset) / unitLength + 1;
 		// TODO Consider Draw Ordering
 		// Traversing the visibilityState array to draw terrain tiles.
-		drawTerrainTiles(rStart, rEnd, cStart, cEnd, visibilityState, g);
+		drawTerrainTiles(rStart, rEnd, cStart, cEnd, visibilityState, visibilityLayer, g);
 
 		// Traversing the visibilityState array to draw in motion units.
 		drawInMotionUnits(rStart, rEnd, cStart, cEnd, visibilityState, g);
@@ -305,16 +306,15 @@ class PrimaryView extends JPanel {
 	 * @param visibilityState - the currently active player's visible information
 	 * @param g - the <code>Graphics</code> object supplied by the <code>BufferStrategy</code>
 	 */
-	private void drawInMotionUnits(int rStart, int rEnd, int cStart, int cEnd, VisibilityState[][] visibilityState, Graphics g) {
-		for (int r = rStart; r < rEnd && r < visibilityState.length; r++) {
-			for (int c = cStart; c < cEnd && c < visibilityState.length; c++) {
+	private void drawInMotionUnits(int rStart, int rEnd, int cStart, int cEnd, VisibilityGrid visibilityState, Graphics g) {
+		for (int r = rStart; r < rEnd && r < visibilityState.getGridSize(); r++) {
+			for (int c = cStart; c < cEnd && c < visibilityState.getGridSize(); c++) {
 
-				VisibilityState visState = visibilityState[r][c];
-				if (visState.halfTransparencyUnits.isEmpty()) {
+				if ((visibilityState.getSquare(r, c) & VisibilityGrid.IN_MOTION_FLAG) == 0) {
 					continue;
 				}
 
-				for (Iterator<UnitType> iterator = visState.halfTransparencyUnits.iterator(); iterator.hasNext();) {
+				for (Iterator<UnitType> iterator = visibilityState.getInMotionUnits(r, c).iterator(); iterator.hasNext();) {
 					UnitType mover = (UnitType) iterator.next();
 					int arrayIndex = mover.ordinal() + activePlayer.ordinal() /* x #ofUnitTypes */; // TODO This is very clumsy math. I need more units.
 					do {
@@ -353,21 +353,21 @@ class PrimaryView extends JPanel {
 	 * @param visibilityState - the currently active player's visible information
 	 * @param g - the <code>Graphics</code> object supplied by the <code>BufferStrategy</code>
 	 */
-	private void drawDestinationUnits(int rStart, int rEnd, int cStart, int cEnd, VisibilityState[][] visibilityState, Graphics g) {
-		for (int r = rStart; r < rEnd && r < visibilityState.length; r++) {
-			for (int c = cStart; c < cEnd && c < visibilityState.length; c++) {
+	private void drawDestinationUnits(int rStart, int rEnd, int cStart, int cEnd, VisibilityGrid visibilityState, Graphics g) {
+		for (int r = rStart; r < rEnd && r < visibilityState.getGridSize(); r++) {
+			for (int c = cStart; c < cEnd && c < visibilityState.getGridSize(); c++) {
 
-				VisibilityState visState = visibilityState[r][c];
-				if (visState.destinationUnit == null) {
+				UnitType destinationUnit = visibilityState.getDestinationUnit(r, c);
+				if (destinationUnit == null) {
 					continue;
 				}
 
-				int arrayIndex = visState.destinationUnit.ordinal() + activePlayer.ordinal() /* x #ofUnitTypes */; // TODO This is very clumsy math. I need more units.
+				int arrayIndex = destinationUnit.ordinal() + activePlayer.ordinal() /* x #ofUnitTypes */; // TODO This is very clumsy math. I need more units.
 				do {
 					int valCode = unitSeventyFiveTransparencyImages[arrayIndex].validate(gC);
 
 					if (valCode == VolatileImage.IMAGE_RESTORED) {
-						restoreSeventyFiveTransparencyUnitTile(visState.destinationUnit, arrayIndex);
+						restoreSeventyFiveTransparencyUnitTile(destinationUnit, arrayIndex);
 					} else if (valCode == VolatileImage.IMAGE_INCOMPATIBLE) {
 						unitSeventyFiveTransparencyImages[arrayIndex] = gC.createCompatibleVolatileImage(unitLength, unitLength, VolatileImage.TRANSLUCENT);
 					} else if (valCode == VolatileImage.IMAGE_OK) {
@@ -394,22 +394,25 @@ class PrimaryView extends JPanel {
 	 * @param cStart - the abstract column coordinate of the upper-left-most unit
 	 * @param cEnd - the abstract column coordinate of the lower-right-most unit
 	 * @param visibilityState - the currently active player's visible information
+	 * @param visibilityLayer - the currently active player's vision range
 	 * @param g - the <code>Graphics</code> object supplied by the <code>BufferStrategy</code>
 	 */
-	private void drawTerrainTiles(int rStart, int rEnd, int cStart, int cEnd, VisibilityState[][] visibilityState, Graphics g){
-		for (int r = rStart; r < rEnd && r < visibilityState.length; r++) {
-			for (int c = cStart; c < cEnd && c < visibilityState.length; c++) {
-
-				VisibilityState visState = visibilityState[r][c];
-				int arrayIndex = visState.terrainType.ordinal() * 9 + visState.terrainSubType.ordinal();
-				if (!visState.isInVisionRange) {
+	private void drawTerrainTiles(int rStart, int rEnd, int cStart, int cEnd, VisibilityGrid visibilityState, VisibilityLayer visibilityLayer, Graphics g){
+		for (int r = rStart; r < rEnd && r < visibilityState.getGridSize(); r++) {
+			for (int c = cStart; c < cEnd && c < visibilityState.getGridSize(); c++) {
+
+				int square = visibilityState.getSquare(r, c);
+				TerrainType terrainType = VisibilityGrid.terrainTypeOf(square);
+				TerrainSubType terrainSubType = VisibilityGrid.terrainSubTypeOf(square);
+				int arrayIndex = terrainType.ordinal() * 9 + terrainSubType.ordinal();
+				if (!visibilityLayer.isInVisionRange(r, c)) {
 					arrayIndex += 45;
 				}
 				do {
 					int valCode = terrainImages[arrayIndex].validate(gC);
 
 					if (valCode == VolatileImage.IMAGE_RESTORED) {
-						restoreTerrainTile(visState.terrainType, visState.terrainSubType, arrayIndex);
+						restoreTerrainTile(terrainType, terrainSubType, arrayIndex);
 					} else if (valCode == VolatileImage.IMAGE_INCOMPATIBLE) {
 						terrainImages[arrayIndex] = gC.createCompatibleVolatileImage(unitLength, unitLength);
 					} else if (valCode == VolatileImage.IMAGE_OK) {
@@ -438,23 +441,24 @@ class PrimaryView extends JPanel {
 	 * @param visibilityState - the currently active player's visible information
 	 * @param g - the <code>Graphics</code> object supplied by the <code>BufferStrategy</code>
 	 */
-	private void drawUnitTiles(int rStart, int rEnd, int cStart, int cEnd, VisibilityState[][] visibilityState, Graphics g){
-		for (int r = rStart; r < rEnd && r < visibilityState.length; r++) {
-			for (int c = cStart; c < cEnd && c < visibilityState.length; c++) {
+	private void drawUnitTiles(int rStart, int rEnd, int cStart, int cEnd, VisibilityGrid visibilityState, Graphics g){
+		for (int r = rStart; r < rEnd && r < visibilityState.getGridSize(); r++) {
+			for (int c = cStart; c < cEnd && c < visibilityState.getGridSize(); c++) {
 
-				VisibilityState visState = visibilityState[r][c];
-				if (visState.occupyingUnitType == UnitType.EMPTY) {
+				int square = visibilityState.getSquare(r, c);
+				UnitType occupyingUnitType = VisibilityGrid.occupyingUnitTypeOf(square);
+				if (occupyingUnitType == UnitType.EMPTY) {
 					continue;
 				}
 				
-				Player controllingPlayer = visState.controllingPlayer;
-				int arrayIndex = visState.occupyingUnitType.ordinal() + /* #ofUnitTypes >= 1 x */ controllingPlayer.ordinal();
+				Player controllingPlayer = VisibilityGrid.controllingPlayerOf(square);
+				int arrayIndex = occupyingUnitType.ordinal() + /* #ofUnitTypes >= 1 x */ controllingPlayer.ordinal();
 				
 				do {
 					int valCode = unitImages[arrayIndex].validate(gC);
 
 					if (valCode == VolatileImage.IMAGE_RESTORED) {
-						restoreUnitTile(arrayIndex, visState.occupyingUnitType, controllingPlayer);
+						restoreUnitTile(arrayIndex, occupyingUnitType, controllingPlayer);
 					} else if (valCode == VolatileImage.IMAGE_INCOMPATIBLE) {
 						unitImages[arrayIndex] = gC.createCompatibleVolatileImage(unitLength, unitLength, VolatileImage.TRANSLUCENT);
 					} else if (valCode == VolatileImage.IMAGE_OK) {
@@ -0,0 +1,101 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>RegionVersions</code> keeps a version number for each square
+ * region of the map, bumped whenever something inside it changes.
+ * </p>
+ *
+ * <p>
+ * Anything derived from part of the map can note the versions of the
+ * regions it read, and later tell whether it is still current by
+ * comparing them, without having to be told about each change. Regions
+ * are the same size as the clusters of the
+ * {@link HierarchicalPathFinder HierarchicalPathFinder} by default.
+ * Versions are only bumped between searches, never during them.
+ * </p>
+ *
+ * <p>
+ * Each region's version is only bumped by whoever owns that region at
+ * the time. Usually this is the model thread. While a pass is resolved
+ * region by region, it is the task resolving the region, and only the
+ * model thread bumps versions for groups spanning more than one region,
+ * once every task has finished. Each region has its own counter, so no
+ * two tasks write the same one, and the model thread sees every bump
+ * once it has joined the tasks.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class RegionVersions {
+
+	private final int gridSize, regionSize, regionsPerSide;
+	private final int[] versions;
+
+	/**
+	 * Creates a new <code>RegionVersions</code> with every region at version zero.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 * @param regionSize - the number of squares in one row of a region
+	 */
+	RegionVersions(int gridSize, int regionSize) {
+		this.gridSize = gridSize;
+		this.regionSize = regionSize;
+		regionsPerSide = (gridSize + regionSize - 1) / regionSize;
+		versions = new int[regionsPerSide * regionsPerSide];
+	}
+
+	/**
+	 * Returns the region holding a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the index of the region
+	 */
+	int regionOf(int row, int column) {
+		return (row / regionSize) * regionsPerSide + column / regionSize;
+	}
+
+	int versionOf(int region) {
+		return versions[region];
+	}
+
+	/**
+	 * Notes a change to a square, making everything derived from its region stale.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder#terrainChanged(int, int) terrainChanged(int, int)}
+	 * <li> {@link OccupancyIndex#setPresent(int, int, boolean) setPresent(int, int, boolean)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 */
+	void bump(int row, int column) {
+		versions[regionOf(row, column)]++;
+	}
+
+	int getRegionCount() {
+		return regionsPerSide * regionsPerSide;
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+
+	int getRegionSize() {
+		return regionSize;
+	}
+}
@@ -0,0 +1,291 @@
+package ascension;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ascension.PathFinder.SearchStrategy;
+import ascension.PrimaryModel.Player;
+import ascension.Terrain.TerrainSubType;
+import ascension.VisionEngine.VisionMode;
+
+/**
+ * <p>
+ * <code>ReplayEngine</code> rebuilds a match from its {@link TurnLog TurnLog},
+ * as fast as the model can go.
+ * </p>
+ *
+ * <p>
+ * The replay runs on a {@link PrimaryModel#PrimaryModel() PrimaryModel}
+ * with no listener, so there is no view to draw, and no clock to wait
+ * on; each rotation of the turn is carried out the moment its event is
+ * read. Only the input events of the log are played. The replayed model
+ * writes its own log as it goes, outputs and all, and before each input
+ * is played everything the replay has written so far is checked, byte
+ * for byte, against the same stretch of the original. The first byte at
+ * which they differ is where the two runs of the match parted ways, and
+ * the replay stops there, leaving the model as it stood. The random
+ * numbers of a match all come from its seed, so a replay on the same
+ * code parts ways only where the code, or something it depends on, does
+ * not behave the same.
+ * </p>
+ *
+ * <p>
+ * A unit is named in the log by its player and the square it stands on,
+ * so a match must only gain units as {@link PrimaryModel PrimaryModel}
+ * places them, when the match is set up or through
+ * {@link PrimaryModel#placeUnit(Player, int, int) placeUnit(Player, int, int)}.
+ * </p>
+ *
+ * <p>
+ * Run on its own, the engine replays a log file, named by the first
+ * argument, and reports how long resolution took, phase by phase.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+public class ReplayEngine {
+
+	/**
+	 * The divergence of a replay which matched its log throughout.
+	 */
+	static final int NONE = -1;
+
+	private final TurnLog log;
+	private PrimaryModel model;
+	private int divergence, turnsResolved, eventsPlayed;
+	private long resolutionNanos;
+
+	/**
+	 * Creates a new <code>ReplayEngine</code> for a log.
+	 *
+	 * @param log - the log to replay
+	 */
+	ReplayEngine(TurnLog log) {
+		this.log = log;
+		divergence = NONE;
+	}
+
+	public static void main(String args[]) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+		TurnLog log;
+		try {
+			log = TurnLog.readFrom(in);
+		} finally {
+			in.close();
+		}
+		ReplayEngine replayEngine = new ReplayEngine(log);
+		long start = System.nanoTime();
+		PrimaryModel model = replayEngine.replay();
+		long nanos = System.nanoTime() - start;
+		System.out.printf("%d bytes, %d input events, %d turns resolved%n", log.size(), replayEngine.getEventsPlayed(),
+				replayEngine.getTurnsResolved());
+		System.out.printf("replay %.2f ms, resolution %.2f ms, %.2f ms per turn%n", nanos / 1e6, replayEngine.getResolutionNanos() / 1e6,
+				replayEngine.getResolutionNanos() / 1e6 / Math.max(1, replayEngine.getTurnsResolved()));
+		if (replayEngine.getDivergence() == NONE) {
+			System.out.println("no divergence");
+		} else {
+			System.out.println("diverged at byte " + replayEngine.getDivergence());
+		}
+		if (model != null) {
+			model.phaseBudgets.printReport(System.out);
+			model.workerPool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays the log's input events on a new model, until the log ends or the replay diverges from it.
+	 * Whatever the model prints along the way is thrown away, as it is
+	 * in the {@link HeadlessDriver HeadlessDriver}, so that printing does
+	 * not count towards the time the replay takes.
+	 *
+	 * <p>
+	 * <b>Calls</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int, long) loadInitialModelState(int, int, long)}
+	 * <li> {@link PrimaryModel#placeUnit(Player, int, int) placeUnit(Player, int, int)}
+	 * <li> {@link PrimaryModel#requestMoveTo(int, int) requestMoveTo(int, int)}
+	 * <li> {@link PrimaryModel#requestGroupMoveTo(List, int, int) requestGroupMoveTo(List, int, int)}
+	 * <li> {@link PrimaryModel#changeTerrainAt(int, int, TerrainSubType) changeTerrainAt(int, int, TerrainSubType)}
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @return the replayed model, or null if the log does not start with a match
+	 */
+	PrimaryModel replay() {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+			}
+		}));
+		try {
+			return playAll();
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	private PrimaryModel playAll() {
+		TurnLog.Cursor cursor = log.cursor();
+		int checked = 0;
+		while (cursor.hasNext()) {
+			int eventStart = cursor.position();
+			byte kind = cursor.next();
+			if (kind == TurnLog.PASS) {
+				int count = cursor.readInt();
+				for (int i = 0; i < count * 2; i++) {
+					cursor.readInt();
+				}
+				continue;
+			} else if (kind == TurnLog.TURN_RESOLVED) {
+				cursor.readInt();
+				continue;
+			}
+			if (model == null && kind != TurnLog.MATCH) {
+				divergence = eventStart;
+				return null;
+			}
+			if (model != null) {
+				divergence = firstDifference(checked, eventStart);
+				if (divergence != NONE) {
+					return model;
+				}
+				checked = eventStart;
+			}
+			if (!play(kind, cursor)) {
+				divergence = eventStart;
+				return model;
+			}
+			eventsPlayed++;
+		}
+		if (model != null) {
+			divergence = firstDifference(checked, log.size());
+		}
+		return model;
+	}
+
+	/*
+	 * Plays one input event, returning false if it names a unit the model does not have.
+	 */
+	private boolean play(byte kind, TurnLog.Cursor cursor) {
+		switch (kind) {
+		case TurnLog.MATCH:
+			long seed = cursor.readLong();
+			int gridSize = cursor.readInt(), playerCount = cursor.readInt();
+			model = new PrimaryModel();
+			model.loadInitialModelState(gridSize, playerCount, seed);
+			return true;
+		case TurnLog.MOVE_ORDER:
+			Player issuer = Player.playerOrdinals[cursor.readInt()];
+			AbstractUnit unit = unitAt(cursor.readInt(), cursor.readInt());
+			int target = cursor.readInt();
+			if (unit == null) {
+				return false;
+			}
+			model.activePlayer = issuer;
+			model.focusTarget = unit;
+			model.requestMoveTo(target / model.gridSize, target % model.gridSize);
+			return true;
+		case TurnLog.GROUP_MOVE_ORDER:
+			issuer = Player.playerOrdinals[cursor.readInt()];
+			target = cursor.readInt();
+			int count = cursor.readInt();
+			List<AbstractUnit> units = new ArrayList<AbstractUnit>(count);
+			for (int i = 0; i < count; i++) {
+				units.add(unitAt(cursor.readInt(), cursor.readInt()));
+			}
+			if (units.contains(null)) {
+				return false;
+			}
+			model.activePlayer = issuer;
+			model.requestGroupMoveTo(units, target / model.gridSize, target % model.gridSize);
+			return true;
+		case TurnLog.UNIT_PLACED:
+			Player player = Player.playerOrdinals[cursor.readInt()];
+			int placed = cursor.readInt();
+			model.placeUnit(player, placed / model.gridSize, placed % model.gridSize);
+			return true;
+		case TurnLog.TERRAIN_CHANGE:
+			int square = cursor.readInt();
+			model.changeTerrainAt(square / model.gridSize, square % model.gridSize, TerrainSubType.terrainSubTypeOrdinals[cursor.readInt()]);
+			return true;
+		case TurnLog.SEARCH_STRATEGY:
+			model.setSearchStrategy(SearchStrategy.values()[cursor.readInt()]);
+			return true;
+		case TurnLog.VISION_MODE:
+			model.setVisionMode(VisionMode.values()[cursor.readInt()]);
+			return true;
+		case TurnLog.COOPERATIVE_MOVEMENT:
+			model.setCooperativeMovement(cursor.readInt() != 0);
+			return true;
+		case TurnLog.ROTATE_TURN:
+			model.activePlayer = Player.playerOrdinals[cursor.readInt()];
+			boolean resolves = model.activePlayer.ordinal() == model.playerCount - 1;
+			long start = System.nanoTime();
+			model.rotateTurn();
+			if (resolves) {
+				resolutionNanos += System.nanoTime() - start;
+				turnsResolved++;
+			}
+			return true;
+		default:
+			throw new IllegalStateException("Unknown turn log event " + kind + ".");
+		}
+	}
+
+	private AbstractUnit unitAt(int player, int square) {
+		return model.listOfActiveUnitArrays.get(player).first(square / model.gridSize, square % model.gridSize);
+	}
+
+	/*
+	 * Compares the replay's own log with the original over a stretch both should hold,
+	 * returning the first position at which they differ.
+	 */
+	private int firstDifference(int from, int to) {
+		TurnLog replayed = model.turnLog;
+		int end = Math.min(to, replayed.size());
+		for (int i = from; i < end; i++) {
+			if (replayed.byteAt(i) != log.byteAt(i)) {
+				return i;
+			}
+		}
+		return replayed.size() == to ? NONE : end;
+	}
+
+	/**
+	 * Returns the position in the log of the first byte the replay did not reproduce.
+	 *
+	 * @return the position, or {@link ReplayEngine#NONE NONE} if the replay matched throughout
+	 */
+	int getDivergence() {
+		return divergence;
+	}
+
+	int getTurnsResolved() {
+		return turnsResolved;
+	}
+
+	int getEventsPlayed() {
+		return eventsPlayed;
+	}
+
+	/**
+	 * Returns the time spent in the rotations of the turn which ended a
+	 * round, resolving its activities and bringing vision up to date.
+	 *
+	 * @return the time, in nanoseconds
+	 */
+	long getResolutionNanos() {
+		return resolutionNanos;
+	}
+}
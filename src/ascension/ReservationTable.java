@@ -0,0 +1,136 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>ReservationTable</code> records which unit will stand on which
+ * square at each sub-step of the coming resolution, so that units may
+ * plan their moves around one another.
+ * </p>
+ *
+ * <p>
+ * Sub-step <code>t</code> is the moment a unit has carried out the first
+ * <code>t</code> activities of its list; sub-step zero is where it stands
+ * when the turn is resolved. Reservations are keyed by the packed square
+ * and sub-step, <code>square * depth + t</code>, in a
+ * {@link PackedKeyTable PackedKeyTable}. Sub-steps from
+ * <code>depth - 1</code> on share the last key, which stands for the rest
+ * of the turn, so a unit which has stopped holds its square for good.
+ * </p>
+ *
+ * <p>
+ * Clearing the table for a new turn takes constant time. Nothing is
+ * allocated per reservation; the table only grows when it passes half
+ * full, and keeps its size from then on.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class ReservationTable {
+
+	/**
+	 * The owner of a square nobody has reserved.
+	 */
+	static final int NONE = PackedKeyTable.NONE;
+	/**
+	 * The number of sub-steps told apart by {@link PrimaryModel PrimaryModel}.
+	 */
+	static final int DEFAULT_DEPTH = 64;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int gridSize, depth;
+	// From packed square and sub-step to owner.
+	private final PackedKeyTable owners;
+	private int ownerCount;
+
+	/**
+	 * Creates a new, empty <code>ReservationTable</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link CooperativePlanner#CooperativePlanner(PassabilityMap, ReservationTable) CooperativePlanner(PassabilityMap, ReservationTable)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the map
+	 * @param depth - the number of sub-steps told apart, the last standing for the rest of the turn
+	 */
+	ReservationTable(int gridSize, int depth) {
+		this.gridSize = gridSize;
+		this.depth = depth;
+		owners = new PackedKeyTable(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Forgets every reservation, ready for a new turn.
+	 */
+	void clear() {
+		owners.clear();
+		ownerCount = 0;
+	}
+
+	/**
+	 * Returns a number, unique until the table is next cleared, to reserve squares under.
+	 *
+	 * @return the new owner
+	 */
+	int newOwner() {
+		return ownerCount++;
+	}
+
+	/**
+	 * Reserves a square at a sub-step. A later reservation of the same square and sub-step replaces it.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param subStep - the sub-step
+	 * @param owner - the owner of the reservation
+	 */
+	void reserve(int row, int column, int subStep, int owner) {
+		owners.put(key(row, column, subStep), owner);
+	}
+
+	/**
+	 * Returns who has reserved a square at a sub-step.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param subStep - the sub-step
+	 * @return the owner, or {@link ReservationTable#NONE NONE}
+	 */
+	int getOwner(int row, int column, int subStep) {
+		return owners.get(key(row, column, subStep));
+	}
+
+	/**
+	 * Indicates whether or not a square is free from a sub-step until the end of the turn.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param subStep - the first sub-step
+	 * @return true if nobody has reserved the square from then on
+	 */
+	boolean isFreeFrom(int row, int column, int subStep) {
+		for (int t = Math.min(subStep, depth - 1); t < depth; t++) {
+			if (getOwner(row, column, t) != NONE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	int getDepth() {
+		return depth;
+	}
+
+	int size() {
+		return owners.size();
+	}
+
+	private int key(int row, int column, int subStep) {
+		return (row * gridSize + column) * depth + Math.min(subStep, depth - 1);
+	}
+}
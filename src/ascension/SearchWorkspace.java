@@ -0,0 +1,210 @@
+package ascension;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>SearchWorkspace</code> holds the scratch state of a single
+ * path search over a square window of the map.
+ * </p>
+ *
+ * <p>
+ * Squares of the window are numbered <code>row * side + column</code>
+ * and their g-costs, f-costs, and parents live in parallel primitive
+ * arrays. Each square also carries the generation in which it was last
+ * touched, so a square whose stamp is stale is treated as untouched.
+ * Starting a new search just bumps the generation, which clears the
+ * whole workspace in constant time. The open set is an
+ * {@link IndexedHeap IndexedHeap} keyed by f-cost, so a square reached
+ * again by a shorter route has its entry lowered in place. For
+ * Dial's algorithm the open set may instead be kept in a
+ * {@link BucketQueue BucketQueue}.
+ * </p>
+ *
+ * <p>
+ * Arrays only ever grow, so once a workspace has seen the widest window
+ * in play, searching allocates nothing. A workspace is not thread-safe;
+ * {@link PathFinder PathFinder} keeps one per thread.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class SearchWorkspace {
+
+	/**
+	 * Marks a square without a parent.
+	 */
+	static final int NONE = -1;
+
+	private int side, rowOffset, columnOffset;
+	private int[] gCosts, fCosts, parents, touched, closed;
+	private int generation;
+	private final IndexedHeap openSet;
+	private final BucketQueue openBuckets;
+
+	/**
+	 * Creates a new, empty <code>SearchWorkspace</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PathFinder PathFinder}, once per thread
+	 * </ul>
+	 * </p>
+	 */
+	SearchWorkspace() {
+		gCosts = new int[0];
+		fCosts = new int[0];
+		parents = new int[0];
+		touched = new int[0];
+		closed = new int[0];
+		openSet = new IndexedHeap(0);
+		openBuckets = new BucketQueue(PathFinder.MAX_COST + 2);
+	}
+
+	/**
+	 * Prepares the workspace for a search over a window of the given side,
+	 * forgetting everything from the previous search.
+	 *
+	 * @param side - the number of squares in one row of the square window
+	 * @param rowOffset - the map row of the window's first row
+	 * @param columnOffset - the map column of the window's first column
+	 */
+	void reset(int side, int rowOffset, int columnOffset) {
+		this.side = side;
+		this.rowOffset = rowOffset;
+		this.columnOffset = columnOffset;
+		int squares = side * side;
+		if (gCosts.length < squares) {
+			gCosts = new int[squares];
+			fCosts = new int[squares];
+			parents = new int[squares];
+			touched = new int[squares];
+			closed = new int[squares];
+			generation = 0;
+			openSet.ensureCapacity(squares);
+		}
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(touched, 0);
+			Arrays.fill(closed, 0);
+			generation = 1;
+		}
+		openSet.clear();
+	}
+
+	int getSide() {
+		return side;
+	}
+
+	int getRowOffset() {
+		return rowOffset;
+	}
+
+	int getColumnOffset() {
+		return columnOffset;
+	}
+
+	/**
+	 * Returns the best known cost of reaching a square.
+	 *
+	 * @param square - the square within the window
+	 * @return the g-cost, or <code>Integer.MAX_VALUE</code> if the square has not been reached
+	 */
+	int getGCost(int square) {
+		return touched[square] == generation ? gCosts[square] : Integer.MAX_VALUE;
+	}
+
+	int getFCost(int square) {
+		return touched[square] == generation ? fCosts[square] : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the square from which a square was best reached.
+	 *
+	 * @param square - the square within the window
+	 * @return the parent square, or {@link SearchWorkspace#NONE NONE}
+	 */
+	int getParent(int square) {
+		return touched[square] == generation ? parents[square] : NONE;
+	}
+
+	/**
+	 * Records a new best way of reaching a square.
+	 *
+	 * @param square - the square within the window
+	 * @param gCost - the cost of reaching the square
+	 * @param fCost - the cost plus the heuristic estimate to the destination
+	 * @param parent - the square it was reached from, or {@link SearchWorkspace#NONE NONE}
+	 */
+	void record(int square, int gCost, int fCost, int parent) {
+		touched[square] = generation;
+		gCosts[square] = gCost;
+		fCosts[square] = fCost;
+		parents[square] = parent;
+	}
+
+	boolean isClosed(int square) {
+		return closed[square] == generation;
+	}
+
+	void close(int square) {
+		closed[square] = generation;
+	}
+
+	/**
+	 * Adds a square to the open set at the given f-cost, or lowers its
+	 * f-cost if it is already open. Among squares of equal f-cost, the
+	 * one estimated closest to the destination is polled first.
+	 *
+	 * @param square - the square within the window
+	 * @param fCost - the square's f-cost
+	 * @param hCost - the square's heuristic estimate to the destination, below the window side
+	 */
+	void pushOpen(int square, int fCost, int hCost) {
+		openSet.offer(square, fCost * side + hCost);
+	}
+
+	boolean isOpen(int square) {
+		return openSet.contains(square);
+	}
+
+	/**
+	 * Removes and returns the open square of lowest f-cost.
+	 *
+	 * @return the square, or {@link SearchWorkspace#NONE NONE} if the open set is exhausted
+	 */
+	int pollOpen() {
+		return openSet.isEmpty() ? NONE : openSet.poll();
+	}
+
+	/**
+	 * Empties the buckets ready for a search whose start has the given f-cost.
+	 *
+	 * @param fCost - the f-cost of the start
+	 */
+	void clearBuckets(int fCost) {
+		openBuckets.clear(fCost);
+	}
+
+	/**
+	 * Adds a square to the buckets at the given f-cost. A square already
+	 * there stays, so the caller must skip squares polled after closing.
+	 *
+	 * @param square - the square within the window
+	 * @param fCost - the square's f-cost, within {@link PathFinder#MAX_COST MAX_COST} + 1 of the f-cost last polled
+	 */
+	void pushBucket(int square, int fCost) {
+		openBuckets.push(square, fCost);
+	}
+
+	/**
+	 * Removes and returns a square of lowest f-cost from the buckets.
+	 *
+	 * @return the square, or {@link SearchWorkspace#NONE NONE} if the buckets are empty
+	 */
+	int pollBucket() {
+		return openBuckets.isEmpty() ? NONE : openBuckets.poll();
+	}
+}
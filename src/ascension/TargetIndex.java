@@ -0,0 +1,146 @@
+package ascension;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>TargetIndex</code> groups the moves of one resolution pass by the
+ * squares they target, so that moves competing for the same squares can
+ * be found in time proportional to the number of moves.
+ * </p>
+ *
+ * <p>
+ * A target is packed into a single <code>long</code>, its first square in
+ * the upper half and its last in the lower, each as
+ * <code>row * gridSize + column</code>. Targets are contiguous runs of
+ * squares, so the two ends tell them apart, and equal targets always
+ * pack to equal keys however their lists were built or later changed.
+ * Keys live in a {@link PackedKeyTable PackedKeyTable}, each key leading
+ * to a group of moves. Moves are
+ * numbered in the order they are added, and each group keeps its moves
+ * as a chain through an array of next pointers, so adding a move
+ * allocates nothing and boxes nothing. Groups are numbered in the order
+ * their first move was added, which makes the order of resolution the
+ * order of the queue rather than that of a hash.
+ * </p>
+ *
+ * <p>
+ * {@link TargetIndex#clear() clear} takes constant time and the arrays
+ * are reused from pass to pass, growing only when a pass holds more
+ * moves than any before it.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class TargetIndex {
+
+	/**
+	 * Ends a chain of moves.
+	 */
+	static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final int gridSize;
+	// From packed key to group.
+	private final PackedKeyTable groups;
+	// Per group: first move, last move, and number of moves.
+	private int[] firsts, lasts, sizes;
+	private int groupCount;
+	// Per move: the next move of the same group.
+	private int[] nexts;
+	private int moveCount;
+
+	/**
+	 * Creates a new, empty <code>TargetIndex</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the map
+	 */
+	TargetIndex(int gridSize) {
+		this.gridSize = gridSize;
+		groups = new PackedKeyTable(INITIAL_CAPACITY * 2);
+		firsts = new int[INITIAL_CAPACITY];
+		lasts = new int[INITIAL_CAPACITY];
+		sizes = new int[INITIAL_CAPACITY];
+		nexts = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Forgets every move, ready for a new pass.
+	 */
+	void clear() {
+		groups.clear();
+		groupCount = 0;
+		moveCount = 0;
+	}
+
+	/**
+	 * Adds the next move, numbered one after the move added before it.
+	 *
+	 * @param target - the squares the move targets, in order
+	 * @return the group the move joins
+	 */
+	int add(ArrayList<Point> target) {
+		Point first = target.get(0), last = target.get(target.size() - 1);
+		long key = (long) (first.x * gridSize + first.y) << 32 | (last.x * gridSize + last.y);
+		if (moveCount == nexts.length) {
+			nexts = Arrays.copyOf(nexts, moveCount * 2);
+		}
+		int move = moveCount++, group = groups.putIfAbsent(key, groupCount);
+		nexts[move] = NONE;
+		if (group != PackedKeyTable.NONE) {
+			nexts[lasts[group]] = move;
+		} else {
+			if (groupCount == firsts.length) {
+				firsts = Arrays.copyOf(firsts, groupCount * 2);
+				lasts = Arrays.copyOf(lasts, groupCount * 2);
+				sizes = Arrays.copyOf(sizes, groupCount * 2);
+			}
+			group = groupCount++;
+			firsts[group] = move;
+			sizes[group] = 0;
+		}
+		lasts[group] = move;
+		sizes[group]++;
+		return group;
+	}
+
+	int groupCount() {
+		return groupCount;
+	}
+
+	int size(int group) {
+		return sizes[group];
+	}
+
+	/**
+	 * Returns the first move added to a group.
+	 *
+	 * @param group - the group
+	 * @return the number of the move
+	 */
+	int first(int group) {
+		return firsts[group];
+	}
+
+	/**
+	 * Returns the move added to the same group after a move.
+	 *
+	 * @param move - the number of the move
+	 * @return the number of the next move, or {@link TargetIndex#NONE NONE}
+	 */
+	int next(int move) {
+		return nexts[move];
+	}
+}
@@ -0,0 +1,45 @@
+package ascension;
+
+/**
+ * <p>
+ * <code>TurnClock</code> ticks the {@link PrimaryModel PrimaryModel}
+ * through its turns. The model counts the ticks, showing them on its
+ * clock face, and rotates the turn once enough have passed.
+ * </p>
+ *
+ * <p>
+ * How ticks are paced and delivered is up to the clock. The
+ * {@link GameClock GameClock} paces them on a thread of its own, in real
+ * time, faster, or as fast as they can run; a model with no clock at all
+ * does not tick, and its turn only rotates when
+ * {@link PrimaryModel#rotateTurn() rotateTurn()} is called. Ticks must be
+ * delivered on the thread which drives the model, one at a time.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+interface TurnClock {
+
+	/**
+	 * Starts ticking, or carries on if already ticking.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int, long) loadInitialModelState(int, int, long)}
+	 * <li> {@link PrimaryModel#rotateTurn() rotateTurn()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param tick - what to run at every tick
+	 * @param tickNanos - the time between ticks in real time, in nanoseconds
+	 */
+	void start(Runnable tick, long tickNanos);
+
+	/**
+	 * Stops ticking.
+	 */
+	void stop();
+}
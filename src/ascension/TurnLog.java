@@ -0,0 +1,325 @@
+package ascension;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * <code>TurnLog</code> is an append-only record of a match: how it was
+ * set up, every order given and setting changed, every rotation of the
+ * turn, and how each pass of resolution turned out.
+ * </p>
+ *
+ * <p>
+ * Events are written into one growing array of bytes, each a kind byte
+ * followed by its fields. Fields are unsigned integers in a variable
+ * length encoding, seven bits to the byte, so a square, packed as
+ * <code>row * gridSize + column</code>, usually takes two or three bytes;
+ * only the seed is written whole. Appending allocates nothing until the
+ * array has to grow, and nothing is boxed.
+ * </p>
+ *
+ * <p>
+ * The events fall into two kinds. Inputs, from {@link TurnLog#MATCH MATCH}
+ * to {@link TurnLog#ROTATE_TURN ROTATE_TURN}, and
+ * {@link TurnLog#UNIT_PLACED UNIT_PLACED}, are everything a match
+ * depends on, and a {@link ReplayEngine ReplayEngine} plays them again to
+ * rebuild it. Outputs, {@link TurnLog#PASS PASS} and
+ * {@link TurnLog#TURN_RESOLVED TURN_RESOLVED}, are what the model made of
+ * the inputs, so that a replay can check its own outputs against them and
+ * find the first point at which two runs of a match part ways.
+ * </p>
+ *
+ * <p>
+ * A <code>TurnLog</code> is written on the model thread only.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class TurnLog {
+
+	/**
+	 * The start of a match: its seed, whole, then the size of the map and the number of players.
+	 */
+	static final byte MATCH = 1;
+	/**
+	 * A move order: the issuing player, then the player and square of the unit, then the target square.
+	 */
+	static final byte MOVE_ORDER = 2;
+	/**
+	 * A group move order: the issuing player and target square, then the number of units, then each unit's player and square.
+	 */
+	static final byte GROUP_MOVE_ORDER = 3;
+	/**
+	 * A change of terrain: the square, then the new terrain sub type.
+	 */
+	static final byte TERRAIN_CHANGE = 4;
+	/**
+	 * A change of search strategy: the new strategy.
+	 */
+	static final byte SEARCH_STRATEGY = 5;
+	/**
+	 * A change of vision mode: the new mode.
+	 */
+	static final byte VISION_MODE = 6;
+	/**
+	 * Cooperative movement switched: one if on, zero if off.
+	 */
+	static final byte COOPERATIVE_MOVEMENT = 7;
+	/**
+	 * A rotation of the turn: the player whose turn ends.
+	 */
+	static final byte ROTATE_TURN = 8;
+	/**
+	 * A pass of resolution: the number of activity lists in it, then for each in queue order the
+	 * square its unit stood on before the pass, and the square it stands on after.
+	 */
+	static final byte PASS = 9;
+	/**
+	 * The end of a turn's resolution: the number of passes it took.
+	 */
+	static final byte TURN_RESOLVED = 10;
+	/**
+	 * A unit placed: its player, then its square.
+	 */
+	static final byte UNIT_PLACED = 11;
+
+	private static final int INITIAL_CAPACITY = 4096;
+	private static final int FORMAT = 0x41534331; // "ASC1"
+
+	private byte[] bytes;
+	private int size;
+
+	/**
+	 * Creates a new, empty <code>TurnLog</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int, long) loadInitialModelState(int, int, long)}
+	 * </ul>
+	 * </p>
+	 */
+	TurnLog() {
+		bytes = new byte[INITIAL_CAPACITY];
+	}
+
+	private TurnLog(byte[] bytes, int size) {
+		this.bytes = bytes;
+		this.size = size;
+	}
+
+	void logMatch(long seed, int gridSize, int playerCount) {
+		writeByte(MATCH);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			writeByte((int) (seed >>> shift));
+		}
+		writeInt(gridSize);
+		writeInt(playerCount);
+	}
+
+	void logMoveOrder(int issuer, int unitPlayer, int unitSquare, int targetSquare) {
+		writeByte(MOVE_ORDER);
+		writeInt(issuer);
+		writeInt(unitPlayer);
+		writeInt(unitSquare);
+		writeInt(targetSquare);
+	}
+
+	void logGroupMoveOrder(int issuer, int targetSquare, List<AbstractUnit> units, int gridSize) {
+		writeByte(GROUP_MOVE_ORDER);
+		writeInt(issuer);
+		writeInt(targetSquare);
+		writeInt(units.size());
+		for (AbstractUnit unit : units) {
+			writeInt(unit.getPlayer().ordinal());
+			writeInt(unit.curLoc.x * gridSize + unit.curLoc.y);
+		}
+	}
+
+	void logTerrainChange(int square, int terrainSubType) {
+		writeByte(TERRAIN_CHANGE);
+		writeInt(square);
+		writeInt(terrainSubType);
+	}
+
+	void logSetting(byte kind, int value) {
+		writeByte(kind);
+		writeInt(value);
+	}
+
+	void logUnitPlaced(int player, int square) {
+		writeByte(UNIT_PLACED);
+		writeInt(player);
+		writeInt(square);
+	}
+
+	void logRotateTurn(int player) {
+		writeByte(ROTATE_TURN);
+		writeInt(player);
+	}
+
+	/**
+	 * Records how a pass of resolution turned out.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#resolveTurn() resolveTurn()}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param count - the number of activity lists in the pass
+	 * @param fromSquares - the square each list's unit stood on before the pass
+	 * @param toSquares - the square each list's unit stands on after the pass
+	 */
+	void logPass(int count, int[] fromSquares, int[] toSquares) {
+		writeByte(PASS);
+		writeInt(count);
+		for (int i = 0; i < count; i++) {
+			writeInt(fromSquares[i]);
+			writeInt(toSquares[i]);
+		}
+	}
+
+	void logTurnResolved(int passCount) {
+		writeByte(TURN_RESOLVED);
+		writeInt(passCount);
+	}
+
+	/**
+	 * Returns the number of bytes written so far, which is also where the next event will start.
+	 *
+	 * @return the size of the log
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a byte of the log.
+	 *
+	 * @param position - the position of the byte, below {@link TurnLog#size() size()}
+	 * @return the byte
+	 */
+	byte byteAt(int position) {
+		return bytes[position];
+	}
+
+	/**
+	 * Returns a new cursor over the events of the log, starting at the first.
+	 *
+	 * @return the cursor
+	 */
+	Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Writes the log out, headed by its format and length.
+	 *
+	 * @param out - the stream to write to, which is left open
+	 * @throws IOException if the stream cannot be written
+	 */
+	void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(FORMAT);
+		dataOut.writeInt(size);
+		dataOut.write(bytes, 0, size);
+		dataOut.flush();
+	}
+
+	/**
+	 * Reads a log written by {@link TurnLog#writeTo(OutputStream) writeTo(OutputStream)}.
+	 *
+	 * @param in - the stream to read from, which is left open
+	 * @return the log
+	 * @throws IOException if the stream cannot be read or does not hold a log
+	 */
+	static TurnLog readFrom(InputStream in) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		if (dataIn.readInt() != FORMAT) {
+			throw new IOException("Not a turn log.");
+		}
+		int size = dataIn.readInt();
+		byte[] bytes = new byte[Math.max(size, INITIAL_CAPACITY)];
+		dataIn.readFully(bytes, 0, size);
+		return new TurnLog(bytes, size);
+	}
+
+	private void writeByte(int value) {
+		if (size == bytes.length) {
+			bytes = Arrays.copyOf(bytes, size * 2);
+		}
+		bytes[size++] = (byte) value;
+	}
+
+	private void writeInt(int value) {
+		while ((value & ~0x7F) != 0) {
+			writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		writeByte(value);
+	}
+
+	/**
+	 * <p>
+	 * <code>Cursor</code> reads a <code>TurnLog</code> one event at a
+	 * time: {@link Cursor#next() next()} gives the kind of the next event,
+	 * and the read methods then give its fields, in the order they were
+	 * written.
+	 * </p>
+	 */
+	class Cursor {
+
+		private int position;
+
+		boolean hasNext() {
+			return position < size;
+		}
+
+		/**
+		 * Returns where the cursor stands, which between events is where the next event starts.
+		 *
+		 * @return the position in the log
+		 */
+		int position() {
+			return position;
+		}
+
+		/**
+		 * Moves on to the next event.
+		 *
+		 * @return the kind of the event
+		 */
+		byte next() {
+			return bytes[position++];
+		}
+
+		int readInt() {
+			int value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[position++];
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+
+		long readLong() {
+			long value = 0;
+			for (int i = 0; i < 8; i++) {
+				value = value << 8 | (bytes[position++] & 0xFF);
+			}
+			return value;
+		}
+	}
+}
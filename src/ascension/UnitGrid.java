@@ -0,0 +1,289 @@
+package ascension;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>UnitGrid</code> records which units occupy which squares
+ * for a single player.
+ * </p>
+ *
+ * <p>
+ * The grid is laid out as a handful of parallel primitive arrays
+ * instead of a list per square. Each square holds an int head into
+ * a table of unit slots, and each slot links to the next unit sharing
+ * its square. An empty square therefore costs a single int.
+ * Released slots are chained onto a free-list and reused, so squares
+ * holding several units do not allocate once the table has grown.
+ * </p>
+ *
+ * <p>
+ * Whenever a square gains its first unit or loses its last, the grid
+ * reports it to the shared {@link OccupancyIndex OccupancyIndex}.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class UnitGrid {
+
+	/**
+	 * Marks the end of a square's chain, an empty square, or the end of the free-list.
+	 */
+	static final int NONE = -1;
+
+	private final int gridSize, player;
+	private final OccupancyIndex occupancyIndex;
+	private final int[] cellHeads;
+	private AbstractUnit[] units;
+	private int[] nextInCell, unitRows, unitColumns;
+	private int freeHead, highWater, unitCount;
+
+	/**
+	 * Creates a new, empty <code>UnitGrid</code>.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 * @param occupancyIndex - the model-wide index of which players occupy which squares
+	 * @param player - the ordinal of the player whose units the grid holds
+	 */
+	UnitGrid(int gridSize, OccupancyIndex occupancyIndex, int player) {
+		this.gridSize = gridSize;
+		this.occupancyIndex = occupancyIndex;
+		this.player = player;
+		cellHeads = new int[gridSize * gridSize];
+		Arrays.fill(cellHeads, NONE);
+		units = new AbstractUnit[16];
+		nextInCell = new int[16];
+		unitRows = new int[16];
+		unitColumns = new int[16];
+		freeHead = NONE;
+		highWater = 0;
+		unitCount = 0;
+	}
+
+	/**
+	 * Places a unit in the given square.
+	 *
+	 * @param unit - the unit to be placed
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the slot now holding the unit
+	 */
+	int add(AbstractUnit unit, int row, int column) {
+		int slot;
+		if (freeHead != NONE) {
+			slot = freeHead;
+			freeHead = nextInCell[slot];
+		} else {
+			if (highWater == units.length) {
+				grow();
+			}
+			slot = highWater++;
+		}
+		units[slot] = unit;
+		link(slot, row, column);
+		unitCount++;
+		return slot;
+	}
+
+	/**
+	 * Removes a unit from the given square and releases its slot.
+	 *
+	 * @param unit - the unit to be removed
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return true if the unit was found in the square
+	 */
+	boolean remove(AbstractUnit unit, int row, int column) {
+		int slot = unlink(unit, row, column);
+		if (slot == NONE) {
+			return false;
+		}
+		units[slot] = null;
+		nextInCell[slot] = freeHead;
+		freeHead = slot;
+		unitCount--;
+		return true;
+	}
+
+	/**
+	 * Moves a unit from one square to another.
+	 *
+	 * <p>
+	 * The unit keeps its slot, so no allocation or free-list
+	 * traffic takes place.
+	 * </p>
+	 *
+	 * @param unit - the unit to be moved
+	 * @param fromRow - the row of the square the unit leaves
+	 * @param fromColumn - the column of the square the unit leaves
+	 * @param toRow - the row of the square the unit enters
+	 * @param toColumn - the column of the square the unit enters
+	 * @return true if the unit was found in the square it leaves
+	 */
+	boolean move(AbstractUnit unit, int fromRow, int fromColumn, int toRow, int toColumn) {
+		int slot = unlink(unit, fromRow, fromColumn);
+		if (slot == NONE) {
+			return false;
+		}
+		link(slot, toRow, toColumn);
+		return true;
+	}
+
+	/**
+	 * Indicates whether or not any unit occupies the given square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return true if the square holds no units
+	 */
+	boolean isEmpty(int row, int column) {
+		return cellHeads[row * gridSize + column] == NONE;
+	}
+
+	/**
+	 * Returns the earliest placed unit still in the given square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the unit, or null if the square is empty
+	 */
+	AbstractUnit first(int row, int column) {
+		int slot = cellHeads[row * gridSize + column];
+		return slot == NONE ? null : units[slot];
+	}
+
+	/**
+	 * Returns the slot at the head of the given square's chain.
+	 * Follow the chain with {@link UnitGrid#next(int) next(int)}.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the head slot, or {@link UnitGrid#NONE NONE} if the square is empty
+	 */
+	int head(int row, int column) {
+		return cellHeads[row * gridSize + column];
+	}
+
+	/**
+	 * Returns the slot following the given slot within its square.
+	 *
+	 * @param slot - an occupied slot
+	 * @return the next slot, or {@link UnitGrid#NONE NONE} at the end of the chain
+	 */
+	int next(int slot) {
+		return nextInCell[slot];
+	}
+
+	/**
+	 * Returns the unit held in the given slot.
+	 *
+	 * @param slot - any slot below {@link UnitGrid#capacity() capacity()}
+	 * @return the unit, or null if the slot is free
+	 */
+	AbstractUnit unitAt(int slot) {
+		return units[slot];
+	}
+
+	/**
+	 * Returns the row of the unit held in the given slot.
+	 *
+	 * @param slot - an occupied slot
+	 * @return the row of the slot's unit
+	 */
+	int rowOf(int slot) {
+		return unitRows[slot];
+	}
+
+	/**
+	 * Returns the column of the unit held in the given slot.
+	 *
+	 * @param slot - an occupied slot
+	 * @return the column of the slot's unit
+	 */
+	int columnOf(int slot) {
+		return unitColumns[slot];
+	}
+
+	/**
+	 * Returns one past the highest slot ever handed out. Iterating
+	 * slots below this bound and skipping free slots visits every unit.
+	 *
+	 * @return the slot bound
+	 */
+	int capacity() {
+		return highWater;
+	}
+
+	/**
+	 * Returns the number of units in the grid.
+	 *
+	 * @return the number of units
+	 */
+	int size() {
+		return unitCount;
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+
+	int getPlayer() {
+		return player;
+	}
+
+	private void link(int slot, int row, int column) {
+		// New arrivals join the tail so that the head stays the earliest arrival.
+		int cell = row * gridSize + column;
+		unitRows[slot] = row;
+		unitColumns[slot] = column;
+		nextInCell[slot] = NONE;
+		if (cellHeads[cell] == NONE) {
+			cellHeads[cell] = slot;
+			occupancyIndex.setPresent(cell, player, true);
+			return;
+		}
+		int tail = cellHeads[cell];
+		while (nextInCell[tail] != NONE) {
+			tail = nextInCell[tail];
+		}
+		nextInCell[tail] = slot;
+	}
+
+	private int unlink(AbstractUnit unit, int row, int column) {
+		int cell = row * gridSize + column;
+		int previous = NONE;
+		for (int slot = cellHeads[cell]; slot != NONE; slot = nextInCell[slot]) {
+			if (units[slot] == unit) {
+				if (previous == NONE) {
+					cellHeads[cell] = nextInCell[slot];
+					if (cellHeads[cell] == NONE) {
+						occupancyIndex.setPresent(cell, player, false);
+					}
+				} else {
+					nextInCell[previous] = nextInCell[slot];
+				}
+				nextInCell[slot] = NONE;
+				return slot;
+			}
+			previous = slot;
+		}
+		return NONE;
+	}
+
+	private void grow() {
+		int capacity = units.length * 2;
+		units = Arrays.copyOf(units, capacity);
+		nextInCell = Arrays.copyOf(nextInCell, capacity);
+		unitRows = Arrays.copyOf(unitRows, capacity);
+		unitColumns = Arrays.copyOf(unitColumns, capacity);
+	}
+}
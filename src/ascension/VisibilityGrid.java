@@ -0,0 +1,228 @@
+package ascension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import ascension.AbstractUnit.UnitType;
+import ascension.PrimaryModel.Player;
+import ascension.Terrain.TerrainSubType;
+import ascension.Terrain.TerrainType;
+
+/**
+ * <p>
+ * <code>VisibilityGrid</code> represents the current visual information
+ * accessible to a given player about every square of the map.
+ * </p>
+ *
+ * <p>
+ * The state of each square is packed into a single int: terrain type,
+ * terrain sub type, occupying unit type, controlling player, and marker
+ * flags. In motion and destination markers are rare, so they are kept
+ * in a sparse overlay keyed by square which only holds entries for
+ * squares that actually carry a marker. The flags let readers skip the
+ * overlay entirely for unmarked squares.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class VisibilityGrid {
+
+	// @formatter:off
+	/*
+	 * Square Layout (low bit first):
+	 * bits  0 -  2 : terrain type ordinal
+	 * bits  3 -  6 : terrain sub type ordinal
+	 * bits  7 - 10 : occupying unit type ordinal
+	 * bits 11 - 13 : controlling player ordinal + 1, 0 when uncontrolled
+	 * bit  14      : at least one in motion marker
+	 * bit  15      : a destination marker
+	 */
+	// @formatter:on
+	private static final int TERRAIN_TYPE_SHIFT = 0, TERRAIN_SUB_TYPE_SHIFT = 3, UNIT_TYPE_SHIFT = 7, PLAYER_SHIFT = 11;
+	private static final int TERRAIN_TYPE_MASK = 0x7, TERRAIN_SUB_TYPE_MASK = 0xF, UNIT_TYPE_MASK = 0xF, PLAYER_MASK = 0x7;
+	static final int IN_MOTION_FLAG = 1 << 14, DESTINATION_FLAG = 1 << 15;
+
+	private final int gridSize;
+	private final int[] squares;
+	private final HashMap<Integer, ArrayList<UnitType>> inMotionUnits;
+	private final HashMap<Integer, UnitType> destinationUnits;
+
+	/**
+	 * Creates a new <code>VisibilityGrid</code> with every square empty.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 */
+	VisibilityGrid(int gridSize) {
+		this.gridSize = gridSize;
+		squares = new int[gridSize * gridSize];
+		inMotionUnits = new HashMap<Integer, ArrayList<UnitType>>();
+		destinationUnits = new HashMap<Integer, UnitType>();
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+
+	/**
+	 * Returns the packed state of a square. Decode it with the static
+	 * accessors when several fields are needed at once.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the packed square
+	 */
+	int getSquare(int row, int column) {
+		return squares[row * gridSize + column];
+	}
+
+	static TerrainType terrainTypeOf(int square) {
+		return TerrainType.terrainTypeOrdinals[(square >>> TERRAIN_TYPE_SHIFT) & TERRAIN_TYPE_MASK];
+	}
+
+	static TerrainSubType terrainSubTypeOf(int square) {
+		return TerrainSubType.terrainSubTypeOrdinals[(square >>> TERRAIN_SUB_TYPE_SHIFT) & TERRAIN_SUB_TYPE_MASK];
+	}
+
+	static UnitType occupyingUnitTypeOf(int square) {
+		return UnitType.unitTypeOrdinals[(square >>> UNIT_TYPE_SHIFT) & UNIT_TYPE_MASK];
+	}
+
+	static Player controllingPlayerOf(int square) {
+		int player = (square >>> PLAYER_SHIFT) & PLAYER_MASK;
+		return player == 0 ? null : Player.playerOrdinals[player - 1];
+	}
+
+	TerrainType getTerrainType(int row, int column) {
+		return terrainTypeOf(squares[row * gridSize + column]);
+	}
+
+	TerrainSubType getTerrainSubType(int row, int column) {
+		return terrainSubTypeOf(squares[row * gridSize + column]);
+	}
+
+	UnitType getOccupyingUnitType(int row, int column) {
+		return occupyingUnitTypeOf(squares[row * gridSize + column]);
+	}
+
+	Player getControllingPlayer(int row, int column) {
+		return controllingPlayerOf(squares[row * gridSize + column]);
+	}
+
+	void setTerrainType(int row, int column, TerrainType terrainType, TerrainSubType terrainSubType) {
+		int cell = row * gridSize + column;
+		squares[cell] = (squares[cell] & ~((TERRAIN_TYPE_MASK << TERRAIN_TYPE_SHIFT) | (TERRAIN_SUB_TYPE_MASK << TERRAIN_SUB_TYPE_SHIFT)))
+				| (terrainType.ordinal() << TERRAIN_TYPE_SHIFT) | (terrainSubType.ordinal() << TERRAIN_SUB_TYPE_SHIFT);
+	}
+
+	/**
+	 * Records the unit seen in a square along with its controller.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param unitType - the occupying unit type, <code>EMPTY</code> for none
+	 * @param controller - the controlling player, null for none
+	 */
+	void setOccupyingUnit(int row, int column, UnitType unitType, Player controller) {
+		int cell = row * gridSize + column;
+		squares[cell] = (squares[cell] & ~((UNIT_TYPE_MASK << UNIT_TYPE_SHIFT) | (PLAYER_MASK << PLAYER_SHIFT)))
+				| (unitType.ordinal() << UNIT_TYPE_SHIFT) | ((controller == null ? 0 : controller.ordinal() + 1) << PLAYER_SHIFT);
+	}
+
+	/**
+	 * Adds an in motion marker to a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param unitType - the type of the unit passing through
+	 */
+	void addInMotionUnit(int row, int column, UnitType unitType) {
+		int cell = row * gridSize + column;
+		ArrayList<UnitType> movers = inMotionUnits.get(cell);
+		if (movers == null) {
+			movers = new ArrayList<UnitType>(2);
+			inMotionUnits.put(cell, movers);
+			squares[cell] |= IN_MOTION_FLAG;
+		}
+		movers.add(unitType);
+	}
+
+	/**
+	 * Removes one in motion marker of the given type from a square.
+	 * The square's overlay entry is dropped with its last marker.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param unitType - the type of the unit passing through
+	 */
+	void removeInMotionUnit(int row, int column, UnitType unitType) {
+		int cell = row * gridSize + column;
+		if ((squares[cell] & IN_MOTION_FLAG) == 0) {
+			return;
+		}
+		ArrayList<UnitType> movers = inMotionUnits.get(cell);
+		movers.remove(unitType);
+		if (movers.isEmpty()) {
+			inMotionUnits.remove(cell);
+			squares[cell] &= ~IN_MOTION_FLAG;
+		}
+	}
+
+	/**
+	 * Returns the in motion markers of a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the markers; an empty, unmodifiable list for unmarked squares
+	 */
+	List<UnitType> getInMotionUnits(int row, int column) {
+		int cell = row * gridSize + column;
+		if ((squares[cell] & IN_MOTION_FLAG) == 0) {
+			return Collections.emptyList();
+		}
+		return inMotionUnits.get(cell);
+	}
+
+	/**
+	 * Sets or clears the destination marker of a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param unitType - the type of the unit headed here, null to clear
+	 */
+	void setDestinationUnit(int row, int column, UnitType unitType) {
+		int cell = row * gridSize + column;
+		if (unitType == null) {
+			destinationUnits.remove(cell);
+			squares[cell] &= ~DESTINATION_FLAG;
+		} else {
+			destinationUnits.put(cell, unitType);
+			squares[cell] |= DESTINATION_FLAG;
+		}
+	}
+
+	/**
+	 * Returns the destination marker of a square.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return the type of the unit headed here, or null
+	 */
+	UnitType getDestinationUnit(int row, int column) {
+		int cell = row * gridSize + column;
+		if ((squares[cell] & DESTINATION_FLAG) == 0) {
+			return null;
+		}
+		return destinationUnits.get(cell);
+	}
+}
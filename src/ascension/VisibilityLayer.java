@@ -0,0 +1,215 @@
+package ascension;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>VisibilityLayer</code> holds one player's vision of the map as
+ * two bitmaps: the squares currently in vision range, and the squares
+ * explored at any point so far.
+ * </p>
+ *
+ * <p>
+ * Each row starts on a fresh <code>long</code> so that rectangular
+ * regions can be stamped with one masked OR per word, and so that a
+ * row can be scanned for its next set or clear bit a word at a time.
+ * Clearing the whole layer is a single <code>Arrays.fill</code>.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class VisibilityLayer {
+
+	private final int gridSize, wordsPerRow;
+	private final long[] inVisionRange, explored;
+
+	/**
+	 * Creates a new <code>VisibilityLayer</code> with nothing in
+	 * vision range and nothing explored.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 */
+	VisibilityLayer(int gridSize) {
+		this.gridSize = gridSize;
+		wordsPerRow = (gridSize + 63) >>> 6;
+		inVisionRange = new long[wordsPerRow * gridSize];
+		explored = new long[wordsPerRow * gridSize];
+	}
+
+	/**
+	 * Indicates whether or not a square is currently in vision range.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return true if the square is in vision range
+	 */
+	boolean isInVisionRange(int row, int column) {
+		return (inVisionRange[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	/**
+	 * Indicates whether or not a square has ever been in vision range.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @return true if the square has been explored
+	 */
+	boolean isExplored(int row, int column) {
+		return (explored[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+	}
+
+	/**
+	 * Puts a single square into or out of vision range. A square
+	 * put into vision range is also marked as explored.
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 * @param inRange - if true, the square is in vision range
+	 */
+	void setInVisionRange(int row, int column, boolean inRange) {
+		int word = row * wordsPerRow + (column >>> 6);
+		long bit = 1L << column;
+		if (inRange) {
+			inVisionRange[word] |= bit;
+			explored[word] |= bit;
+		} else {
+			inVisionRange[word] &= ~bit;
+		}
+	}
+
+	/**
+	 * Puts every square of a rectangle into vision range and marks them explored.
+	 * Bounds are clipped to the map.
+	 *
+	 * @param rowStart - the first row, inclusive
+	 * @param rowEnd - the last row, exclusive
+	 * @param columnStart - the first column, inclusive
+	 * @param columnEnd - the last column, exclusive
+	 */
+	void stampInVisionRange(int rowStart, int rowEnd, int columnStart, int columnEnd) {
+		orRectangle(inVisionRange, rowStart, rowEnd, columnStart, columnEnd);
+		orRectangle(explored, rowStart, rowEnd, columnStart, columnEnd);
+	}
+
+	/**
+	 * Marks every square of a rectangle as explored without changing vision range.
+	 * Bounds are clipped to the map.
+	 *
+	 * @param rowStart - the first row, inclusive
+	 * @param rowEnd - the last row, exclusive
+	 * @param columnStart - the first column, inclusive
+	 * @param columnEnd - the last column, exclusive
+	 */
+	void stampExplored(int rowStart, int rowEnd, int columnStart, int columnEnd) {
+		orRectangle(explored, rowStart, rowEnd, columnStart, columnEnd);
+	}
+
+	/**
+	 * Takes every square out of vision range. Explored squares stay explored.
+	 */
+	void clearVisionRange() {
+		Arrays.fill(inVisionRange, 0L);
+	}
+
+	/**
+	 * Takes every square of a band of rows out of vision range.
+	 * Explored squares stay explored.
+	 *
+	 * @param rowStart - the first row, inclusive
+	 * @param rowEnd - the last row, exclusive
+	 */
+	void clearVisionRange(int rowStart, int rowEnd) {
+		Arrays.fill(inVisionRange, rowStart * wordsPerRow, rowEnd * wordsPerRow, 0L);
+	}
+
+	/**
+	 * Returns the first column at or after <code>fromColumn</code> in the
+	 * given row which is in vision range.
+	 *
+	 * @param row - the row to scan
+	 * @param fromColumn - the first column considered
+	 * @return the column, or -1 if no later square in the row is in vision range
+	 */
+	int nextInVisionRange(int row, int fromColumn) {
+		return nextBit(inVisionRange, row, fromColumn, false);
+	}
+
+	/**
+	 * Returns the first column at or after <code>fromColumn</code> in the
+	 * given row which is out of vision range.
+	 *
+	 * @param row - the row to scan
+	 * @param fromColumn - the first column considered
+	 * @return the column, or -1 if every later square in the row is in vision range
+	 */
+	int nextOutOfVisionRange(int row, int fromColumn) {
+		return nextBit(inVisionRange, row, fromColumn, true);
+	}
+
+	/**
+	 * Returns the first column at or after <code>fromColumn</code> in the
+	 * given row which has never been explored.
+	 *
+	 * @param row - the row to scan
+	 * @param fromColumn - the first column considered
+	 * @return the column, or -1 if every later square in the row is explored
+	 */
+	int nextUnexplored(int row, int fromColumn) {
+		return nextBit(explored, row, fromColumn, true);
+	}
+
+	int getGridSize() {
+		return gridSize;
+	}
+
+	private void orRectangle(long[] bits, int rowStart, int rowEnd, int columnStart, int columnEnd) {
+		rowStart = Math.max(0, rowStart);
+		rowEnd = Math.min(gridSize, rowEnd);
+		columnStart = Math.max(0, columnStart);
+		columnEnd = Math.min(gridSize, columnEnd);
+		if (rowStart >= rowEnd || columnStart >= columnEnd) {
+			return;
+		}
+		int firstWord = columnStart >>> 6, lastWord = (columnEnd - 1) >>> 6;
+		long firstMask = -1L << columnStart, lastMask = -1L >>> (63 - ((columnEnd - 1) & 63));
+		for (int r = rowStart; r < rowEnd; r++) {
+			int base = r * wordsPerRow;
+			if (firstWord == lastWord) {
+				bits[base + firstWord] |= firstMask & lastMask;
+				continue;
+			}
+			bits[base + firstWord] |= firstMask;
+			for (int w = firstWord + 1; w < lastWord; w++) {
+				bits[base + w] = -1L;
+			}
+			bits[base + lastWord] |= lastMask;
+		}
+	}
+
+	private int nextBit(long[] bits, int row, int fromColumn, boolean seekClear) {
+		if (fromColumn >= gridSize) {
+			return -1;
+		}
+		int base = row * wordsPerRow, w = fromColumn >>> 6;
+		long word = (seekClear ? ~bits[base + w] : bits[base + w]) & (-1L << fromColumn);
+		while (true) {
+			if (word != 0) {
+				int column = (w << 6) + Long.numberOfTrailingZeros(word);
+				return column < gridSize ? column : -1;
+			}
+			if (++w == wordsPerRow) {
+				return -1;
+			}
+			word = seekClear ? ~bits[base + w] : bits[base + w];
+		}
+	}
+}
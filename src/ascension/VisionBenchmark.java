@@ -0,0 +1,103 @@
+package ascension;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import ascension.PrimaryModel.Player;
+import ascension.Terrain.TerrainSubType;
+import ascension.Terrain.TerrainType;
+import ascension.VisionEngine.VisionMode;
+
+/**
+ * <p>
+ * <code>VisionBenchmark</code> times the {@link VisionEngine VisionEngine}
+ * in square and line of sight modes over the same map and the same unit
+ * movement.
+ * </p>
+ *
+ * <p>
+ * Arguments, all optional, are the grid size, the number of units per
+ * player, the fraction of squares which block sight, and the number of
+ * turns. Every turn each unit steps to a random neighbouring square. The
+ * random seed is fixed so that both modes see identical turns.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+public class VisionBenchmark {
+
+	private static final int PLAYERS = 4, WARMUP_TURNS = 20;
+
+	public static void main(String args[]) {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int unitsPerPlayer = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		double blockingFraction = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+		int turns = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+		System.out.println("grid " + gridSize + ", " + PLAYERS * unitsPerPlayer + " units, " + blockingFraction + " blocking, " + turns
+				+ " turns");
+		for (VisionMode visionMode : VisionMode.values()) {
+			run(visionMode, gridSize, unitsPerPlayer, blockingFraction, turns);
+		}
+		System.exit(0);
+	}
+
+	private static void run(VisionMode visionMode, int gridSize, int unitsPerPlayer, double blockingFraction, int turns) {
+		Random random = new Random(1);
+		Terrain[][] terrain = new Terrain[gridSize][gridSize];
+		for (int r = 0; r < gridSize; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				terrain[r][c] = random.nextDouble() < blockingFraction ? new Terrain(TerrainType.ROCK, TerrainSubType.EIGHT)
+						: new Terrain(TerrainType.GRASS, TerrainSubType.ONE);
+			}
+		}
+
+		OccupancyIndex occupancyIndex = new OccupancyIndex(gridSize);
+		ArrayList<UnitGrid> unitGrids = new ArrayList<UnitGrid>(PLAYERS);
+		ArrayList<VisibilityGrid> visibilityArrays = new ArrayList<VisibilityGrid>(PLAYERS);
+		ArrayList<VisibilityLayer> visibilityLayers = new ArrayList<VisibilityLayer>(PLAYERS);
+		AbstractUnit[] units = new AbstractUnit[PLAYERS * unitsPerPlayer];
+		for (int k = 0; k < PLAYERS; k++) {
+			UnitGrid unitGrid = new UnitGrid(gridSize, occupancyIndex, k);
+			for (int i = 0; i < unitsPerPlayer; i++) {
+				int row = random.nextInt(gridSize), column = random.nextInt(gridSize);
+				AbstractUnit unit = new PhysicalBuilder(Player.playerOrdinals[k], row, column);
+				unit.curLocR = row;
+				unit.curLocC = column;
+				unitGrid.add(unit, row, column);
+				units[k * unitsPerPlayer + i] = unit;
+			}
+			unitGrids.add(unitGrid);
+			visibilityArrays.add(new VisibilityGrid(gridSize));
+			visibilityLayers.add(new VisibilityLayer(gridSize));
+		}
+
+		VisionEngine visionEngine = new VisionEngine(gridSize, unitGrids, visibilityArrays, visibilityLayers, occupancyIndex,
+				new FieldOfView(terrain, false), new ForkJoinPool());
+		visionEngine.setVisionMode(visionMode);
+		long start = System.nanoTime();
+		visionEngine.rebuild();
+		long rebuildNanos = System.nanoTime() - start;
+
+		long updateNanos = 0;
+		for (int turn = 0; turn < WARMUP_TURNS + turns; turn++) {
+			for (AbstractUnit unit : units) {
+				int row = Math.max(0, Math.min(gridSize - 1, unit.curLocR + random.nextInt(3) - 1));
+				int column = Math.max(0, Math.min(gridSize - 1, unit.curLocC + random.nextInt(3) - 1));
+				unitGrids.get(unit.getPlayer().ordinal()).move(unit, unit.curLocR, unit.curLocC, row, column);
+				unit.curLocR = row;
+				unit.curLocC = column;
+			}
+			start = System.nanoTime();
+			visionEngine.update();
+			if (turn >= WARMUP_TURNS) {
+				updateNanos += System.nanoTime() - start;
+			}
+		}
+
+		System.out.printf("%-14s rebuild %8.3f ms, update %8.3f ms per turn%n", visionMode, rebuildNanos / 1e6, updateNanos / 1e6 / turns);
+	}
+}
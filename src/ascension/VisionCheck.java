@@ -0,0 +1,143 @@
+package ascension;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import ascension.AbstractUnit.UnitType;
+import ascension.PrimaryModel.Player;
+import ascension.VisionEngine.VisionMode;
+
+/**
+ * <p>
+ * <code>VisionCheck</code> plays a headless match and, after every round,
+ * checks that the visibility states the {@link VisionEngine VisionEngine}
+ * keeps up to date incrementally match those of a full
+ * {@link VisionEngine#rebuild() rebuild()}.
+ * </p>
+ *
+ * <p>
+ * Arguments, all optional, are the grid size, the number of players, the
+ * number of units placed per player, the number of rounds, the seed, and
+ * <code>los</code> to check {@link VisionMode#LINE_OF_SIGHT LINE_OF_SIGHT}
+ * mode. Every unit is ordered to a random square within its move speed
+ * each turn, so units step through squares they do not finish on. The
+ * exit status is one if any square differed.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+public class VisionCheck {
+
+	public static void main(String args[]) {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int unitsPerPlayer = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+		boolean lineOfSight = args.length > 5 && args[5].equals("los");
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+			}
+		}));
+		PrimaryModel model = new PrimaryModel();
+		model.loadInitialModelState(gridSize, playerCount, seed);
+		if (lineOfSight) {
+			model.setVisionMode(VisionMode.LINE_OF_SIGHT);
+		}
+		Random script = new Random(seed);
+		for (int k = 0; k < playerCount; k++) {
+			for (int i = 0; i < unitsPerPlayer; i++) {
+				model.placeUnit(Player.playerOrdinals[k], script.nextInt(gridSize), script.nextInt(gridSize));
+			}
+		}
+
+		UnitType[][] occupants = new UnitType[playerCount][gridSize * gridSize];
+		Player[][] controllers = new Player[playerCount][gridSize * gridSize];
+		boolean[][] inRange = new boolean[playerCount][gridSize * gridSize];
+		int differing = 0, firstRound = -1;
+		for (int round = 0; round < rounds; round++) {
+			for (int k = 0; k < playerCount; k++) {
+				orderAll(model, model.listOfActiveUnitArrays.get(k), script);
+				model.rotateTurn();
+			}
+			snapshot(model, occupants, controllers, inRange);
+			model.visionEngine.rebuild();
+			int differingThisRound = compare(model, occupants, controllers, inRange);
+			if (differingThisRound > 0 && firstRound < 0) {
+				firstRound = round;
+			}
+			differing += differingThisRound;
+		}
+		System.setOut(out);
+
+		System.out.println("grid " + gridSize + ", " + playerCount + " players, " + rounds + " rounds, "
+				+ (lineOfSight ? "line of sight" : "square") + " vision");
+		if (differing == 0) {
+			System.out.println("incremental vision matched a rebuild after every round");
+		} else {
+			System.out.println(differing + " squares differed from a rebuild, first after round " + firstRound);
+		}
+		model.workerPool.shutdown();
+		System.exit(differing == 0 ? 0 : 1);
+	}
+
+	/*
+	 * Orders every unit of the active player to a random square within its move speed.
+	 */
+	private static void orderAll(PrimaryModel model, UnitGrid units, Random script) {
+		for (int slot = 0; slot < units.capacity(); slot++) {
+			AbstractUnit unit = units.unitAt(slot);
+			if (unit == null) {
+				continue;
+			}
+			int speed = unit.getMovSpd();
+			int row = Math.max(0, Math.min(model.gridSize - 1, unit.curLoc.x + script.nextInt(speed * 2 + 1) - speed));
+			int column = Math.max(0, Math.min(model.gridSize - 1, unit.curLoc.y + script.nextInt(speed * 2 + 1) - speed));
+			model.focusTarget = unit;
+			model.requestMoveTo(row, column);
+		}
+	}
+
+	private static void snapshot(PrimaryModel model, UnitType[][] occupants, Player[][] controllers, boolean[][] inRange) {
+		int gridSize = model.gridSize;
+		for (int k = 0; k < occupants.length; k++) {
+			VisibilityGrid visibilityGrid = model.listOfActiveVisibilityArrays.get(k);
+			VisibilityLayer visibilityLayer = model.listOfActiveVisibilityLayers.get(k);
+			for (int r = 0; r < gridSize; r++) {
+				for (int c = 0; c < gridSize; c++) {
+					occupants[k][r * gridSize + c] = visibilityGrid.getOccupyingUnitType(r, c);
+					controllers[k][r * gridSize + c] = visibilityGrid.getControllingPlayer(r, c);
+					inRange[k][r * gridSize + c] = visibilityLayer.isInVisionRange(r, c);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the number of squares, over every player, whose state differs from the snapshot.
+	 */
+	private static int compare(PrimaryModel model, UnitType[][] occupants, Player[][] controllers, boolean[][] inRange) {
+		int gridSize = model.gridSize, differing = 0;
+		for (int k = 0; k < occupants.length; k++) {
+			VisibilityGrid visibilityGrid = model.listOfActiveVisibilityArrays.get(k);
+			VisibilityLayer visibilityLayer = model.listOfActiveVisibilityLayers.get(k);
+			for (int r = 0; r < gridSize; r++) {
+				for (int c = 0; c < gridSize; c++) {
+					if (occupants[k][r * gridSize + c] != visibilityGrid.getOccupyingUnitType(r, c)
+							|| controllers[k][r * gridSize + c] != visibilityGrid.getControllingPlayer(r, c)
+							|| inRange[k][r * gridSize + c] != visibilityLayer.isInVisionRange(r, c)) {
+						differing++;
+					}
+				}
+			}
+		}
+		return differing;
+	}
+}
@@ -0,0 +1,542 @@
+package ascension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ascension.AbstractUnit.UnitType;
+import ascension.PrimaryModel.Player;
+
+/**
+ * <p>
+ * <code>VisionEngine</code> keeps every player's visibility states in step
+ * with the positions and sight radii of that player's units.
+ * </p>
+ *
+ * <p>
+ * Rather than flushing and re-granting vision across the whole map,
+ * the engine remembers the square each unit last lit up and keeps a
+ * per-square count of the units observing it. On each update only units
+ * which moved or changed sight radius are touched: their old square is
+ * released, their new square is stamped, and just the squares whose
+ * count crosses zero change state. Squares a unit left or entered are
+ * refreshed for every player so that enemy sightings stay current.
+ * The work done is therefore proportional to movement, not map area.
+ * Resolution moves units in the unit grids only and leaves occupants
+ * in the visibility grids to the engine, so a square a unit merely
+ * passed through on its way is never left showing it.
+ * </p>
+ *
+ * <p>
+ * A player's vision depends only on shared unit positions and that
+ * player's own units, so larger updates are split into per-player
+ * tasks, and further into row stripes, on a <code>ForkJoinPool</code>.
+ * </p>
+ *
+ * <p>
+ * In {@link VisionMode#LINE_OF_SIGHT LINE_OF_SIGHT} mode a unit's stamp
+ * is the list of squares its {@link FieldOfView FieldOfView} cast found,
+ * rather than a whole square, and the list is kept so that exactly those
+ * squares can be released again. Casts are only made for units which
+ * moved or changed sight radius, or which may see the square of a
+ * {@link VisionEngine#terrainChanged(int, int) terrain change}.
+ * </p>
+ *
+ * @author Nigel_Baldwen - nigelbaldwen@gmail.com
+ * @version 1.0
+ */
+
+class VisionEngine {
+
+	/**
+	 * The shape of the squares a unit sees.
+	 */
+	enum VisionMode {
+		/**
+		 * Every square within sight radius, ignoring terrain.
+		 */
+		SQUARE,
+		/**
+		 * The squares within sight radius not hidden behind sight blocking terrain.
+		 */
+		LINE_OF_SIGHT
+	}
+
+	// Change records are packed seven ints wide.
+	private static final int PLAYER = 0, OLD_ROW = 1, OLD_COLUMN = 2, OLD_RADIUS = 3,
+			NEW_ROW = 4, NEW_COLUMN = 5, NEW_RADIUS = 6, CHANGE_WIDTH = 7;
+	private static final int NO_STAMP = -1;
+	// Updates touching fewer squares than this are not worth handing to the pool.
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+	// Row stripes are no taller than this when split across the pool.
+	private static final int STRIPE_ROWS = 64;
+
+	private final int gridSize;
+	private final ForkJoinPool pool;
+	private final OccupancyIndex occupancyIndex;
+	private final FieldOfView fieldOfView;
+	private VisionMode visionMode;
+	private final ArrayList<UnitGrid> unitGrids;
+	private final ArrayList<VisibilityGrid> visibilityArrays;
+	private final ArrayList<VisibilityLayer> visibilityLayers;
+	private final int[][] observerCounts;
+	private final AbstractUnit[][] stampedUnits;
+	private final int[][] stampedRows, stampedColumns, stampedRadii;
+	private final int[][][] stampedSights;
+	private final boolean[][] stampsStale;
+	private int[] changes, dirtySquares;
+	private int[][] oldSights, newSights;
+	private int changeCount, dirtyCount;
+
+	/**
+	 * Creates a new <code>VisionEngine</code> in which no unit has granted vision yet.
+	 * The first {@link VisionEngine#update() update()} stamps every unit.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param gridSize - the number of squares in one row of the square map
+	 * @param unitGrids - the unit grids, one per player
+	 * @param visibilityArrays - the visibility grids, one per player
+	 * @param visibilityLayers - the vision range bitmaps, one per player
+	 * @param occupancyIndex - the index of which players occupy which squares
+	 * @param fieldOfView - the caster used in line of sight mode
+	 * @param pool - the pool which runs per-player vision tasks
+	 */
+	VisionEngine(int gridSize, ArrayList<UnitGrid> unitGrids, ArrayList<VisibilityGrid> visibilityArrays,
+			ArrayList<VisibilityLayer> visibilityLayers, OccupancyIndex occupancyIndex, FieldOfView fieldOfView, ForkJoinPool pool) {
+		this.gridSize = gridSize;
+		this.occupancyIndex = occupancyIndex;
+		this.fieldOfView = fieldOfView;
+		visionMode = VisionMode.SQUARE;
+		this.pool = pool;
+		this.unitGrids = unitGrids;
+		this.visibilityArrays = visibilityArrays;
+		this.visibilityLayers = visibilityLayers;
+		int players = unitGrids.size();
+		observerCounts = new int[players][gridSize * gridSize];
+		stampedUnits = new AbstractUnit[players][0];
+		stampedRows = new int[players][0];
+		stampedColumns = new int[players][0];
+		stampedRadii = new int[players][0];
+		stampedSights = new int[players][0][];
+		stampsStale = new boolean[players][0];
+		changes = new int[CHANGE_WIDTH * 16];
+		oldSights = new int[16][];
+		newSights = new int[16][];
+		dirtySquares = new int[32];
+	}
+
+	/**
+	 * Discards all observer counts and stamps and grants vision from scratch.
+	 * 
+	 * <p>
+	 * Sight squares are laid onto the vision bitmaps a word at a time and
+	 * every square is refreshed once afterwards, which is cheaper than
+	 * replaying the transitions of an incremental update when every unit
+	 * is new.
+	 * </p>
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#loadInitialModelState(int, int) loadInitialModelState(int, int)}
+	 * </ul>
+	 * </p>
+	 */
+	void rebuild() {
+		changeCount = 0;
+		dirtyCount = 0;
+		for (int k = 0; k < unitGrids.size(); k++) {
+			Arrays.fill(stampedUnits[k], null);
+			Arrays.fill(stampedRadii[k], NO_STAMP);
+			Arrays.fill(stampedSights[k], null);
+			Arrays.fill(stampsStale[k], false);
+			collectChanges(k);
+		}
+		// A rebuild touches every square, so it is always worth spreading out.
+		run(true, true);
+	}
+
+	/**
+	 * Brings every player's visibility states up to date with the current unit grids.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#updateVision() updateVision()}
+	 * </ul>
+	 * </p>
+	 */
+	void update() {
+		changeCount = 0;
+		dirtyCount = 0;
+		for (int k = 0; k < unitGrids.size(); k++) {
+			collectChanges(k);
+		}
+		run(false, estimateWork() >= PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Notes that the terrain of a square has changed. In
+	 * {@link VisionMode#LINE_OF_SIGHT LINE_OF_SIGHT} mode, every unit whose
+	 * sight radius reaches the square is cast again on the next
+	 * {@link VisionEngine#update() update()}, and no other; the square
+	 * shape of sight does not depend on terrain.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#changeTerrainAt(int, int, Terrain.TerrainSubType) changeTerrainAt(int, int, TerrainSubType)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param row - the row of the square
+	 * @param column - the column of the square
+	 */
+	void terrainChanged(int row, int column) {
+		if (visionMode != VisionMode.LINE_OF_SIGHT) {
+			return;
+		}
+		for (int k = 0; k < unitGrids.size(); k++) {
+			int[] rows = stampedRows[k], columns = stampedColumns[k], radii = stampedRadii[k];
+			for (int slot = 0; slot < radii.length; slot++) {
+				if (radii[slot] != NO_STAMP && Math.abs(rows[slot] - row) <= radii[slot] && Math.abs(columns[slot] - column) <= radii[slot]) {
+					stampsStale[k][slot] = true;
+				}
+			}
+		}
+	}
+
+	VisionMode getVisionMode() {
+		return visionMode;
+	}
+
+	/**
+	 * Switches the shape of the squares units see, granting vision from
+	 * scratch if it differs from the current one.
+	 *
+	 * <p>
+	 * <b>Called By</b> -
+	 * <ul>
+	 * <li> {@link PrimaryModel#setVisionMode(VisionMode) setVisionMode(VisionMode)}
+	 * </ul>
+	 * </p>
+	 *
+	 * @param visionMode - the new vision mode
+	 */
+	void setVisionMode(VisionMode visionMode) {
+		if (this.visionMode == visionMode) {
+			return;
+		}
+		this.visionMode = visionMode;
+		rebuild();
+	}
+
+	/**
+	 * Applies the collected changes, one task per player. In parallel, each
+	 * player's task is further split into row stripes.
+	 * 
+	 * <p>
+	 * Every task writes only its own player's counts, bitmap, and grid,
+	 * and only within its own rows, while the unit grids are read-only
+	 * for the duration. Each square therefore sees the same sequence of
+	 * writes no matter how the tasks are scheduled, and the result is
+	 * identical to a serial run.
+	 * </p>
+	 */
+	private void run(boolean rebuilding, boolean parallel) {
+		final ArrayList<VisionTask> tasks = new ArrayList<VisionTask>(unitGrids.size());
+		for (int k = 0; k < unitGrids.size(); k++) {
+			tasks.add(new VisionTask(k, 0, gridSize, rebuilding, parallel));
+		}
+		if (!parallel) {
+			for (VisionTask task : tasks) {
+				task.compute();
+			}
+			return;
+		}
+		pool.invoke(new RecursiveAction() {
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	private int estimateWork() {
+		int work = dirtyCount * unitGrids.size();
+		for (int i = 0; i < changeCount; i++) {
+			if (visionMode == VisionMode.LINE_OF_SIGHT) {
+				work += (oldSights[i] == null ? 0 : oldSights[i].length) + (newSights[i] == null ? 0 : newSights[i].length);
+				continue;
+			}
+			int record = i * CHANGE_WIDTH;
+			int oldSide = 2 * changes[record + OLD_RADIUS] + 1, newSide = 2 * changes[record + NEW_RADIUS] + 1;
+			work += oldSide * oldSide + newSide * newSide;
+		}
+		return work;
+	}
+
+	/*
+	 * Recomputes one player's vision over a band of rows.
+	 */
+	private class VisionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int k, rowStart, rowEnd;
+		private final boolean rebuilding, split;
+
+		VisionTask(int k, int rowStart, int rowEnd, boolean rebuilding, boolean split) {
+			this.k = k;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+			this.rebuilding = rebuilding;
+			this.split = split;
+		}
+
+		@Override
+		protected void compute() {
+			if (split && rowEnd - rowStart > STRIPE_ROWS) {
+				int middle = (rowStart + rowEnd) >>> 1;
+				invokeAll(new VisionTask(k, rowStart, middle, rebuilding, true),
+						new VisionTask(k, middle, rowEnd, rebuilding, true));
+				return;
+			}
+			if (rebuilding) {
+				rebuildStripe(k, rowStart, rowEnd);
+			} else {
+				updateStripe(k, rowStart, rowEnd);
+			}
+		}
+	}
+
+	private void rebuildStripe(int k, int rowStart, int rowEnd) {
+		int[] counts = observerCounts[k];
+		VisibilityLayer layer = visibilityLayers.get(k);
+		Arrays.fill(counts, rowStart * gridSize, rowEnd * gridSize, 0);
+		layer.clearVisionRange(rowStart, rowEnd);
+
+		for (int i = 0; i < changeCount; i++) {
+			int record = i * CHANGE_WIDTH;
+			if (changes[record + PLAYER] != k) {
+				continue;
+			}
+			if (visionMode == VisionMode.LINE_OF_SIGHT) {
+				int[] sight = newSights[i];
+				for (int j = firstInRows(sight, rowStart), end = rowEnd * gridSize; j < sight.length && sight[j] < end; j++) {
+					if (counts[sight[j]]++ == 0) {
+						layer.setInVisionRange(sight[j] / gridSize, sight[j] % gridSize, true);
+					}
+				}
+				continue;
+			}
+			int row = changes[record + NEW_ROW], column = changes[record + NEW_COLUMN], radius = changes[record + NEW_RADIUS];
+			int first = Math.max(Math.max(0, row - radius), rowStart), last = Math.min(Math.min(row + radius + 1, gridSize), rowEnd),
+					columnEnd = Math.min(column + radius + 1, gridSize);
+			for (int r = first; r < last; r++) {
+				for (int c = Math.max(0, column - radius); c < columnEnd; c++) {
+					counts[r * gridSize + c]++;
+				}
+			}
+			layer.stampInVisionRange(first, last, column - radius, columnEnd);
+		}
+
+		for (int r = rowStart; r < rowEnd; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				refreshSquare(k, r, c);
+			}
+		}
+	}
+
+	private void updateStripe(int k, int rowStart, int rowEnd) {
+		for (int i = 0; i < changeCount; i++) {
+			int record = i * CHANGE_WIDTH;
+			if (changes[record + PLAYER] != k) {
+				continue;
+			}
+			// Stamp before releasing so that overlapping squares never dip to zero.
+			if (visionMode == VisionMode.LINE_OF_SIGHT) {
+				stampSight(k, newSights[i], 1, rowStart, rowEnd);
+				stampSight(k, oldSights[i], -1, rowStart, rowEnd);
+				continue;
+			}
+			if (changes[record + NEW_RADIUS] != NO_STAMP) {
+				stampSquare(k, changes[record + NEW_ROW], changes[record + NEW_COLUMN], changes[record + NEW_RADIUS], 1, rowStart, rowEnd);
+			}
+			if (changes[record + OLD_RADIUS] != NO_STAMP) {
+				stampSquare(k, changes[record + OLD_ROW], changes[record + OLD_COLUMN], changes[record + OLD_RADIUS], -1, rowStart, rowEnd);
+			}
+		}
+
+		for (int i = 0; i < dirtyCount; i++) {
+			int row = dirtySquares[i] / gridSize;
+			if (row >= rowStart && row < rowEnd) {
+				refreshSquare(k, row, dirtySquares[i] % gridSize);
+			}
+		}
+	}
+
+	/**
+	 * Compares a player's unit grid against the stamps left by the last update
+	 * and records a change for every unit that appeared, vanished, moved, or
+	 * changed sight radius, or whose stamp went stale with a terrain change.
+	 */
+	private void collectChanges(int k) {
+		UnitGrid units = unitGrids.get(k);
+		ensureStampCapacity(k, units.capacity());
+		AbstractUnit[] stampUnits = stampedUnits[k];
+		int[] rows = stampedRows[k], columns = stampedColumns[k], radii = stampedRadii[k];
+		int[][] sights = stampedSights[k];
+		boolean[] stale = stampsStale[k];
+		boolean casting = visionMode == VisionMode.LINE_OF_SIGHT;
+
+		for (int slot = 0; slot < stampUnits.length; slot++) {
+			AbstractUnit unit = slot < units.capacity() ? units.unitAt(slot) : null;
+			AbstractUnit stamped = stampUnits[slot];
+			if (unit == null && stamped == null) {
+				continue;
+			}
+			int newRow = unit == null ? 0 : units.rowOf(slot), newColumn = unit == null ? 0 : units.columnOf(slot),
+					newRadius = unit == null ? NO_STAMP : unit.getSihtRd();
+			if (unit == stamped && rows[slot] == newRow && columns[slot] == newColumn && radii[slot] == newRadius && !stale[slot]) {
+				continue;
+			}
+			stale[slot] = false;
+
+			boolean moved = unit != stamped || rows[slot] != newRow || columns[slot] != newColumn;
+			int[] sight = casting && unit != null ? fieldOfView.cast(newRow, newColumn, newRadius) : null;
+			addChange(k, rows[slot], columns[slot], stamped == null ? NO_STAMP : radii[slot], newRow, newColumn, newRadius, sights[slot], sight);
+			sights[slot] = sight;
+			if (moved) {
+				if (stamped != null) {
+					addDirtySquare(rows[slot] * gridSize + columns[slot]);
+				}
+				if (unit != null) {
+					addDirtySquare(newRow * gridSize + newColumn);
+				}
+			}
+			stampUnits[slot] = unit;
+			rows[slot] = newRow;
+			columns[slot] = newColumn;
+			radii[slot] = unit == null ? NO_STAMP : newRadius;
+		}
+	}
+
+	/**
+	 * Adds delta to the observer count of every square within radius of the given square,
+	 * limited to the given rows. Squares whose count crosses zero gain or lose vision and are refreshed.
+	 */
+	private void stampSquare(int k, int row, int column, int radius, int delta, int rowStart, int rowEnd) {
+		int[] counts = observerCounts[k];
+		VisibilityLayer layer = visibilityLayers.get(k);
+		int last = Math.min(Math.min(row + radius + 1, gridSize), rowEnd), columnEnd = Math.min(column + radius + 1, gridSize);
+		for (int i = Math.max(Math.max(0, row - radius), rowStart); i < last; i++) {
+			for (int j = Math.max(0, column - radius); j < columnEnd; j++) {
+				int cell = i * gridSize + j;
+				int before = counts[cell];
+				counts[cell] = before + delta;
+				if (before == 0 || counts[cell] == 0) { // TODO need to add an additional check for true sight
+					layer.setInVisionRange(i, j, counts[cell] > 0);
+					refreshSquare(k, i, j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds delta to the observer count of every square in a cast sight list,
+	 * limited to the given rows. Squares whose count crosses zero gain or lose vision and are refreshed.
+	 */
+	private void stampSight(int k, int[] sight, int delta, int rowStart, int rowEnd) {
+		if (sight == null) {
+			return;
+		}
+		int[] counts = observerCounts[k];
+		VisibilityLayer layer = visibilityLayers.get(k);
+		for (int j = firstInRows(sight, rowStart), end = rowEnd * gridSize; j < sight.length && sight[j] < end; j++) {
+			int cell = sight[j];
+			int before = counts[cell];
+			counts[cell] = before + delta;
+			if (before == 0 || counts[cell] == 0) {
+				int row = cell / gridSize, column = cell % gridSize;
+				layer.setInVisionRange(row, column, counts[cell] > 0);
+				refreshSquare(k, row, column);
+			}
+		}
+	}
+
+	/*
+	 * Returns the index of the first square of a sorted sight list in or after the given row.
+	 */
+	private int firstInRows(int[] sight, int rowStart) {
+		int index = Arrays.binarySearch(sight, rowStart * gridSize);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	/**
+	 * Rewrites the occupant of one square in one player's visibility states.
+	 * The player's own units are always known, while enemies are only
+	 * noted inside vision range.
+	 */
+	private void refreshSquare(int k, int row, int column) {
+		AbstractUnit seen = unitGrids.get(k).first(row, column);
+		Player controller = seen == null ? null : Player.playerOrdinals[k];
+		if (visibilityLayers.get(k).isInVisionRange(row, column)) {
+			int enemies = occupancyIndex.enemiesAt(row, column, k); // Detect enemy presence in the square
+			if (enemies != 0) { // Enemy detected
+				// The highest numbered enemy present is shown.
+				// TODO We use only the 0th unit type, but this may need to change (leaning towards probably not).
+				seen = unitGrids.get(31 - Integer.numberOfLeadingZeros(enemies)).first(row, column);
+				controller = seen.player;
+			}
+		}
+		visibilityArrays.get(k).setOccupyingUnit(row, column, seen == null ? UnitType.EMPTY : seen.unitType, controller);
+	}
+
+	private void addChange(int k, int oldRow, int oldColumn, int oldRadius, int newRow, int newColumn, int newRadius,
+			int[] oldSight, int[] newSight) {
+		int record = changeCount * CHANGE_WIDTH;
+		if (record + CHANGE_WIDTH > changes.length) {
+			changes = Arrays.copyOf(changes, changes.length * 2);
+			oldSights = Arrays.copyOf(oldSights, oldSights.length * 2);
+			newSights = Arrays.copyOf(newSights, newSights.length * 2);
+		}
+		oldSights[changeCount] = oldSight;
+		newSights[changeCount] = newSight;
+		changes[record + PLAYER] = k;
+		changes[record + OLD_ROW] = oldRow;
+		changes[record + OLD_COLUMN] = oldColumn;
+		changes[record + OLD_RADIUS] = oldRadius;
+		changes[record + NEW_ROW] = newRow;
+		changes[record + NEW_COLUMN] = newColumn;
+		changes[record + NEW_RADIUS] = newRadius;
+		changeCount++;
+	}
+
+	private void addDirtySquare(int cell) {
+		if (dirtyCount == dirtySquares.length) {
+			dirtySquares = Arrays.copyOf(dirtySquares, dirtySquares.length * 2);
+		}
+		dirtySquares[dirtyCount++] = cell;
+	}
+
+	private void ensureStampCapacity(int k, int capacity) {
+		if (stampedUnits[k].length >= capacity) {
+			return;
+		}
+		int length = stampedUnits[k].length;
+		stampedUnits[k] = Arrays.copyOf(stampedUnits[k], capacity);
+		stampedRows[k] = Arrays.copyOf(stampedRows[k], capacity);
+		stampedColumns[k] = Arrays.copyOf(stampedColumns[k], capacity);
+		stampedRadii[k] = Arrays.copyOf(stampedRadii[k], capacity);
+		stampedSights[k] = Arrays.copyOf(stampedSights[k], capacity);
+		stampsStale[k] = Arrays.copyOf(stampsStale[k], capacity);
+		Arrays.fill(stampedRadii[k], length, capacity, NO_STAMP);
+	}
+}